@@ -0,0 +1,77 @@
+-- Secondary indexes and materialized aggregates for the Project 2 queries.
+-- Run after createTables.sql and loadData.sql; undo with dropIndexes.sql.
+-- FakebookSchema.Indexes creates the same indexes on the Project 2 tables, and
+-- FakebookIndexBenchmark measures what each one is worth.
+
+-- Query 0: the users born in the most and least popular months, read from the index alone
+CREATE INDEX USERS_MONTH_NAME_IDX ON USERS(MONTH_OF_BIRTH, USER_ID, FIRST_NAME, LAST_NAME);
+
+-- Query 1: GROUP BY FIRST_NAME as an index-only scan
+CREATE INDEX USERS_FIRST_NAME_IDX ON USERS(FIRST_NAME);
+
+-- Query 9: users with the same last name, with the columns of the join and the age filter
+CREATE INDEX USERS_LAST_NAME_IDX ON USERS(LAST_NAME, USER_ID, YEAR_OF_BIRTH);
+
+-- Queries 2, 6, 8, 9: friendships looked up by their second user (the primary key
+-- only serves lookups by USER1_ID)
+CREATE INDEX FRIENDS_USER2_IDX ON FRIENDS(USER2_ID, USER1_ID);
+
+-- Queries 4, 5: tags looked up by the tagged user
+CREATE INDEX TAGS_SUBJECT_IDX ON TAGS(TAG_SUBJECT_ID, TAG_PHOTO_ID);
+
+-- Query 4: photos joined to their albums
+CREATE INDEX PHOTOS_ALBUM_IDX ON PHOTOS(ALBUM_ID, PHOTO_ID);
+
+-- Query 7: events joined to the cities they are held in, and the states of those cities
+CREATE INDEX USER_EVENTS_CITY_IDX ON USER_EVENTS(EVENT_CITY_ID);
+CREATE INDEX CITIES_STATE_IDX ON CITIES(CITY_ID, STATE_NAME);
+
+-- Query 9: users joined on a shared hometown
+CREATE INDEX USER_HOMETOWN_CITY_IDX ON USER_HOMETOWN_CITIES(HOMETOWN_CITY_ID, USER_ID);
+
+
+-- Materialized aggregates, kept current on commit and used by query rewrite, so the
+-- GROUP BY queries of Query 0, Query 1, and Query 7 read a few rows instead of
+-- scanning Users and User_Events
+CREATE MATERIALIZED VIEW LOG ON USERS
+    WITH ROWID, SEQUENCE (MONTH_OF_BIRTH, FIRST_NAME)
+    INCLUDING NEW VALUES;
+
+CREATE MATERIALIZED VIEW LOG ON USER_EVENTS
+    WITH ROWID, SEQUENCE (EVENT_CITY_ID)
+    INCLUDING NEW VALUES;
+
+CREATE MATERIALIZED VIEW LOG ON CITIES
+    WITH ROWID, SEQUENCE (CITY_ID, STATE_NAME)
+    INCLUDING NEW VALUES;
+
+-- Query 0
+CREATE MATERIALIZED VIEW BIRTH_MONTH_COUNTS
+    BUILD IMMEDIATE
+    REFRESH FAST ON COMMIT
+    ENABLE QUERY REWRITE
+AS
+SELECT MONTH_OF_BIRTH, COUNT(*) AS USER_COUNT
+FROM USERS
+GROUP BY MONTH_OF_BIRTH;
+
+-- Query 1
+CREATE MATERIALIZED VIEW FIRST_NAME_COUNTS
+    BUILD IMMEDIATE
+    REFRESH FAST ON COMMIT
+    ENABLE QUERY REWRITE
+AS
+SELECT FIRST_NAME, COUNT(*) AS USER_COUNT
+FROM USERS
+GROUP BY FIRST_NAME;
+
+-- Query 7
+CREATE MATERIALIZED VIEW STATE_EVENT_COUNTS
+    BUILD IMMEDIATE
+    REFRESH FAST ON COMMIT
+    ENABLE QUERY REWRITE
+AS
+SELECT C.STATE_NAME, COUNT(*) AS EVENT_COUNT
+FROM USER_EVENTS E, CITIES C
+WHERE E.EVENT_CITY_ID = C.CITY_ID
+GROUP BY C.STATE_NAME;
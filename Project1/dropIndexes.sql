@@ -0,0 +1,15 @@
+DROP MATERIALIZED VIEW STATE_EVENT_COUNTS;
+DROP MATERIALIZED VIEW FIRST_NAME_COUNTS;
+DROP MATERIALIZED VIEW BIRTH_MONTH_COUNTS;
+DROP MATERIALIZED VIEW LOG ON CITIES;
+DROP MATERIALIZED VIEW LOG ON USER_EVENTS;
+DROP MATERIALIZED VIEW LOG ON USERS;
+DROP INDEX USER_HOMETOWN_CITY_IDX;
+DROP INDEX CITIES_STATE_IDX;
+DROP INDEX USER_EVENTS_CITY_IDX;
+DROP INDEX PHOTOS_ALBUM_IDX;
+DROP INDEX TAGS_SUBJECT_IDX;
+DROP INDEX FRIENDS_USER2_IDX;
+DROP INDEX USERS_LAST_NAME_IDX;
+DROP INDEX USERS_FIRST_NAME_IDX;
+DROP INDEX USERS_MONTH_NAME_IDX;
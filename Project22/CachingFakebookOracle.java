@@ -0,0 +1,440 @@
+package project2;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The CachingFakebookOracle class is derived from the FakebookOracle class and caches
+    the results of another FakebookOracle, keyed by query and arguments (so that
+    matchMaker(5, 2) and matchMaker(5, 3) are cached separately).
+
+      * Entries are kept in least-recently-used order and evicted once their total
+        weight (roughly, the number of rows they hold) exceeds <maxWeight>.
+      * Entries older than <ttlMillis> are reloaded on their next use.
+      * invalidate(table) drops exactly the entries whose query reads <table>, so a
+        change to Friends leaves, e.g., Query 0 and Query 7 cached.
+      * Concurrent misses on the same key share one load: the first caller runs the
+        query and everyone else waits for its result.
+      * A result loaded while the delegate reported an error (see getErrorCount()) may
+        be an error marker, so it goes to the callers of that load but is not cached.
+
+    Cached results are shared between callers and must not be modified.
+*/
+public final class CachingFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <maxWeight> > 0, <ttlMillis> > 0
+    // EFFECTS:  caches the results of <delegate>
+    public CachingFakebookOracle(FakebookOracle delegate, long maxWeight, long ttlMillis) {
+        if (maxWeight <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("weight bound and TTL must be positive");
+        }
+        this.delegate = delegate;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttlMillis * 1000000L;
+        entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true);
+    }
+
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        return get(key("findMonthOfBirthInfo"), new Loader<BirthMonthInfo>() {
+            public BirthMonthInfo load() throws SQLException {
+                return delegate.findMonthOfBirthInfo();
+            }
+        }, UsersTable);
+    }
+
+    @Override
+    public FirstNameInfo findNameInfo() throws SQLException {
+        return get(key("findNameInfo"), new Loader<FirstNameInfo>() {
+            public FirstNameInfo load() throws SQLException {
+                return delegate.findNameInfo();
+            }
+        }, UsersTable);
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return get(key("lonelyUsers"), new Loader<FakebookArrayList<UserInfo>>() {
+            public FakebookArrayList<UserInfo> load() throws SQLException {
+                return delegate.lonelyUsers();
+            }
+        }, UsersTable, FriendsTable);
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return get(key("liveAwayFromHome"), new Loader<FakebookArrayList<UserInfo>>() {
+            public FakebookArrayList<UserInfo> load() throws SQLException {
+                return delegate.liveAwayFromHome();
+            }
+        }, UsersTable, CurrentCitiesTable, HometownCitiesTable);
+    }
+
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(final int num) throws SQLException {
+        return get(key("findPhotosWithMostTags", num), new Loader<FakebookArrayList<TaggedPhotoInfo>>() {
+            public FakebookArrayList<TaggedPhotoInfo> load() throws SQLException {
+                return delegate.findPhotosWithMostTags(num);
+            }
+        }, UsersTable, PhotosTable, AlbumsTable, TagsTable);
+    }
+
+    @Override
+    public FakebookArrayList<MatchPair> matchMaker(final int num, final int yearDiff) throws SQLException {
+        return get(key("matchMaker", num, yearDiff), new Loader<FakebookArrayList<MatchPair>>() {
+            public FakebookArrayList<MatchPair> load() throws SQLException {
+                return delegate.matchMaker(num, yearDiff);
+            }
+        }, UsersTable, FriendsTable, PhotosTable, AlbumsTable, TagsTable);
+    }
+
+    @Override
+    public FakebookArrayList<UsersPair> suggestFriends(final int num) throws SQLException {
+        return get(key("suggestFriends", num), new Loader<FakebookArrayList<UsersPair>>() {
+            public FakebookArrayList<UsersPair> load() throws SQLException {
+                return delegate.suggestFriends(num);
+            }
+        }, UsersTable, FriendsTable);
+    }
+
+    @Override
+    public EventStateInfo findEventStates() throws SQLException {
+        return get(key("findEventStates"), new Loader<EventStateInfo>() {
+            public EventStateInfo load() throws SQLException {
+                return delegate.findEventStates();
+            }
+        }, EventsTable, CitiesTable);
+    }
+
+    @Override
+    public AgeInfo findAgeInfo(final long userID) throws SQLException {
+        return get(key("findAgeInfo", userID), new Loader<AgeInfo>() {
+            public AgeInfo load() throws SQLException {
+                return delegate.findAgeInfo(userID);
+            }
+        }, UsersTable, FriendsTable);
+    }
+
+    @Override
+    // [Query 8, Batched]
+    // EFFECTS:  answers the users cached by findAgeInfo(long) from the cache and the rest
+    //   with one batched call to the delegate, caching each user's answer separately
+    public Map<Long, AgeInfo> findAgeInfo(long[] userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new LinkedHashMap<Long, AgeInfo>();
+        Map<Long, Entry> owned = new LinkedHashMap<Long, Entry>();      // loaded here
+        Map<Long, Entry> shared = new LinkedHashMap<Long, Entry>();     // cached or loaded by others
+        synchronized (entries) {
+            for (long userID : userIDs) {
+                if (results.containsKey(userID)) {
+                    continue;
+                }
+                results.put(userID, null);
+                List<Object> key = key("findAgeInfo", userID);
+                Entry entry = fresh(key);
+                if (entry == null) {
+                    entry = new Entry(new String[] { UsersTable, FriendsTable });
+                    entries.put(key, entry);
+                    owned.put(userID, entry);
+                }
+                else {
+                    shared.put(userID, entry);
+                }
+            }
+        }
+        hits.addAndGet(shared.size());
+        misses.addAndGet(owned.size());
+
+        if (!owned.isEmpty()) {
+            long[] missing = new long[owned.size()];
+            int count = 0;
+            for (long userID : owned.keySet()) {
+                missing[count++] = userID;
+            }
+            long errors = delegate.getErrorCount();
+            Map<Long, AgeInfo> loaded;
+            try {
+                loaded = delegate.findAgeInfo(missing);
+            }
+            catch (SQLException | RuntimeException e) {
+                for (Map.Entry<Long, Entry> entry : owned.entrySet()) {
+                    fail(key("findAgeInfo", entry.getKey()), entry.getValue(), e);
+                }
+                throw e;
+            }
+            boolean keep = delegate.getErrorCount() == errors;
+            for (Map.Entry<Long, Entry> entry : owned.entrySet()) {
+                AgeInfo info = loaded.get(entry.getKey());
+                complete(key("findAgeInfo", entry.getKey()), entry.getValue(), info, keep);
+                results.put(entry.getKey(), info);
+            }
+        }
+
+        // only after completing our own entries, so two batches never wait on each other
+        for (Map.Entry<Long, Entry> entry : shared.entrySet()) {
+            results.put(entry.getKey(), (AgeInfo) await(entry.getValue().result));
+        }
+        return results;
+    }
+
+    @Override
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return get(key("findPotentialSiblings"), new Loader<FakebookArrayList<SiblingInfo>>() {
+            public FakebookArrayList<SiblingInfo> load() throws SQLException {
+                return delegate.findPotentialSiblings();
+            }
+        }, UsersTable, FriendsTable, HometownCitiesTable);
+    }
+
+    @Override
+    protected long[] userIDs() throws SQLException {
+        return get(key("userIDs"), new Loader<long[]>() {
+            public long[] load() throws SQLException {
+                return delegate.userIDs();
+            }
+        }, UsersTable);
+    }
+
+    @Override
+    // [Error Count Function]
+    // EFFECTS:  returns the delegate's error count, so caches can be stacked
+    public long getErrorCount() {
+        return delegate.getErrorCount();
+    }
+
+    // [Invalidation Function]
+    // MODIFIES: this
+    // EFFECTS:  drops every cached result whose query reads <table>, given either as one
+    //   of the FakebookOracleConstants table names or unqualified (e.g. "Friends"), in
+    //   any case; loads already running finish for their callers but are not cached
+    public void invalidate(String table) {
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                for (String read : entry.tables) {
+                    if (names(read, table)) {
+                        it.remove();
+                        weight -= entry.weight;
+                        invalidations.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // [Invalidate All Function]
+    // MODIFIES: this
+    // EFFECTS:  drops every cached result
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    // [Statistics Function]
+    // EFFECTS:  returns the hit, miss, eviction, and invalidation counts and the current
+    //   weight, e.g. for logging
+    public String getStats() {
+        synchronized (entries) {
+            return String.format("hits=%d misses=%d evictions=%d invalidations=%d entries=%d weight=%d/%d",
+                hits.get(), misses.get(), evictions.get(), invalidations.get(), entries.size(), weight, maxWeight);
+        }
+    }
+
+    // [Lookup Function]
+    // EFFECTS:  returns the cached result for <key> if it is present and fresh; otherwise
+    //   runs <loader> once (other callers of the same key wait for it) and caches its
+    //   result as depending on <tables>, unless the delegate reported an error meanwhile
+    @SuppressWarnings("unchecked")
+    private <T> T get(List<Object> key, Loader<T> loader, String... tables) throws SQLException {
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            entry = fresh(key);
+            if (entry == null) {
+                entry = new Entry(tables);
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+
+        if (!owner) {
+            hits.incrementAndGet();
+            return (T) await(entry.result);
+        }
+
+        misses.incrementAndGet();
+        long errors = delegate.getErrorCount();
+        T result;
+        try {
+            result = loader.load();
+        }
+        catch (SQLException | RuntimeException e) {
+            fail(key, entry, e);
+            throw e;
+        }
+        complete(key, entry, result, delegate.getErrorCount() == errors);
+        return result;
+    }
+
+    // [Fresh Entry Function]
+    // REQUIRES: the caller holds the lock on <entries>
+    // EFFECTS:  returns the entry for <key> if it is loading or fresh; drops it and
+    //   returns null if it has expired or is missing
+    private Entry fresh(List<Object> key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.result.isDone() && System.nanoTime() - entry.loadedAt > ttlNanos) {
+            entries.remove(key);
+            weight -= entry.weight;
+            entry = null;
+        }
+        return entry;
+    }
+
+    // [Completion Functions]
+    // EFFECTS:  hands <result> (or <e>) to the callers waiting on <entry>, the loading
+    //   entry for <key>; keeps <result> cached only if <keep> and <entry> was not
+    //   invalidated while loading
+    private void complete(List<Object> key, Entry entry, Object result, boolean keep) {
+        synchronized (entries) {
+            entry.loadedAt = System.nanoTime();
+            entry.weight = weigh(result);
+            if (entries.get(key) == entry) {
+                if (keep) {
+                    weight += entry.weight;
+                    evict();
+                }
+                else {
+                    entries.remove(key);            // an error marker: serve it once, not for the TTL
+                }
+            }
+        }
+        entry.result.complete(result);
+    }
+
+    private void fail(List<Object> key, Entry entry, Exception e) {
+        synchronized (entries) {
+            if (entries.get(key) == entry) {
+                entries.remove(key);
+            }
+        }
+        entry.result.completeExceptionally(e);
+    }
+
+    // [Eviction Function]
+    // REQUIRES: the caller holds the lock on <entries>
+    // EFFECTS:  drops least recently used completed entries until the weight bound holds
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.result.isDone()) {
+                it.remove();
+                weight -= entry.weight;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    // [Await Function]
+    // EFFECTS:  returns the result of a load another caller is running (or has run)
+    private static Object await(CompletableFuture<Object> result) throws SQLException {
+        try {
+            return result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a cached query", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    // [Weight Function]
+    // EFFECTS:  returns 1 plus the number of top-level rows in <result>
+    private static long weigh(Object result) {
+        if (result instanceof FakebookArrayList) {
+            return 1 + ((FakebookArrayList<?>) result).size();
+        }
+        if (result instanceof Map) {
+            return 1 + ((Map<?, ?>) result).size();
+        }
+        if (result instanceof long[]) {
+            return 1 + ((long[]) result).length;
+        }
+        return 1;
+    }
+
+    // [Table Name Function]
+    // EFFECTS:  returns true iff <table> is <qualified> or its unqualified name, ignoring case
+    private static boolean names(String qualified, String table) {
+        int start = qualified.length() - table.length();
+        return start >= 0 && qualified.regionMatches(true, start, table, 0, table.length())
+            && (start == 0 || qualified.charAt(start - 1) == '_' || qualified.charAt(start - 1) == '.');
+    }
+
+    private static List<Object> key(Object... parts) {
+        return Arrays.asList(parts);
+    }
+
+    /*
+        A Loader runs one query against the delegate.
+    */
+    private interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    /*
+        An Entry holds one cached (or loading) result, the tables its query reads, and
+        when it was loaded.
+    */
+    private static final class Entry {
+        Entry(String[] tables) {
+            this.tables = tables;
+            result = new CompletableFuture<Object>();
+        }
+
+        final String[] tables;
+        final CompletableFuture<Object> result;
+        long loadedAt;
+        long weight;
+    }
+
+    // Member Variables
+    private final FakebookOracle delegate;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final LinkedHashMap<List<Object>, Entry> entries;
+    private long weight;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final String UsersTable = FakebookOracleConstants.UsersTable;
+    private final String CitiesTable = FakebookOracleConstants.CitiesTable;
+    private final String FriendsTable = FakebookOracleConstants.FriendsTable;
+    private final String CurrentCitiesTable = FakebookOracleConstants.CurrentCitiesTable;
+    private final String HometownCitiesTable = FakebookOracleConstants.HometownCitiesTable;
+    private final String EventsTable = FakebookOracleConstants.EventsTable;
+    private final String AlbumsTable = FakebookOracleConstants.AlbumsTable;
+    private final String PhotosTable = FakebookOracleConstants.PhotosTable;
+    private final String TagsTable = FakebookOracleConstants.TagsTable;
+}
@@ -0,0 +1,294 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/*
+    The FakebookAggregateStore class keeps the statistics behind Query 0, Query 1, and
+    Query 7 up to date as rows change, so that those queries no longer scan the Users or
+    User_Events tables on every call:
+      * the number of users born in each month
+      * the number of users holding each first name, with the distinct names indexed by
+        length and by count, so the longest, shortest, and most common names are the
+        first or last entries of a sorted map
+      * the number of events held in each city, the state of each city, and the number
+        of events held in each state, indexed by count
+
+    The store is loaded once with load() and then kept current by whoever writes to
+    those tables, through the insert, delete, and update functions below. Answers cost
+    O(groups) (O(result size) for Query 1 and Query 7). All functions are synchronized.
+*/
+final class FakebookAggregateStore {
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection, <fetchSize> > 0
+    // EFFECTS:  computes every statistic from scratch with one pass over Users, Cities,
+    //   and User_Events
+    public static FakebookAggregateStore load(Connection connection, int fetchSize) throws SQLException {
+        FakebookAggregateStore store = new FakebookAggregateStore();
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly, FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(fetchSize);
+            ResultSet rst = stmt.executeQuery("SELECT FIRST_NAME, MONTH_OF_BIRTH FROM " + FakebookOracleConstants.UsersTable);
+            while (rst.next()) {
+                String firstName = rst.getString(1);
+                int month = rst.getInt(2);
+                store.insertUser(firstName, rst.wasNull() ? FakebookSnapshot.NullInt : month);
+            }
+            rst.close();
+
+            rst = stmt.executeQuery("SELECT CITY_ID, STATE_NAME FROM " + FakebookOracleConstants.CitiesTable);
+            while (rst.next()) {
+                store.insertCity(rst.getInt(1), rst.getString(2));
+            }
+            rst.close();
+
+            rst = stmt.executeQuery("SELECT EVENT_CITY_ID FROM " + FakebookOracleConstants.EventsTable);
+            while (rst.next()) {
+                store.insertEvent(rst.getInt(1));
+            }
+            rst.close();
+        }
+        return store;
+    }
+
+    // User Row Changes
+    // [Insert User Function]
+    // MODIFIES: this
+    // EFFECTS:  accounts for a new user with first name <firstName> and birth month
+    //   <month> (either may be missing: null, resp. FakebookSnapshot.NullInt)
+    public synchronized void insertUser(String firstName, int month) {
+        if (month != FakebookSnapshot.NullInt) {
+            Integer count = monthCounts.get(month);
+            monthCounts.put(month, count == null ? 1 : count + 1);
+            monthTotal++;
+        }
+        if (firstName != null) {
+            long count = removeName(firstName);
+            addName(firstName, count + 1);
+        }
+    }
+
+    // [Delete User Function]
+    // REQUIRES: a user with <firstName> and <month> was inserted and not yet deleted
+    // MODIFIES: this
+    // EFFECTS:  accounts for the removal of that user
+    public synchronized void deleteUser(String firstName, int month) {
+        if (month != FakebookSnapshot.NullInt) {
+            int count = monthCounts.get(month);
+            if (count == 1) {
+                monthCounts.remove(month);
+            }
+            else {
+                monthCounts.put(month, count - 1);
+            }
+            monthTotal--;
+        }
+        if (firstName != null) {
+            long count = removeName(firstName);
+            if (count > 1) {
+                addName(firstName, count - 1);
+            }
+        }
+    }
+
+    // [Update User Function]
+    // MODIFIES: this
+    // EFFECTS:  accounts for a user whose first name and birth month changed from
+    //   <oldFirstName> and <oldMonth> to <newFirstName> and <newMonth>
+    public synchronized void updateUser(String oldFirstName, int oldMonth, String newFirstName, int newMonth) {
+        deleteUser(oldFirstName, oldMonth);
+        insertUser(newFirstName, newMonth);
+    }
+
+    // City and Event Row Changes
+    // [Insert City Function]
+    // MODIFIES: this
+    // EFFECTS:  records that city <cityId> lies in state <state> (null if unknown);
+    //   events already recorded for that city start counting towards <state>
+    public synchronized void insertCity(int cityId, String state) {
+        updateCity(cityId, state);
+    }
+
+    // [Update City Function]
+    // MODIFIES: this
+    // EFFECTS:  moves city <cityId> (and all of its events) to state <state>
+    public synchronized void updateCity(int cityId, String state) {
+        long events = eventsInCity(cityId);
+        String oldState = cityStates.get(cityId);
+        if (oldState != null) {
+            addStateEvents(oldState, -events);
+        }
+        cityStates.put(cityId, state);
+        if (state != null) {
+            addStateEvents(state, events);
+        }
+    }
+
+    // [Delete City Function]
+    // MODIFIES: this
+    // EFFECTS:  forgets the state of city <cityId>; its events no longer count
+    public synchronized void deleteCity(int cityId) {
+        updateCity(cityId, null);
+        cityStates.remove(cityId);
+    }
+
+    // [Insert Event Function]
+    // MODIFIES: this
+    // EFFECTS:  accounts for a new event held in city <cityId>
+    public synchronized void insertEvent(int cityId) {
+        addCityEvents(cityId, 1);
+    }
+
+    // [Delete Event Function]
+    // REQUIRES: an event in <cityId> was inserted and not yet deleted
+    // MODIFIES: this
+    // EFFECTS:  accounts for the removal of an event held in city <cityId>
+    public synchronized void deleteEvent(int cityId) {
+        addCityEvents(cityId, -1);
+    }
+
+    // Query 0
+    // [Birth Month Summary Function]
+    // EFFECTS:  returns a BirthMonthInfo with the number of users with a known birth
+    //   month and the most and least popular months, ranked by user count descending and
+    //   then month ascending (the least popular month is the last in that order), with
+    //   empty user lists
+    public synchronized BirthMonthInfo birthMonthSummary() {
+        FakebookTopTies<Integer> months = new FakebookTopTies<Integer>(FakebookTopTies.Both);
+        for (Map.Entry<Integer, Integer> entry : monthCounts.entrySet()) {
+            months.offer(entry.getValue(), entry.getKey());             // in ascending month order
+        }
+        if (months.getGroups() == 0) {
+            return new BirthMonthInfo(monthTotal, 0, 0);
+        }
+        return new BirthMonthInfo(monthTotal, months.getMaxTies().get(0),
+                                  months.getMinTies().get(months.getMinTies().size() - 1));
+    }
+
+    // Query 1
+    // [First Name Function]
+    // EFFECTS:  returns the longest, shortest, and most common first names, each in
+    //   alphabetical order, and the number of users holding the most common name
+    public synchronized FirstNameInfo firstNameInfo() {
+        FirstNameInfo info = new FirstNameInfo();
+        if (namesByLength.isEmpty()) {
+            return info;
+        }
+        for (String name : namesByLength.lastEntry().getValue()) {
+            info.addLongName(name);
+        }
+        for (String name : namesByLength.firstEntry().getValue()) {
+            info.addShortName(name);
+        }
+        for (String name : namesByCount.lastEntry().getValue()) {
+            info.addCommonName(name);
+        }
+        info.setCommonNameCount(namesByCount.lastKey());
+        return info;
+    }
+
+    // Query 7
+    // [Event State Function]
+    // EFFECTS:  returns the states in which the most events are held, in alphabetical
+    //   order, and that number of events
+    public synchronized EventStateInfo eventStateInfo() {
+        if (statesByCount.isEmpty()) {
+            return new EventStateInfo(0);
+        }
+        EventStateInfo info = new EventStateInfo(statesByCount.lastKey());
+        for (String state : statesByCount.lastEntry().getValue()) {
+            info.addState(state);
+        }
+        return info;
+    }
+
+    // [Name Index Functions]
+    // EFFECTS:  removes <name> from the indexes and returns its count (0 if absent)
+    private long removeName(String name) {
+        Long count = nameCounts.remove(name);
+        if (count == null) {
+            return 0;
+        }
+        removeFrom(namesByLength, name.length(), name);
+        removeFrom(namesByCount, count, name);
+        return count;
+    }
+
+    // EFFECTS:  adds <name> with count <count> (> 0) to the indexes
+    private void addName(String name, long count) {
+        nameCounts.put(name, count);
+        addTo(namesByLength, name.length(), name);
+        addTo(namesByCount, count, name);
+    }
+
+    // [Event Index Functions]
+    private long eventsInCity(int cityId) {
+        Long events = cityEvents.get(cityId);
+        return events == null ? 0 : events;
+    }
+
+    private void addCityEvents(int cityId, long delta) {
+        long events = eventsInCity(cityId) + delta;
+        if (events == 0) {
+            cityEvents.remove(cityId);
+        }
+        else {
+            cityEvents.put(cityId, events);
+        }
+        String state = cityStates.get(cityId);
+        if (state != null) {
+            addStateEvents(state, delta);
+        }
+    }
+
+    private void addStateEvents(String state, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        Long old = stateCounts.get(state);
+        long count = (old == null ? 0 : old) + delta;
+        if (old != null) {
+            removeFrom(statesByCount, old, state);
+        }
+        if (count > 0) {
+            stateCounts.put(state, count);
+            addTo(statesByCount, count, state);
+        }
+        else {
+            stateCounts.remove(state);
+        }
+    }
+
+    // [Sorted Index Helpers]
+    private static <K> void addTo(TreeMap<K, TreeSet<String>> index, K key, String value) {
+        TreeSet<String> values = index.get(key);
+        if (values == null) {
+            index.put(key, values = new TreeSet<String>());
+        }
+        values.add(value);
+    }
+
+    private static <K> void removeFrom(TreeMap<K, TreeSet<String>> index, K key, String value) {
+        TreeSet<String> values = index.get(key);
+        values.remove(value);
+        if (values.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    // Member Variables
+    private final TreeMap<Integer, Integer> monthCounts = new TreeMap<Integer, Integer>();
+    private long monthTotal;
+    private final Map<String, Long> nameCounts = new HashMap<String, Long>();
+    private final TreeMap<Integer, TreeSet<String>> namesByLength = new TreeMap<Integer, TreeSet<String>>();
+    private final TreeMap<Long, TreeSet<String>> namesByCount = new TreeMap<Long, TreeSet<String>>();
+    private final Map<Integer, String> cityStates = new HashMap<Integer, String>();
+    private final Map<Integer, Long> cityEvents = new HashMap<Integer, Long>();
+    private final Map<String, Long> stateCounts = new HashMap<String, Long>();
+    private final TreeMap<Long, TreeSet<String>> statesByCount = new TreeMap<Long, TreeSet<String>>();
+}
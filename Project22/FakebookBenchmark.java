@@ -0,0 +1,352 @@
+package project2;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Constructor;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    The FakebookBenchmark class measures all ten FakebookOracle queries against any
+    FakebookOracle implementation and any JDBC database (typically a local embedded one
+    loaded with the Project1 schema). It follows the JMH model without depending on it:
+    every benchmark is run for a number of warmup iterations, then for a number of
+    measured iterations, each of which repeats the query until a minimum time has passed.
+    For every measured benchmark it reports the average time per operation with its
+    99.9% confidence interval, plus the GC profiler figures JMH reports (allocation rate,
+    normalized allocation per operation, GC count and time). A benchmark during which the
+    oracle reports a query error (see FakebookOracle.getErrorCount()) is marked FAILED
+    instead of scored, since a query that failed fast would otherwise look fast.
+
+    The default URL is an embedded H2 database, whose driver is not shipped with this
+    project: put the H2 jar on the classpath (BENCH_CP in the Makefile), or point
+    fakebook.bench.url at a database whose driver is. Without a driver for the URL the
+    benchmark stops before measuring anything.
+
+    Configuration is read from system properties:
+        fakebook.bench.oracle      FakebookOracle class with a (Connection) constructor
+        fakebook.bench.url         JDBC URL; "%d" is replaced by the dataset size
+        fakebook.bench.user        JDBC user
+        fakebook.bench.password    JDBC password
+        fakebook.bench.sizes       comma-separated dataset sizes (number of users)
+        fakebook.bench.queries     comma-separated query numbers
+        fakebook.bench.num         comma-separated values of <num> (Queries 4, 5, 6)
+        fakebook.bench.yearDiff    comma-separated values of <yearDiff> (Query 5)
+        fakebook.bench.userID      comma-separated values of <userID> (Query 8)
+        fakebook.bench.warmups     warmup iterations per benchmark
+        fakebook.bench.iterations  measured iterations per benchmark
+        fakebook.bench.millis      minimum duration of one iteration, in milliseconds
+        fakebook.bench.generate    if "true", (re)load each dataset from FakebookDataGenerator
+        fakebook.bench.seed        generator seed
+        fakebook.bench.dataDir     directory caching the generated data files
+*/
+public final class FakebookBenchmark {
+    // [Main Function]
+    public static void main(String[] args) throws Exception {
+        FakebookBenchmark benchmark = new FakebookBenchmark();
+        benchmark.printHeader();
+        for (long size : longList("fakebook.bench.sizes", "800")) {
+            benchmark.runDataset(size);
+        }
+    }
+
+    // [Constructor]
+    // EFFECTS:  reads the benchmark configuration from system properties
+    FakebookBenchmark() throws ClassNotFoundException, NoSuchMethodException {
+        Class<? extends FakebookOracle> type = Class.forName(
+            System.getProperty("fakebook.bench.oracle", "project2.StudentFakebookOracle")).asSubclass(FakebookOracle.class);
+        oracleConstructor = type.getConstructor(Connection.class);
+        url = System.getProperty("fakebook.bench.url", "jdbc:h2:./fakebook-%d");
+        user = System.getProperty("fakebook.bench.user", "sa");
+        password = System.getProperty("fakebook.bench.password", "");
+        queries = longList("fakebook.bench.queries", "0,1,2,3,4,5,6,7,8,9");
+        nums = longList("fakebook.bench.num", "5");
+        yearDiffs = longList("fakebook.bench.yearDiff", "2");
+        userIDs = longList("fakebook.bench.userID", "215");
+        warmups = Integer.getInteger("fakebook.bench.warmups", 5);
+        iterations = Integer.getInteger("fakebook.bench.iterations", 10);
+        iterationNanos = Integer.getInteger("fakebook.bench.millis", 1000) * 1000000L;
+        generate = Boolean.getBoolean("fakebook.bench.generate");
+        seed = Long.getLong("fakebook.bench.seed", 484L);
+        dataDir = new File(System.getProperty("fakebook.bench.dataDir", "fakebook-data"));
+    }
+
+    // [Dataset Function]
+    // EFFECTS:  runs every configured benchmark against the dataset of <size> users
+    void runDataset(long size) throws Exception {
+        String datasetUrl = url.replace("%d", Long.toString(size));
+        checkDriver(datasetUrl);
+        try (FakebookConnectionPool pool = FakebookConnectionPool.forUrl(datasetUrl, user, password, 1, 64);
+             Connection connection = pool.borrow()) {
+            if (generate) {
+                FakebookDataGenerator.prepare(connection, size, seed, dataDir);
+            }
+            FakebookOracle oracle = oracleConstructor.newInstance(connection);
+            for (long query : queries) {
+                for (long[] params : parameters((int) query)) {
+                    report(size, (int) query, params, measure(oracle, (int) query, params));
+                }
+            }
+        }
+    }
+
+    // [Parameter Function]
+    // EFFECTS:  returns every combination of parameters that applies to <query>, as
+    //   { num, yearDiff, userID } with -1 for parameters the query does not take
+    List<long[]> parameters(int query) {
+        List<long[]> result = new ArrayList<long[]>();
+        if (query == 4 || query == 6) {
+            for (long num : nums) {
+                result.add(new long[] { num, -1, -1 });
+            }
+        }
+        else if (query == 5) {
+            for (long num : nums) {
+                for (long yearDiff : yearDiffs) {
+                    result.add(new long[] { num, yearDiff, -1 });
+                }
+            }
+        }
+        else if (query == 8) {
+            for (long userID : userIDs) {
+                result.add(new long[] { -1, -1, userID });
+            }
+        }
+        else {
+            result.add(new long[] { -1, -1, -1 });
+        }
+        return result;
+    }
+
+    // [Driver Checking Function]
+    // EFFECTS:  throws SQLException, naming <url>, if no JDBC driver on the classpath
+    //   accepts <url>
+    static void checkDriver(String url) throws SQLException {
+        try {
+            DriverManager.getDriver(url);
+        } catch (SQLException e) {
+            throw new SQLException("no JDBC driver on the classpath accepts " + url
+                + " (the default jdbc:h2: URL needs the H2 jar on BENCH_CP; or set fakebook.bench.url)", e);
+        }
+    }
+
+    // [Measure Function]
+    // EFFECTS:  runs the warmup and measured iterations of one benchmark; if the oracle
+    //   reports an error meanwhile, stops and returns a measurement whose errors field
+    //   is set
+    Measurement measure(FakebookOracle oracle, int query, long[] params) throws SQLException {
+        Measurement measurement = new Measurement(iterations);
+        long errorsBefore = oracle.getErrorCount();
+        for (int idx = 0; idx < warmups; idx++) {
+            iterate(oracle, query, params);
+        }
+        measurement.errors = oracle.getErrorCount() - errorsBefore;
+        if (measurement.errors != 0) {
+            return measurement;
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        for (int idx = 0; idx < iterations; idx++) {
+            long[] result = iterate(oracle, query, params);
+            measurement.operations += result[0];
+            measurement.nanos += result[1];
+            measurement.nanosPerOp[idx] = (double) result[1] / result[0];
+        }
+        measurement.allocatedBytes = allocatedBytes() - allocatedBefore;
+        measurement.gcCount = gcCount() - gcCountBefore;
+        measurement.gcMillis = gcTime() - gcTimeBefore;
+        measurement.errors = oracle.getErrorCount() - errorsBefore;
+        return measurement;
+    }
+
+    // [Iteration Function]
+    // EFFECTS:  repeats the query until the iteration time has passed and returns
+    //   { operations, elapsed nanoseconds }
+    private long[] iterate(FakebookOracle oracle, int query, long[] params) throws SQLException {
+        long operations = 0;
+        long beginTime = System.nanoTime();
+        long elapsed;
+        do {
+            sink ^= invoke(oracle, query, params);
+            operations++;
+            elapsed = System.nanoTime() - beginTime;
+        } while (elapsed < iterationNanos);
+        return new long[] { operations, elapsed };
+    }
+
+    // [Invoke Function]
+    // EFFECTS:  runs one query and returns a value derived from its result, so that the
+    //   JIT cannot discard the call
+    static int invoke(FakebookOracle oracle, int query, long[] params) throws SQLException {
+        switch (query) {
+            case 0:
+                return System.identityHashCode(oracle.findMonthOfBirthInfo());
+            case 1:
+                return System.identityHashCode(oracle.findNameInfo());
+            case 2:
+                return oracle.lonelyUsers().size();
+            case 3:
+                return oracle.liveAwayFromHome().size();
+            case 4:
+                return oracle.findPhotosWithMostTags((int) params[0]).size();
+            case 5:
+                return oracle.matchMaker((int) params[0], (int) params[1]).size();
+            case 6:
+                return oracle.suggestFriends((int) params[0]).size();
+            case 7:
+                return System.identityHashCode(oracle.findEventStates());
+            case 8:
+                return System.identityHashCode(oracle.findAgeInfo(params[2]));
+            case 9:
+                return oracle.findPotentialSiblings().size();
+            default:
+                throw new IllegalArgumentException("no query " + query);
+        }
+    }
+
+    // [Header Printing Function]
+    private void printHeader() {
+        System.out.println("# Oracle: " + oracleConstructor.getDeclaringClass().getName());
+        System.out.println("# Warmup: " + warmups + " iterations, Measurement: " + iterations +
+            " iterations, " + iterationNanos / 1000000L + " ms each");
+        System.out.println(String.format("%-24s %9s %5s %8s %8s %5s %12s %10s %-6s %12s %14s %8s %8s",
+            "Benchmark", "(size)", "(num)", "(yrDiff)", "(userID)", "Cnt", "Score", "Error", "Units",
+            "alloc.rate", "alloc.rate.norm", "gc.count", "gc.time"));
+    }
+
+    // [Report Function]
+    private void report(long size, int query, long[] params, Measurement m) {
+        if (m.errors != 0) {
+            System.out.println(String.format("%-24s %9d %5s %8s %8s %5d %12s   (%d query errors)",
+                QueryNames[query], size, param(params[0]), param(params[1]), param(params[2]), iterations,
+                "FAILED", m.errors));
+            return;
+        }
+        double seconds = m.nanos / 1e9;
+        System.out.println(String.format("%-24s %9d %5s %8s %8s %5d %12.3f %10.3f %-6s %12.3f %14.1f %8d %8d",
+            QueryNames[query], size, param(params[0]), param(params[1]), param(params[2]), iterations,
+            m.mean() / 1e6, m.error() / 1e6, "ms/op",
+            seconds == 0 ? 0.0 : m.allocatedBytes / 1048576.0 / seconds,
+            (double) m.allocatedBytes / m.operations, m.gcCount, m.gcMillis));
+    }
+
+    private static String param(long value) {
+        return value < 0 ? "N/A" : Long.toString(value);
+    }
+
+    // [Allocation Function]
+    // EFFECTS:  returns the bytes allocated so far by this thread, or 0 if the JVM
+    //   cannot tell
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    // [List Parsing Function]
+    static long[] longList(String property, String defaultValue) {
+        String[] parts = System.getProperty(property, defaultValue).split(",");
+        long[] values = new long[parts.length];
+        for (int idx = 0; idx < parts.length; idx++) {
+            values[idx] = Long.parseLong(parts[idx].trim());
+        }
+        return values;
+    }
+
+    /*
+        A Measurement holds the raw figures of one benchmark.
+    */
+    static final class Measurement {
+        Measurement(int iterations) {
+            nanosPerOp = new double[iterations];
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double value : nanosPerOp) {
+                sum += value;
+            }
+            return sum / nanosPerOp.length;
+        }
+
+        // half-width of the 99.9% confidence interval of the mean
+        double error() {
+            int n = nanosPerOp.length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+            double mean = mean();
+            double squares = 0;
+            for (double value : nanosPerOp) {
+                squares += (value - mean) * (value - mean);
+            }
+            return studentT999(n - 1) * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+        }
+
+        final double[] nanosPerOp;
+        long operations;
+        long nanos;
+        long allocatedBytes;
+        long gcCount;
+        long gcMillis;
+        long errors;                                                    // query errors reported meanwhile
+    }
+
+    // [Student's t Function]
+    // EFFECTS:  returns the two-sided 99.9% critical value of Student's t distribution
+    //   with <df> degrees of freedom
+    private static double studentT999(int df) {
+        double[] table = { 636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+                           4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+                           3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646 };
+        return df <= table.length ? table[df - 1] : (df <= 60 ? 3.460 : (df <= 120 ? 3.373 : 3.291));
+    }
+
+    // Query Names
+    static final String[] QueryNames = {
+        "findMonthOfBirthInfo", "findNameInfo", "lonelyUsers", "liveAwayFromHome", "findPhotosWithMostTags",
+        "matchMaker", "suggestFriends", "findEventStates", "findAgeInfo", "findPotentialSiblings"
+    };
+
+    // Member Variables
+    private final Constructor<? extends FakebookOracle> oracleConstructor;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final long[] queries;
+    private final long[] nums;
+    private final long[] yearDiffs;
+    private final long[] userIDs;
+    private final int warmups;
+    private final int iterations;
+    private final long iterationNanos;
+    private final boolean generate;
+    private final long seed;
+    private final File dataDir;
+    private static volatile int sink;
+}
@@ -0,0 +1,136 @@
+package project2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+    The FakebookCoTagMatcher class ranks pairs of users for Query 5 from a stream of
+    photo posting lists (the users tagged in one photo). Within each posting list, users
+    whose gender or birth year is unknown are dropped and the rest are sorted by gender
+    and then birth year, so only pairs of the same gender within <yearDiff> years are
+    ever enumerated; pairs that are friends are rejected through a Friendships lookup.
+    Shared photos are counted per packed pair in a FakebookPairCounter, which replaces
+    the quadratic self-join of Tags followed by an anti-join of Friends.
+
+    Each user's place in the (gender, year, user) order is packed into one long so a
+    posting list sorts as primitives; a posting list holding a gender or year too large
+    for its field is sorted with a comparator instead, in the same order.
+
+    The matcher keeps counts only; callers list the shared photos of the winning pairs
+    afterwards.
+*/
+final class FakebookCoTagMatcher {
+    /*
+        A Friendships answers whether two dense user indexes are friends.
+    */
+    interface Friendships {
+        boolean areFriends(int a, int b);
+    }
+
+    // [Constructor]
+    // REQUIRES: <genders> and <years> are indexed by dense user index; unknown genders
+    //   are negative and unknown years are FakebookSnapshot.NullInt
+    public FakebookCoTagMatcher(int[] genders, int[] years, int yearDiff, Friendships friends) {
+        this.genders = genders;
+        this.years = years;
+        this.yearDiff = yearDiff;
+        this.friends = friends;
+        counter = new FakebookPairCounter(1024);
+        order = new long[16];
+        sorted = new int[16];
+    }
+
+    // [Photo Function]
+    // MODIFIES: this
+    // EFFECTS:  counts one shared photo for every qualifying pair among the first <count>
+    //   users of <users>
+    public void addPhoto(int[] users, int count) {
+        if (order.length < count) {
+            order = new long[Math.max(count, 2 * order.length)];
+            sorted = new int[order.length];
+        }
+
+        // sort key: gender, then birth year, then user index
+        int size = 0;
+        boolean packed = true;
+        for (int idx = 0; idx < count; idx++) {
+            int user = users[idx];
+            if (genders[user] >= 0 && years[user] != FakebookSnapshot.NullInt) {
+                long yearBits = (long) years[user] + YearBias;
+                packed &= genders[user] <= GenderMask && yearBits >= 0 && yearBits <= YearMask;
+                sorted[size] = user;
+                order[size++] = ((long) genders[user] << (YearBits + UserBits)) | (yearBits << UserBits) | user;
+            }
+        }
+        if (packed) {
+            Arrays.sort(order, 0, size);
+            for (int idx = 0; idx < size; idx++) {
+                sorted[idx] = (int) (order[idx] & UserMask);
+            }
+        }
+        else {
+            sortUnpacked(size);
+        }
+
+        for (int i = 0; i < size; i++) {
+            int a = sorted[i];
+            for (int j = i + 1; j < size; j++) {
+                int b = sorted[j];
+                if (genders[a] != genders[b] || (long) years[b] - years[a] > yearDiff) {
+                    break;
+                }
+                if (a != b && !friends.areFriends(a, b)) {
+                    counter.increment(FakebookSnapshot.pack(Math.min(a, b), Math.max(a, b)));
+                }
+            }
+        }
+    }
+
+    // [Unpacked Sort Function]
+    // MODIFIES: this
+    // EFFECTS:  sorts the first <size> users of <sorted> by gender, then birth year, then
+    //   user index, for keys that do not fit the packed layout
+    private void sortUnpacked(int size) {
+        Integer[] boxed = new Integer[size];
+        for (int idx = 0; idx < size; idx++) {
+            boxed[idx] = sorted[idx];
+        }
+        Arrays.sort(boxed, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int cmp = Integer.compare(genders[a], genders[b]);
+                if (cmp == 0) {
+                    cmp = Integer.compare(years[a], years[b]);
+                }
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            }
+        });
+        for (int idx = 0; idx < size; idx++) {
+            sorted[idx] = boxed[idx];
+        }
+    }
+
+    // [Top Pairs Function]
+    // EFFECTS:  returns the <num> pairs with the most shared photos, as packed (lower user
+    //   index, higher user index) keys, ranked by shared photo count descending and then
+    //   by the lower and the higher user index
+    public long[] topPairs(int num) {
+        return counter.offerTo(new FakebookTopK(Math.max(0, num))).rankedKeys();
+    }
+
+    // Constants
+    private static final int UserBits = 31;                 // every non-negative int
+    private static final int YearBits = 20;
+    private static final int YearBias = 1 << 19;            // keeps birth years non-negative in the sort key
+    private static final long UserMask = (1L << UserBits) - 1;
+    private static final long YearMask = (1L << YearBits) - 1;
+    private static final int GenderMask = (1 << (63 - YearBits - UserBits)) - 1;
+
+    // Member Variables
+    private final int[] genders;
+    private final int[] years;
+    private final int yearDiff;
+    private final Friendships friends;
+    private final FakebookPairCounter counter;
+    private long[] order;
+    private int[] sorted;
+}
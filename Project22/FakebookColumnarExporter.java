@@ -0,0 +1,643 @@
+package project2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+    The FakebookColumnarExporter class exports the Project1 views (VIEW_USER_INFORMATIO,
+    VIEW_ARE_FRIENDS, VIEW_PHOTO_INFORMATION, VIEW_TAG_INFORMATION, and
+    VIEW_EVENT_INFORMATION) to a columnar snapshot that offline jobs can scan instead of
+    querying the database. Each view is read once, over a forward-only, read-only cursor,
+    and written to a directory of its own:
+
+        <view>/manifest.tsv    the row count and, per column, its name, type, null count,
+                               minimum, maximum, block count, and bytes on disk
+        <view>/<n>.col         column n, as a sequence of blocks (see FakebookColumnWriter)
+
+    Rows are buffered one block (<blockRows> rows) at a time, so memory stays bounded
+    whatever the size of the view. Within a block, integers and timestamps are delta
+    encoded and strings (and non-integral decimals) are dictionary encoded, then the
+    block is deflated; every block carries its own minimum and maximum so scans can skip
+    it. FakebookColumnReader reads the column files back.
+
+    Usage: FakebookColumnarExporter <jdbc url> <user> <password> <output directory>
+    with the views read from system properties:
+        fakebook.export.views      comma-separated view names
+        fakebook.export.prefix     prefix of the view names (default none)
+        fakebook.export.blockRows  rows per block
+*/
+public final class FakebookColumnarExporter {
+    // [Main Function]
+    public static void main(String[] args) throws SQLException, IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: FakebookColumnarExporter <jdbc url> <user> <password> <output directory>");
+            System.exit(1);
+        }
+        if (args[0].startsWith("jdbc:oracle:")) {
+            try {
+                Class.forName("oracle.jdbc.driver.OracleDriver");
+            }
+            catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        String prefix = System.getProperty("fakebook.export.prefix", "");
+        FakebookColumnarExporter exporter = new FakebookColumnarExporter(new File(args[3]),
+            Integer.getInteger("fakebook.export.blockRows", 65536));
+        try (FakebookConnectionPool pool = FakebookConnectionPool.forUrl(args[0], args[1], args[2], 1, 0);
+             Connection connection = pool.borrow()) {
+            for (String view : System.getProperty("fakebook.export.views", DefaultViews).split(",")) {
+                long beginTime = System.nanoTime();
+                long rows = exporter.export(connection, prefix + view.trim(), view.trim());
+                System.out.println(String.format("%-28s %10d rows %10.3f s", view.trim(), rows,
+                    (System.nanoTime() - beginTime) / 1e9));
+            }
+        }
+    }
+
+    // [Constructor]
+    // REQUIRES: <blockRows> > 0
+    // EFFECTS:  creates an exporter writing snapshots under <directory>
+    public FakebookColumnarExporter(File directory, int blockRows) {
+        if (blockRows <= 0) {
+            throw new IllegalArgumentException("blockRows must be positive");
+        }
+        this.directory = directory;
+        this.blockRows = blockRows;
+    }
+
+    // [Export Function]
+    // MODIFIES: the directory <name> under this exporter's directory
+    // EFFECTS:  streams every row of <view> into column files and a manifest and
+    //   returns the number of rows
+    public long export(Connection connection, String view, String name) throws SQLException, IOException {
+        File viewDirectory = new File(directory, name);
+        if (!viewDirectory.isDirectory() && !viewDirectory.mkdirs()) {
+            throw new IOException("Could not create " + viewDirectory);
+        }
+
+        long rows = 0;
+        List<FakebookColumnWriter> columns = new ArrayList<FakebookColumnWriter>();
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly, FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(FakebookOracleConstants.DefaultFetchSize);
+            ResultSet rst = stmt.executeQuery("SELECT * FROM " + view);
+            ResultSetMetaData meta = rst.getMetaData();
+            int[] types = new int[meta.getColumnCount()];
+            try {
+                for (int column = 1; column <= types.length; column++) {
+                    types[column - 1] = FakebookColumnWriter.typeOf(meta.getColumnType(column));
+                    columns.add(new FakebookColumnWriter(new File(viewDirectory, (column - 1) + ".col"),
+                        meta.getColumnLabel(column), types[column - 1], blockRows));
+                }
+                while (rst.next()) {
+                    for (int column = 1; column <= types.length; column++) {
+                        columns.get(column - 1).add(read(rst, column, types[column - 1]));
+                    }
+                    rows++;
+                }
+                rst.close();
+            }
+            finally {
+                for (FakebookColumnWriter column : columns) {
+                    column.close();
+                }
+            }
+        }
+
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(new File(viewDirectory, "manifest.tsv")),
+                                                 StandardCharsets.UTF_8)) {
+            out.append("view\t").append(escape(view)).append('\n');
+            out.append("rows\t").append(Long.toString(rows)).append('\n');
+            out.append("# column\tname\ttype\tnulls\tmin\tmax\tblocks\tbytes\n");
+            for (int column = 0; column < columns.size(); column++) {
+                FakebookColumnWriter writer = columns.get(column);
+                out.append(Integer.toString(column)).append('\t').append(escape(writer.getName()))
+                    .append('\t').append(FakebookColumnWriter.TypeNames[writer.getType()])
+                    .append('\t').append(Long.toString(writer.getNulls()))
+                    .append('\t').append(escape(FakebookColumnWriter.format(writer.getMin())))
+                    .append('\t').append(escape(FakebookColumnWriter.format(writer.getMax())))
+                    .append('\t').append(Long.toString(writer.getBlocks()))
+                    .append('\t').append(Long.toString(writer.getBytes())).append('\n');
+            }
+        }
+        return rows;
+    }
+
+    // [Read Function]
+    // EFFECTS:  returns column <column> of the current row as the Java type of <type>,
+    //   or null
+    private static Object read(ResultSet rst, int column, int type) throws SQLException {
+        switch (type) {
+            case FakebookColumnWriter.LongType: {
+                long value = rst.getLong(column);
+                return rst.wasNull() ? null : (Object) value;
+            }
+            case FakebookColumnWriter.DecimalType:
+                return rst.getBigDecimal(column);
+            case FakebookColumnWriter.TimestampType:
+                return rst.getTimestamp(column);
+            default:
+                return rst.getString(column);
+        }
+    }
+
+    // EFFECTS:  returns <value> with tabs, newlines, and backslashes escaped
+    private static String escape(String value) {
+        return value == null ? "\\N"
+            : value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    // Constants
+    private static final String DefaultViews =
+        "VIEW_USER_INFORMATIO,VIEW_ARE_FRIENDS,VIEW_PHOTO_INFORMATION,VIEW_TAG_INFORMATION,VIEW_EVENT_INFORMATION";
+
+    // Member Variables
+    private final File directory;
+    private final int blockRows;
+}
+
+/*
+    The FakebookColumnWriter class writes one column of a snapshot. The file starts with
+    a header (magic, version, column type, column name) followed by blocks of up to
+    <blockRows> values, each laid out as
+
+        int rows, int nulls, byte encoding, string min, string max,
+        int raw length, int deflated length, deflated payload
+
+    where the payload is a null bitmap (only if nulls > 0) followed by the non-null
+    values, encoded as
+        Delta       zigzag varint differences from the previous value (from 0)
+        Dictionary  varint entry count, the distinct values as length-prefixed UTF-8 in
+                    order of first use, then one varint entry index per value
+
+    Integers and timestamps (as epoch milliseconds) use Delta; strings use Dictionary;
+    decimals use Delta when every value in the block is an integer that fits a long and
+    Dictionary (of their plain string forms) otherwise. Dictionaries are per block, so
+    a column never holds more than one block of distinct values in memory.
+*/
+final class FakebookColumnWriter implements AutoCloseable {
+    // [Constructor]
+    // REQUIRES: <type> is one of the type constants, <blockRows> > 0
+    // EFFECTS:  creates <file> and writes its header
+    public FakebookColumnWriter(File file, String name, int type, int blockRows) throws IOException {
+        this.name = name;
+        this.type = type;
+        values = new Object[blockRows];
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(Magic);
+        out.writeInt(Version);
+        out.writeByte(type);
+        writeString(out, name);
+        bytes = out.size();
+    }
+
+    // [Add Function]
+    // REQUIRES: <value> is null or of the Java type of this column's type
+    // MODIFIES: this
+    // EFFECTS:  appends <value>, writing a block whenever one fills up
+    public void add(Object value) throws IOException {
+        if (value == null) {
+            nulls++;
+            blockNulls++;
+        }
+        else {
+            if (min == null || compare(value, min) < 0) {
+                min = value;
+            }
+            if (max == null || compare(value, max) > 0) {
+                max = value;
+            }
+        }
+        values[size++] = value;
+        if (size == values.length) {
+            flush();
+        }
+    }
+
+    // [Close Function]
+    // EFFECTS:  writes the last partial block and closes the file
+    public void close() throws IOException {
+        if (size > 0) {
+            flush();
+        }
+        out.close();
+    }
+
+    // [Accessors]
+    public String getName() { return name; }
+    public int getType() { return type; }
+    public long getNulls() { return nulls; }
+    public Object getMin() { return min; }
+    public Object getMax() { return max; }
+    public long getBlocks() { return blocks; }
+    public long getBytes() { return bytes; }
+
+    // [Flush Function]
+    // MODIFIES: this
+    // EFFECTS:  encodes, compresses, and writes the buffered values as one block
+    private void flush() throws IOException {
+        Object blockMin = null;
+        Object blockMax = null;
+        boolean integral = true;
+        for (int idx = 0; idx < size; idx++) {
+            Object value = values[idx];
+            if (value == null) {
+                continue;
+            }
+            if (blockMin == null || compare(value, blockMin) < 0) {
+                blockMin = value;
+            }
+            if (blockMax == null || compare(value, blockMax) > 0) {
+                blockMax = value;
+            }
+            if (type == DecimalType && integral) {
+                BigDecimal decimal = (BigDecimal) value;
+                integral = decimal.signum() == 0 || decimal.stripTrailingZeros().scale() <= 0
+                    && decimal.compareTo(LongMin) >= 0 && decimal.compareTo(LongMax) <= 0;
+            }
+        }
+        int encoding = type == LongType || type == TimestampType || (type == DecimalType && integral) ? DeltaEncoding : DictionaryEncoding;
+
+        Buffer payload = new Buffer();
+        if (blockNulls > 0) {
+            byte[] bitmap = new byte[(size + 7) / 8];
+            for (int idx = 0; idx < size; idx++) {
+                if (values[idx] == null) {
+                    bitmap[idx >> 3] |= 1 << (idx & 7);
+                }
+            }
+            payload.write(bitmap, 0, bitmap.length);
+        }
+        if (encoding == DeltaEncoding) {
+            long previous = 0;
+            for (int idx = 0; idx < size; idx++) {
+                if (values[idx] != null) {
+                    long value = toLong(values[idx]);
+                    payload.writeVarLong(zigzag(value - previous));
+                    previous = value;
+                }
+            }
+        }
+        else {
+            Map<String, Integer> dictionary = new HashMap<String, Integer>();
+            List<String> entries = new ArrayList<String>();
+            int[] codes = new int[size - blockNulls];
+            int count = 0;
+            for (int idx = 0; idx < size; idx++) {
+                if (values[idx] != null) {
+                    String value = format(values[idx]);
+                    Integer code = dictionary.get(value);
+                    if (code == null) {
+                        code = entries.size();
+                        dictionary.put(value, code);
+                        entries.add(value);
+                    }
+                    codes[count++] = code;
+                }
+            }
+            payload.writeVarLong(entries.size());
+            for (String entry : entries) {
+                byte[] utf8 = entry.getBytes(StandardCharsets.UTF_8);
+                payload.writeVarLong(utf8.length);
+                payload.write(utf8, 0, utf8.length);
+            }
+            for (int idx = 0; idx < count; idx++) {
+                payload.writeVarLong(codes[idx]);
+            }
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(payload.bytes(), 0, payload.size());
+        deflater.finish();
+        Buffer compressed = new Buffer();
+        byte[] chunk = new byte[1 << 14];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            compressed.write(chunk, 0, length);
+        }
+        deflater.end();
+
+        int before = out.size();
+        out.writeInt(size);
+        out.writeInt(blockNulls);
+        out.writeByte(encoding);
+        writeString(out, format(blockMin));
+        writeString(out, format(blockMax));
+        out.writeInt(payload.size());
+        out.writeInt(compressed.size());
+        out.write(compressed.bytes(), 0, compressed.size());
+        bytes += out.size() - before;
+
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        blockNulls = 0;
+        blocks++;
+    }
+
+    // [Type Function]
+    // EFFECTS:  returns the snapshot type of a column of JDBC type <sqlType>
+    static int typeOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return LongType;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DecimalType;                 // integral blocks still get Delta
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return TimestampType;
+            default:
+                return StringType;
+        }
+    }
+
+    // [Value Helpers]
+    // EFFECTS:  returns <value> (a statistic or a dictionary entry) as a string, or
+    //   null if it is null
+    static String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).getTime();
+        }
+        return ((Number) value).longValue();
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // EFFECTS:  writes <value> as a length-prefixed UTF-8 string (length -1 for null)
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /*
+        A Buffer is a growable byte array with varint writes.
+    */
+    static final class Buffer {
+        void write(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, data, size, length);
+            size += length;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        byte[] bytes() {
+            return data;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void ensure(int more) {
+            if (size + more > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + more));
+            }
+        }
+
+        private byte[] data = new byte[1024];
+        private int size;
+    }
+
+    // Constants
+    static final int Magic = 0x4642434C;                // "FBCL"
+    static final int Version = 1;
+    static final int LongType = 0;
+    static final int DecimalType = 1;
+    static final int TimestampType = 2;
+    static final int StringType = 3;
+    static final String[] TypeNames = { "LONG", "DECIMAL", "TIMESTAMP", "STRING" };
+    static final int DeltaEncoding = 0;
+    static final int DictionaryEncoding = 1;
+    private static final BigDecimal LongMin = BigDecimal.valueOf(java.lang.Long.MIN_VALUE);
+    private static final BigDecimal LongMax = BigDecimal.valueOf(java.lang.Long.MAX_VALUE);
+
+    // Member Variables
+    private final String name;
+    private final int type;
+    private final Object[] values;
+    private final DataOutputStream out;
+    private int size;
+    private int blockNulls;
+    private long nulls;
+    private long blocks;
+    private long bytes;
+    private Object min;
+    private Object max;
+}
+
+/*
+    The FakebookColumnReader class scans a column file written by FakebookColumnWriter
+    one block at a time. nextBlock() reads a block's header, so a scan can check the
+    block's minimum and maximum and skip it without decoding; getValues() decodes it.
+*/
+final class FakebookColumnReader implements AutoCloseable {
+    // [Constructor]
+    // EFFECTS:  opens <file> and reads its header
+    public FakebookColumnReader(File file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        if (in.readInt() != FakebookColumnWriter.Magic || in.readInt() != FakebookColumnWriter.Version) {
+            in.close();
+            throw new IOException(file + " is not a version " + FakebookColumnWriter.Version + " column file");
+        }
+        type = in.readByte();
+        name = readString(in);
+    }
+
+    // [Next Block Function]
+    // MODIFIES: this
+    // EFFECTS:  moves to the next block and returns true, or returns false at the end
+    //   of the file
+    public boolean nextBlock() throws IOException {
+        try {
+            rows = in.readInt();
+        }
+        catch (EOFException e) {
+            return false;
+        }
+        nulls = in.readInt();
+        encoding = in.readByte();
+        min = readString(in);
+        max = readString(in);
+        rawLength = in.readInt();
+        compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        return true;
+    }
+
+    // [Accessors]
+    public String getName() { return name; }
+    public int getType() { return type; }
+    public int getRows() { return rows; }
+    public int getNulls() { return nulls; }
+    public String getMin() { return min; }          // as FakebookColumnWriter.format
+    public String getMax() { return max; }
+
+    // [Values Function]
+    // EFFECTS:  returns the values of the current block: Long for LONG columns,
+    //   BigDecimal for DECIMAL, Timestamp for TIMESTAMP, String for STRING, or null
+    public Object[] getValues() throws IOException {
+        byte[] payload = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < rawLength) {
+                int inflated = inflater.inflate(payload, length, rawLength - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated block in column " + name);
+                }
+                length += inflated;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Corrupt block in column " + name, e);
+        }
+        finally {
+            inflater.end();
+        }
+
+        position = 0;
+        byte[] bitmap = null;
+        if (nulls > 0) {
+            bitmap = Arrays.copyOf(payload, (rows + 7) / 8);
+            position = bitmap.length;
+        }
+        String[] dictionary = null;
+        if (encoding == FakebookColumnWriter.DictionaryEncoding) {
+            dictionary = new String[(int) readVarLong(payload)];
+            for (int idx = 0; idx < dictionary.length; idx++) {
+                int length = (int) readVarLong(payload);
+                dictionary[idx] = new String(payload, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+        }
+
+        Object[] values = new Object[rows];
+        long previous = 0;
+        for (int idx = 0; idx < rows; idx++) {
+            if (bitmap != null && (bitmap[idx >> 3] & (1 << (idx & 7))) != 0) {
+                continue;
+            }
+            if (dictionary != null) {
+                String value = dictionary[(int) readVarLong(payload)];
+                values[idx] = type == FakebookColumnWriter.DecimalType ? new BigDecimal(value) : value;
+                continue;
+            }
+            long zigzag = readVarLong(payload);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            switch (type) {
+                case FakebookColumnWriter.TimestampType:
+                    values[idx] = new Timestamp(previous);
+                    break;
+                case FakebookColumnWriter.DecimalType:
+                    values[idx] = BigDecimal.valueOf(previous);
+                    break;
+                default:
+                    values[idx] = previous;
+                    break;
+            }
+        }
+        return values;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long readVarLong(byte[] payload) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = payload[position++];
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Member Variables
+    private final DataInputStream in;
+    private final String name;
+    private final int type;
+    private int rows;
+    private int nulls;
+    private int encoding;
+    private String min;
+    private String max;
+    private int rawLength;
+    private byte[] compressed;
+    private int position;
+}
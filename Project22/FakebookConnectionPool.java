@@ -0,0 +1,686 @@
+package project2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The FakebookConnectionPool class hands out a bounded number of JDBC connections and
+    keeps a per-connection cache of prepared statements. Connections obtained through
+    borrow() are proxies: closing one returns the physical connection to the pool, and
+    calling prepareStatement on one returns a cached statement whenever the same SQL
+    text (with the same result set type and concurrency) was prepared on that physical
+    connection before. Any FakebookOracle subclass constructed with a borrowed connection
+    therefore reuses parsed statements without any change to its code.
+
+    The physical connection never leaks out of a proxy: statements, result sets, and
+    metadata reached through one are wrapped so that getConnection() and getStatement()
+    return the proxies, and closing them cannot close the physical connection or a cached
+    statement. A connection whose read-only flag or transaction isolation was changed
+    gets the values it was opened with back before it returns to the pool, and the
+    statements still open on it are closed (cached ones are handed back to the cache);
+    from then on every object reached through the proxy rejects further calls.
+
+    The pool only depends on a ConnectionFactory, so it can be pointed at any JDBC URL
+    (for instance a local embedded database standing in for Oracle).
+*/
+public final class FakebookConnectionPool implements AutoCloseable {
+    // [Connection Factory Interface]
+    // Opens a new physical connection whenever the pool needs to grow
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    // [Constructor]
+    // REQUIRES: <maxConnections> > 0, <statementCacheSize> >= 0, <timeoutMillis> > 0
+    public FakebookConnectionPool(ConnectionFactory factory, int maxConnections, int statementCacheSize,
+                                  long timeoutMillis) {
+        if (maxConnections <= 0 || statementCacheSize < 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("invalid pool configuration");
+        }
+        this.factory = factory;
+        this.statementCacheSize = statementCacheSize;
+        this.timeoutMillis = timeoutMillis;
+        permits = new Semaphore(maxConnections, true);
+        idle = new ArrayBlockingQueue<PooledEntry>(maxConnections);
+        all = new ArrayList<PooledEntry>();
+        metrics = new FakebookPoolMetrics();
+    }
+
+    // [URL Factory Function]
+    // EFFECTS:  returns a pool that opens connections through DriverManager
+    public static FakebookConnectionPool forUrl(final String url, final String user, final String password,
+                                                int maxConnections, int statementCacheSize) {
+        return new FakebookConnectionPool(new ConnectionFactory() {
+            public Connection open() throws SQLException {
+                return DriverManager.getConnection(url, user, password);
+            }
+        }, maxConnections, statementCacheSize, DefaultTimeoutMillis);
+    }
+
+    // [Borrow Function]
+    // MODIFIES: this
+    // EFFECTS:  waits (at most the configured timeout) for a free connection and returns
+    //   a proxy for it; closing the proxy returns the connection to the pool
+    public Connection borrow() throws SQLException {
+        long begin = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                metrics.timeouts.incrementAndGet();
+                throw new SQLException("Timed out waiting for a pooled connection");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a pooled connection", e);
+        }
+
+        PooledEntry entry = null;
+        try {
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                entry = idle.poll();
+            }
+            if (entry != null && entry.physical.isClosed()) {
+                discard(entry);
+                entry = null;
+            }
+            if (entry == null) {
+                Connection physical = factory.open();
+                try {
+                    entry = new PooledEntry(physical);
+                }
+                catch (SQLException e) {
+                    physical.close();
+                    throw e;
+                }
+                metrics.connectionsOpened.incrementAndGet();
+                synchronized (this) {
+                    all.add(entry);
+                }
+            }
+        }
+        catch (SQLException e) {
+            permits.release();
+            throw e;
+        }
+
+        long waited = System.nanoTime() - begin;
+        metrics.recordWait(waited);
+        entry.checkedOutAt = System.nanoTime();
+        return entry.newHandle();
+    }
+
+    // [Metrics Accessor]
+    // EFFECTS:  returns the live metrics of this pool
+    public FakebookPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    // [Close Function]
+    // MODIFIES: this
+    // EFFECTS:  closes every physical connection; connections that are still checked out
+    //   are closed as well
+    public void close() throws SQLException {
+        List<PooledEntry> entries;
+        synchronized (this) {
+            closed = true;
+            entries = new ArrayList<PooledEntry>(all);
+            all.clear();
+            idle.clear();
+        }
+        SQLException failure = null;
+        for (PooledEntry entry : entries) {
+            try {
+                entry.cache.clear();
+                entry.physical.close();
+            }
+            catch (SQLException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // [Release Function]
+    // EFFECTS:  resets <entry> and makes it available to the next borrower
+    private void release(PooledEntry entry) {
+        metrics.recordCheckout(System.nanoTime() - entry.checkedOutAt);
+        boolean reusable = true;
+        try {
+            if (!entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            if (entry.physical.getTransactionIsolation() != entry.isolation) {
+                entry.physical.setTransactionIsolation(entry.isolation);
+            }
+            if (entry.physical.isReadOnly() != entry.readOnly) {
+                entry.physical.setReadOnly(entry.readOnly);
+            }
+        }
+        catch (SQLException e) {
+            reusable = false;
+        }
+        synchronized (this) {
+            if (closed || !reusable) {
+                reusable = false;
+            }
+            else {
+                idle.offer(entry);
+            }
+        }
+        if (!reusable) {
+            discard(entry);
+        }
+        permits.release();
+    }
+
+    // [Discard Function]
+    // EFFECTS:  closes <entry> and forgets about it
+    private void discard(PooledEntry entry) {
+        synchronized (this) {
+            all.remove(entry);
+        }
+        try {
+            entry.cache.clear();
+            entry.physical.close();
+        }
+        catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // [Reflective Invoke Function]
+    // EFFECTS:  invokes <method> on <target>, rethrowing the exception the target threw
+    static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // [Shield Function]
+    // MODIFIES: <checkout>
+    // EFFECTS:  returns <result>, a value returned by a JDBC object reached through
+    //   <checkout>'s connection, with a statement, result set, or metadata object wrapped
+    //   so that its getConnection() returns that connection and a result set's
+    //   getStatement() returns <statement>; a wrapped statement is tracked by <checkout>
+    //   until it is closed. Any other value is returned as is
+    static Object shield(Object result, Checkout checkout, Statement statement) {
+        Class<?> type;
+        if (result instanceof CallableStatement) {
+            type = CallableStatement.class;
+        }
+        else if (result instanceof PreparedStatement) {
+            type = PreparedStatement.class;
+        }
+        else if (result instanceof Statement) {
+            type = Statement.class;
+        }
+        else if (result instanceof ResultSet) {
+            type = ResultSet.class;
+        }
+        else if (result instanceof DatabaseMetaData) {
+            type = DatabaseMetaData.class;
+        }
+        else {
+            return result;
+        }
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                                              new ShieldHandle(result, checkout, statement));
+        if (proxy instanceof Statement) {
+            checkout.track((Statement) proxy);
+        }
+        return proxy;
+    }
+
+    /*
+        A Checkout is the state one borrow() shares with every statement, result set, and
+        metadata object reached through its connection proxy: the proxy itself, the
+        statements handed out and not yet closed, and whether the connection has been
+        returned to the pool.
+    */
+    static final class Checkout {
+        // [Track Functions]
+        // MODIFIES: this
+        synchronized void track(Statement statement) {
+            open.put(statement, Boolean.TRUE);
+        }
+
+        synchronized void untrack(Statement statement) {
+            open.remove(statement);
+        }
+
+        // [Release Function]
+        // MODIFIES: this
+        // EFFECTS:  closes every statement still open, which hands cached ones back to
+        //   their cache, then marks this checkout released
+        void release() {
+            List<Statement> statements;
+            synchronized (this) {
+                statements = new ArrayList<Statement>(open.keySet());
+                open.clear();
+            }
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                }
+                catch (SQLException e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+            released = true;
+        }
+
+        Connection connection;
+        volatile boolean released;
+        private final Map<Statement, Boolean> open = new IdentityHashMap<Statement, Boolean>();
+    }
+
+    /*
+        A ShieldHandle is the invocation handler behind a statement, result set, or
+        metadata object reached through a pooled connection. It forwards every call to the
+        physical object but answers getConnection() and getStatement() with the proxies,
+        and shields whatever the call returns in turn. Once the connection has been
+        returned to the pool it rejects every further call.
+    */
+    private static final class ShieldHandle implements InvocationHandler {
+        ShieldHandle(Object target, Checkout checkout, Statement statement) {
+            this.target = target;
+            this.checkout = checkout;
+            this.statement = statement;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (checkout.released) {
+                if (name.equals("close")) {
+                    return null;
+                }
+                if (name.equals("isClosed")) {
+                    return true;
+                }
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            if (name.equals("getConnection") && args == null) {
+                return checkout.connection;
+            }
+            if (name.equals("getStatement") && args == null) {
+                return statement;
+            }
+            Object result = FakebookConnectionPool.invoke(target, method, args);
+            if (name.equals("close") && proxy instanceof Statement) {
+                checkout.untrack((Statement) proxy);
+            }
+            return shield(result, checkout, proxy instanceof Statement ? (Statement) proxy : statement);
+        }
+
+        private final Object target;
+        private final Checkout checkout;
+        private final Statement statement;
+    }
+
+    /*
+        A PooledEntry is one physical connection together with its statement cache and
+        the read-only flag and transaction isolation it was opened with.
+    */
+    private final class PooledEntry {
+        PooledEntry(Connection physical) throws SQLException {
+            this.physical = physical;
+            cache = new FakebookStatementCache(physical, statementCacheSize, metrics);
+            readOnly = physical.isReadOnly();
+            isolation = physical.getTransactionIsolation();
+        }
+
+        Connection newHandle() {
+            Checkout checkout = new Checkout();
+            checkout.connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandle(this, checkout));
+            return checkout.connection;
+        }
+
+        final Connection physical;
+        final FakebookStatementCache cache;
+        final boolean readOnly;
+        final int isolation;
+        long checkedOutAt;
+    }
+
+    /*
+        A ConnectionHandle is the invocation handler behind one checkout of a pooled
+        connection. Closing it closes the statements of the checkout before the connection
+        goes back to the pool; from then on it rejects every further call.
+    */
+    private final class ConnectionHandle implements InvocationHandler {
+        ConnectionHandle(PooledEntry entry, Checkout checkout) {
+            this.entry = entry;
+            this.checkout = checkout;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!checkout.released) {
+                    checkout.release();
+                    release(entry);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return checkout.released;
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("toString")) {
+                return "Pooled(" + entry.physical + ")";
+            }
+            if (checkout.released) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            if (name.equals("prepareStatement") && args != null) {
+                if (args.length == 1) {
+                    return entry.cache.prepare((String) args[0], ResultSet.TYPE_FORWARD_ONLY,
+                                               ResultSet.CONCUR_READ_ONLY, checkout);
+                }
+                if (args.length == 3 && method.getParameterTypes()[1] == int.class) {
+                    return entry.cache.prepare((String) args[0], (Integer) args[1], (Integer) args[2], checkout);
+                }
+            }
+            return shield(FakebookConnectionPool.invoke(entry.physical, method, args), checkout, null);
+        }
+
+        private final PooledEntry entry;
+        private final Checkout checkout;
+    }
+
+    // Constants
+    public static final long DefaultTimeoutMillis = 30000L;
+
+    // Member Variables
+    private final ConnectionFactory factory;
+    private final int statementCacheSize;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final ArrayBlockingQueue<PooledEntry> idle;
+    private final List<PooledEntry> all;
+    private final FakebookPoolMetrics metrics;
+    private boolean closed;
+}
+
+/*
+    The FakebookStatementCache class keeps the most recently used prepared statements of
+    one physical connection, keyed by SQL text, result set type, and concurrency. The
+    statements it hands out are proxies: closing one only clears its parameters and
+    makes it available again. A statement that is already in use is never handed out
+    twice; a second request for the same SQL gets a private, uncached statement instead.
+*/
+final class FakebookStatementCache {
+    // [Constructor]
+    // REQUIRES: <capacity> >= 0
+    public FakebookStatementCache(Connection physical, int capacity, FakebookPoolMetrics metrics) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.metrics = metrics;
+        entries = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true);
+    }
+
+    // [Prepare Function]
+    // MODIFIES: this
+    // EFFECTS:  returns a prepared statement for <sql>, reusing a cached one if possible;
+    //   it is tracked by <owner>, the checkout of the pooled connection asking for it,
+    //   and its getConnection() returns that connection
+    public synchronized PreparedStatement prepare(String sql, int type, int concurrency,
+                                                  FakebookConnectionPool.Checkout owner) throws SQLException {
+        String key = type + ":" + concurrency + ":" + sql;
+        CachedStatement cached = entries.get(key);
+        if (cached != null && !cached.inUse) {
+            metrics.cacheHits.incrementAndGet();
+            return cached.checkout(owner);
+        }
+
+        metrics.cacheMisses.incrementAndGet();
+        PreparedStatement statement = physical.prepareStatement(sql, type, concurrency);
+        if (cached != null || capacity == 0) {
+            return (PreparedStatement) FakebookConnectionPool.shield(statement, owner, null);
+        }
+
+        cached = new CachedStatement(key, statement);
+        entries.put(key, cached);
+        evict();
+        return cached.checkout(owner);
+    }
+
+    // [Clear Function]
+    // MODIFIES: this
+    // EFFECTS:  closes and forgets every cached statement
+    public synchronized void clear() {
+        for (CachedStatement cached : entries.values()) {
+            cached.closePhysical();
+        }
+        entries.clear();
+    }
+
+    // [Eviction Function]
+    // EFFECTS:  drops least recently used statements until the cache fits its capacity;
+    //   statements that are in use are closed when they are handed back
+    private void evict() {
+        Iterator<Map.Entry<String, CachedStatement>> it = entries.entrySet().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            CachedStatement victim = it.next().getValue();
+            it.remove();
+            if (!victim.inUse) {
+                victim.closePhysical();
+            }
+        }
+    }
+
+    // [Checkin Function]
+    // EFFECTS:  marks <cached> as free, closing it if it was evicted meanwhile
+    private synchronized void checkin(CachedStatement cached) {
+        cached.inUse = false;
+        try {
+            cached.statement.clearParameters();
+        }
+        catch (SQLException e) {
+            entries.remove(cached.key);
+        }
+        if (entries.get(cached.key) != cached) {
+            cached.closePhysical();
+        }
+    }
+
+    /*
+        A CachedStatement is one physical prepared statement plus its checkout state.
+    */
+    private final class CachedStatement {
+        CachedStatement(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        PreparedStatement checkout(FakebookConnectionPool.Checkout owner) {
+            inUse = true;
+            PreparedStatement proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new StatementHandle(this, owner));
+            owner.track(proxy);
+            return proxy;
+        }
+
+        void closePhysical() {
+            try {
+                statement.close();
+            }
+            catch (SQLException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+
+        final String key;
+        final PreparedStatement statement;
+        boolean inUse;
+    }
+
+    /*
+        A StatementHandle is the invocation handler behind one checkout of a cached
+        statement. Its getConnection() and the getStatement() of its result sets return
+        the proxies, never the physical objects. It is closed (and the statement handed
+        back) when its connection is returned to the pool, if not before.
+    */
+    private final class StatementHandle implements InvocationHandler {
+        StatementHandle(CachedStatement cached, FakebookConnectionPool.Checkout owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!released) {
+                    released = true;
+                    checkin(cached);
+                    owner.untrack((Statement) proxy);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return released || owner.released;
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (released || owner.released) {
+                throw new SQLException("Statement has been closed");
+            }
+            if (name.equals("getConnection")) {
+                return owner.connection;
+            }
+            Object result = FakebookConnectionPool.invoke(cached.statement, method, args);
+            return FakebookConnectionPool.shield(result, owner, (Statement) proxy);
+        }
+
+        private final CachedStatement cached;
+        private final FakebookConnectionPool.Checkout owner;
+        private boolean released;
+    }
+
+    // Member Variables
+    private final Connection physical;
+    private final int capacity;
+    private final FakebookPoolMetrics metrics;
+    private final LinkedHashMap<String, CachedStatement> entries;
+}
+
+/*
+    The FakebookPoolMetrics class accumulates counters describing a FakebookConnectionPool:
+    how long borrowers waited for a connection, how long connections stayed checked out,
+    and how often the statement cache could serve a prepareStatement call.
+*/
+final class FakebookPoolMetrics {
+    // [Wait Recording Function]
+    void recordWait(long nanos) {
+        checkouts.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        updateMax(maxWaitNanos, nanos);
+    }
+
+    // [Checkout Recording Function]
+    void recordCheckout(long nanos) {
+        checkins.incrementAndGet();
+        checkoutNanos.addAndGet(nanos);
+        updateMax(maxCheckoutNanos, nanos);
+    }
+
+    // [Accessors]
+    public long getCheckouts() { return checkouts.get(); }
+    public long getTimeouts() { return timeouts.get(); }
+    public long getConnectionsOpened() { return connectionsOpened.get(); }
+    public long getTotalWaitNanos() { return waitNanos.get(); }
+    public long getMaxWaitNanos() { return maxWaitNanos.get(); }
+    public long getTotalCheckoutNanos() { return checkoutNanos.get(); }
+    public long getMaxCheckoutNanos() { return maxCheckoutNanos.get(); }
+    public long getCacheHits() { return cacheHits.get(); }
+    public long getCacheMisses() { return cacheMisses.get(); }
+
+    // [Cache Hit Rate Function]
+    // EFFECTS:  returns the fraction of prepareStatement calls served from the cache
+    public double getCacheHitRate() {
+        long hits = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    // [FakebookPoolMetrics-to-String Converter]
+    // EFFECTS:  returns a string representation of this FakebookPoolMetrics instance
+    public String toString() {
+        long out = checkouts.get();
+        long in = checkins.get();
+        return String.format("Pool: %d checkout(s), %d connection(s) opened, %d timeout(s)%n" +
+            "Pool wait: avg %.3f ms, max %.3f ms%n" +
+            "Pool checkout: avg %.3f ms, max %.3f ms%n" +
+            "Statement cache: %d hit(s), %d miss(es), hit rate %.1f%%",
+            out, connectionsOpened.get(), timeouts.get(),
+            out == 0 ? 0.0 : waitNanos.get() / 1e6 / out, maxWaitNanos.get() / 1e6,
+            in == 0 ? 0.0 : checkoutNanos.get() / 1e6 / in, maxCheckoutNanos.get() / 1e6,
+            cacheHits.get(), cacheMisses.get(), getCacheHitRate() * 100.0);
+    }
+
+    // [Max Update Function]
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    // Member Variables
+    final AtomicLong checkouts = new AtomicLong();
+    final AtomicLong checkins = new AtomicLong();
+    final AtomicLong timeouts = new AtomicLong();
+    final AtomicLong connectionsOpened = new AtomicLong();
+    final AtomicLong waitNanos = new AtomicLong();
+    final AtomicLong maxWaitNanos = new AtomicLong();
+    final AtomicLong checkoutNanos = new AtomicLong();
+    final AtomicLong maxCheckoutNanos = new AtomicLong();
+    final AtomicLong cacheHits = new AtomicLong();
+    final AtomicLong cacheMisses = new AtomicLong();
+}
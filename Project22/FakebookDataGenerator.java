@@ -0,0 +1,568 @@
+package project2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/*
+    The FakebookDataGenerator class produces a deterministic synthetic Fakebook dataset of
+    any size and either writes it to tab-separated files (one per table) or loads it into
+    a database through batched inserts. The same <users> and <seed> always produce the
+    same rows, so benchmark and regression runs can start from identical data.
+
+    The data is skewed the way real social data is:
+      * friend degrees follow a power law; users pick friends among earlier users with a
+        preference for low IDs, so early users become hubs
+      * first names, last names, cities, and states are drawn from Zipf distributions
+      * each album has a small "cast" of users living near its owner, and its photos tag
+        subsets of that cast, so tags cluster
+    Nothing is kept in memory per user, so the generator scales to tens of millions of
+    users; rows are streamed to the sink as they are produced.
+
+    Usage: FakebookDataGenerator <users> <seed> <output directory> [<jdbc url> <user> <password>]
+*/
+public final class FakebookDataGenerator {
+    // [Main Function]
+    public static void main(String[] args) throws IOException, SQLException {
+        long users = Long.parseLong(args[0]);
+        long seed = Long.parseLong(args[1]);
+        File directory = new File(args[2]);
+        new FakebookDataGenerator(users, seed).generate(new FileSink(directory));
+        if (args.length > 3) {
+            try (FakebookConnectionPool pool = FakebookConnectionPool.forUrl(args[3],
+                     args.length > 4 ? args[4] : "", args.length > 5 ? args[5] : "", 1, 0);
+                 Connection connection = pool.borrow()) {
+                FakebookSchema.create(connection);
+                load(directory, connection);
+            }
+        }
+    }
+
+    // [Constructor]
+    // REQUIRES: <users> > 0
+    public FakebookDataGenerator(long users, long seed) {
+        if (users <= 0) {
+            throw new IllegalArgumentException("users must be positive");
+        }
+        this.users = users;
+        this.seed = seed;
+        cities = Math.max(20, (int) Math.min(100000, users / 200));
+        firstNames = new ZipfSampler(FirstNames.length, 0.8);
+        lastNames = new ZipfSampler(LastNames.length, 1.0);
+        cityPicker = new ZipfSampler(cities, 0.9);
+        statePicker = new ZipfSampler(States.length, 0.7);
+    }
+
+    // [Prepare Function]
+    // MODIFIES: <connection>
+    // EFFECTS:  creates the Fakebook tables and fills them with the dataset for <users>
+    //   and <seed>; the dataset is generated into <cache> the first time and loaded from
+    //   there afterwards, so every run sees identical rows
+    public static void prepare(Connection connection, long users, long seed, File cache)
+            throws IOException, SQLException {
+        File directory = new File(cache, "fakebook-" + users + "-" + seed);
+        if (!new File(directory, Done).exists()) {
+            new FakebookDataGenerator(users, seed).generate(new FileSink(directory));
+        }
+        FakebookSchema.drop(connection);
+        FakebookSchema.create(connection);
+        load(directory, connection);
+    }
+
+    // [Generate Function]
+    // MODIFIES: <sink>
+    // EFFECTS:  streams every row of the dataset into <sink> and closes it
+    public void generate(RowSink sink) throws IOException, SQLException {
+        try {
+            generateUsers(sink);
+            generateCities(sink);
+            generatePrograms(sink);
+            generateFriends(sink);
+            generateUserCities(sink);
+            generateEducation(sink);
+            generateEvents(sink);
+            generateAlbums(sink);
+            generateMessages(sink);
+            sink.finish();
+        }
+        finally {
+            sink.close();
+        }
+    }
+
+    // [Load Function]
+    // MODIFIES: <connection>
+    // EFFECTS:  loads the files written by a FileSink in <directory> through batched inserts
+    public static void load(File directory, Connection connection) throws IOException, SQLException {
+        try (JdbcSink sink = new JdbcSink(connection)) {
+            for (String[] table : FakebookSchema.Tables) {
+                File file = new File(directory, fileName(table[0]));
+                if (!file.exists()) {
+                    continue;
+                }
+                int[] types = columnTypes(table[1]);
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        sink.row(table[0], parse(line, types));
+                    }
+                }
+            }
+            sink.finish();
+        }
+    }
+
+    // Table Generators
+    private void generateUsers(RowSink sink) throws IOException, SQLException {
+        SplittableRandom random = random(1);
+        for (long user = 0; user < users; user++) {
+            double gaussian = (random.nextDouble() + random.nextDouble() + random.nextDouble() - 1.5) * 2.0;
+            int year = 1940 + (int) Math.round(Math.max(0, Math.min(65, 40 + gaussian * 15)));
+            sink.row(FakebookOracleConstants.UsersTable,
+                user,
+                FirstNames[firstNames.sample(random)],
+                LastNames[lastNames.sample(random)],
+                random.nextInt(100) < 2 ? null : (Object) year,
+                random.nextInt(100) < 2 ? null : (Object) (1 + random.nextInt(12)),
+                random.nextInt(100) < 2 ? null : (Object) (1 + random.nextInt(28)),
+                random.nextBoolean() ? "male" : "female");
+        }
+    }
+
+    private void generateCities(RowSink sink) throws IOException, SQLException {
+        SplittableRandom random = random(2);
+        for (int city = 1; city <= cities; city++) {
+            sink.row(FakebookOracleConstants.CitiesTable,
+                city, "City " + city, States[statePicker.sample(random)], "Middle Earth");
+        }
+    }
+
+    private void generatePrograms(RowSink sink) throws IOException, SQLException {
+        int program = 1;
+        for (String institution : Institutions) {
+            for (String concentration : Concentrations) {
+                for (String degree : Degrees) {
+                    sink.row(FakebookOracleConstants.ProgramsTable, program++, institution, concentration, degree);
+                }
+            }
+        }
+    }
+
+    // every user <user> befriends a power-law number of earlier users, preferring low IDs;
+    // each pair is therefore produced exactly once, already ordered (USER1_ID < USER2_ID)
+    private void generateFriends(RowSink sink) throws IOException, SQLException {
+        SplittableRandom random = random(3);
+        long[] chosen = new long[MaxDegree];
+        for (long user = 1; user < users; user++) {
+            int degree = (int) Math.min(Math.min(user, MaxDegree), powerLaw(random, MinDegree, DegreeExponent));
+            for (int idx = 0; idx < degree; idx++) {
+                double r = random.nextDouble();
+                chosen[idx] = (long) (user * r * r);
+            }
+            Arrays.sort(chosen, 0, degree);
+            for (int idx = 0; idx < degree; idx++) {
+                if (idx == 0 || chosen[idx] != chosen[idx - 1]) {
+                    sink.row(FakebookOracleConstants.FriendsTable, chosen[idx], user);
+                }
+            }
+        }
+    }
+
+    private void generateUserCities(RowSink sink) throws IOException, SQLException {
+        SplittableRandom random = random(4);
+        for (long user = 0; user < users; user++) {
+            int current = 1 + cityPicker.sample(random);
+            int hometown = random.nextInt(100) < 10 ? current : 1 + cityPicker.sample(random);
+            sink.row(FakebookOracleConstants.CurrentCitiesTable, user, current);
+            sink.row(FakebookOracleConstants.HometownCitiesTable, user, hometown);
+        }
+    }
+
+    private void generateEducation(RowSink sink) throws IOException, SQLException {
+        SplittableRandom random = random(5);
+        int programs = Institutions.length * Concentrations.length * Degrees.length;
+        for (long user = 0; user < users; user++) {
+            int count = random.nextInt(3);
+            int first = 1 + random.nextInt(programs);
+            for (int idx = 0; idx < count; idx++) {
+                int program = 1 + (first - 1 + idx * 7) % programs;
+                sink.row(FakebookOracleConstants.EducationTable, user, program, 1960 + random.nextInt(60));
+            }
+        }
+    }
+
+    private void generateEvents(RowSink sink) throws IOException, SQLException {
+        SplittableRandom random = random(6);
+        long events = Math.max(1, users / 10);
+        for (long event = 0; event < events; event++) {
+            long creator = random.nextLong(users);
+            long start = BaseTime + random.nextLong(YearMillis * 5);
+            sink.row(FakebookOracleConstants.EventsTable,
+                event, creator, "Event " + event, "tagline", "description", "host " + creator,
+                EventTypes[random.nextInt(EventTypes.length)], "subtype", event + " Main Street",
+                1 + cityPicker.sample(random), new Timestamp(start), new Timestamp(start + 3600000L * (1 + random.nextInt(48))));
+            int participants = (int) Math.min(users, powerLaw(random, 1, 2.5));
+            long first = random.nextLong(users);
+            for (int idx = 0; idx < participants; idx++) {
+                sink.row(FakebookOracleConstants.ParticipantsTable,
+                    event, (first + idx) % users, Confirmations[random.nextInt(Confirmations.length)]);
+            }
+        }
+    }
+
+    // albums and their photos are written together so that an album's cover photo is its
+    // first photo; each album's tags are drawn from a small cast living near the owner
+    private void generateAlbums(RowSink sink) throws IOException, SQLException {
+        SplittableRandom random = random(7);
+        long album = 0;
+        long photo = 0;
+        long[] cast = new long[MaxCast];
+        for (long owner = 0; owner < users; owner++) {
+            int albums = random.nextInt(100) < 40 ? 1 + random.nextInt(2) : 0;
+            for (int a = 0; a < albums; a++, album++) {
+                int photos = 1 + (int) Math.min(MaxPhotosPerAlbum - 1, powerLaw(random, 1, 2.0) * 2);
+                long created = BaseTime + random.nextLong(YearMillis * 5);
+                sink.row(FakebookOracleConstants.AlbumsTable,
+                    album, owner, AlbumNames[random.nextInt(AlbumNames.length)], new Timestamp(created),
+                    new Timestamp(created + YearMillis / 12), "link", Visibilities[random.nextInt(Visibilities.length)],
+                    photo);
+
+                int castSize = 1 + random.nextInt(MaxCast);
+                for (int idx = 0; idx < castSize; idx++) {
+                    long neighbor = owner + random.nextLong(2 * CastWindow + 1) - CastWindow;
+                    cast[idx] = Math.floorMod(neighbor, users);
+                }
+                cast[0] = owner;
+
+                for (int p = 0; p < photos; p++, photo++) {
+                    sink.row(FakebookOracleConstants.PhotosTable,
+                        photo, album, "caption", new Timestamp(created + p * 60000L), null, "link");
+                    int tags = (int) Math.min(castSize, powerLaw(random, 1, 2.2)) - (random.nextInt(100) < 30 ? 1 : 0);
+                    int offset = random.nextInt(castSize);
+                    long[] tagged = new long[tags];
+                    for (int idx = 0; idx < tags; idx++) {
+                        tagged[idx] = cast[(offset + idx) % castSize];
+                    }
+                    Arrays.sort(tagged);
+                    for (int idx = 0; idx < tags; idx++) {
+                        if (idx == 0 || tagged[idx] != tagged[idx - 1]) {
+                            sink.row(FakebookOracleConstants.TagsTable,
+                                photo, tagged[idx], new Timestamp(created + p * 60000L), random.nextInt(1000), random.nextInt(1000));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void generateMessages(RowSink sink) throws IOException, SQLException {
+        SplittableRandom random = random(8);
+        for (long message = 0; message < users; message++) {
+            long sender = random.nextLong(users);
+            long receiver = Math.floorMod(sender + random.nextLong(2 * CastWindow + 1) - CastWindow, users);
+            sink.row(FakebookOracleConstants.MessagesTable,
+                message, sender, receiver, "message " + message, new Timestamp(BaseTime + random.nextLong(YearMillis * 5)));
+        }
+    }
+
+    // [Random Function]
+    // EFFECTS:  returns the generator of table number <table>, independent of the others
+    private SplittableRandom random(int table) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + table);
+    }
+
+    // [Power Law Function]
+    // EFFECTS:  returns a Pareto-distributed integer of at least <min> with exponent <alpha>
+    private static long powerLaw(SplittableRandom random, int min, double alpha) {
+        double u = 1.0 - random.nextDouble();
+        return (long) Math.min(Integer.MAX_VALUE, Math.floor(min * Math.pow(u, -1.0 / (alpha - 1.0))));
+    }
+
+    /*
+        A ZipfSampler draws ranks 0 to n-1, rank k having probability proportional to
+        1 / (k + 1)^s, by binary search over the precomputed cumulative distribution.
+    */
+    static final class ZipfSampler {
+        ZipfSampler(int n, double s) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int k = 0; k < n; k++) {
+                total += 1.0 / Math.pow(k + 1, s);
+                cumulative[k] = total;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= total;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int idx = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(cumulative.length - 1, idx >= 0 ? idx : -idx - 1);
+        }
+
+        private final double[] cumulative;
+    }
+
+    /*
+        A RowSink receives generated rows, table by table. Values are Long, Integer,
+        String, Timestamp, or null.
+    */
+    public interface RowSink extends AutoCloseable {
+        void row(String table, Object... values) throws IOException, SQLException;
+        void finish() throws IOException, SQLException;
+        void close() throws IOException, SQLException;
+    }
+
+    /*
+        A FileSink writes one tab-separated file per table into a directory, with \N for
+        NULL, and marks the directory complete once every row has been written.
+    */
+    public static final class FileSink implements RowSink {
+        public FileSink(File directory) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("cannot create " + directory);
+            }
+            this.directory = directory;
+            writers = new HashMap<String, Writer>();
+            line = new StringBuilder();
+        }
+
+        public void row(String table, Object... values) throws IOException {
+            Writer writer = writers.get(table);
+            if (writer == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(directory, fileName(table))), StandardCharsets.UTF_8), 1 << 16);
+                writers.put(table, writer);
+            }
+            line.setLength(0);
+            for (int idx = 0; idx < values.length; idx++) {
+                if (idx != 0) {
+                    line.append('\t');
+                }
+                Object value = values[idx];
+                if (value == null) {
+                    line.append("\\N");
+                }
+                else if (value instanceof Timestamp) {
+                    line.append(((Timestamp) value).getTime());
+                }
+                else {
+                    String text = value.toString();
+                    for (int pos = 0; pos < text.length(); pos++) {
+                        char c = text.charAt(pos);
+                        if (c == '\t' || c == '\n' || c == '\\') {
+                            line.append('\\').append(c == '\t' ? 't' : (c == '\n' ? 'n' : '\\'));
+                        }
+                        else {
+                            line.append(c);
+                        }
+                    }
+                }
+            }
+            line.append('\n');
+            writer.append(line);
+        }
+
+        public void finish() throws IOException {
+            close();
+            new File(directory, Done).createNewFile();
+        }
+
+        public void close() throws IOException {
+            for (Writer writer : writers.values()) {
+                writer.close();
+            }
+            writers.clear();
+        }
+
+        private final File directory;
+        private final Map<String, Writer> writers;
+        private final StringBuilder line;
+    }
+
+    /*
+        A JdbcSink inserts rows through one prepared statement per table, sending them in
+        batches and committing periodically.
+    */
+    public static final class JdbcSink implements RowSink {
+        public JdbcSink(Connection connection) throws SQLException {
+            this.connection = connection;
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            statements = new HashMap<String, PreparedStatement>();
+            pending = new HashMap<String, Integer>();
+        }
+
+        public void row(String table, Object... values) throws SQLException {
+            PreparedStatement stmt = statements.get(table);
+            if (stmt == null) {
+                stmt = connection.prepareStatement("INSERT INTO " + table + " VALUES (" +
+                    FakebookOracle.bindList(values.length) + ")");
+                statements.put(table, stmt);
+                pending.put(table, 0);
+            }
+            for (int idx = 0; idx < values.length; idx++) {
+                if (values[idx] == null) {
+                    stmt.setNull(idx + 1, Types.VARCHAR);
+                }
+                else {
+                    stmt.setObject(idx + 1, values[idx]);
+                }
+            }
+            stmt.addBatch();
+            int count = pending.get(table) + 1;
+            if (count == BatchSize) {
+                stmt.executeBatch();
+                count = 0;
+                if (++batches % BatchesPerCommit == 0) {
+                    connection.commit();
+                }
+            }
+            pending.put(table, count);
+        }
+
+        public void finish() throws SQLException {
+            for (Map.Entry<String, PreparedStatement> entry : statements.entrySet()) {
+                if (pending.get(entry.getKey()) > 0) {
+                    entry.getValue().executeBatch();
+                    pending.put(entry.getKey(), 0);
+                }
+            }
+            connection.commit();
+        }
+
+        public void close() throws SQLException {
+            for (PreparedStatement stmt : statements.values()) {
+                stmt.close();
+            }
+            statements.clear();
+            connection.setAutoCommit(autoCommit);
+        }
+
+        private final Connection connection;
+        private final boolean autoCommit;
+        private final Map<String, PreparedStatement> statements;
+        private final Map<String, Integer> pending;
+        private long batches;
+    }
+
+    // [File Name Function]
+    // EFFECTS:  returns the data file name of <table>, without any schema prefix
+    static String fileName(String table) {
+        return table.substring(table.indexOf('.') + 1) + ".tsv";
+    }
+
+    // [Column Type Function]
+    // EFFECTS:  returns the kind of each column in a FakebookSchema column list:
+    //   'L' integral, 'S' string, 'T' timestamp, 'D' decimal
+    private static int[] columnTypes(String definition) {
+        String[] columns = definition.split(", (?![^()]*\\))");
+        int count = 0;
+        int[] types = new int[columns.length];
+        for (String column : columns) {
+            String[] parts = column.trim().split(" ");
+            if (parts[0].equals("PRIMARY")) {
+                continue;
+            }
+            String type = parts[1];
+            types[count++] = type.startsWith("VARCHAR") ? 'S' : type.startsWith("TIMESTAMP") ? 'T'
+                           : type.startsWith("NUMERIC") ? 'D' : 'L';
+        }
+        return Arrays.copyOf(types, count);
+    }
+
+    // [Parse Function]
+    // EFFECTS:  converts one tab-separated line back into row values
+    private static Object[] parse(String line, int[] types) {
+        Object[] values = new Object[types.length];
+        int begin = 0;
+        for (int idx = 0; idx < types.length; idx++) {
+            int end = line.indexOf('\t', begin);
+            if (end < 0) {
+                end = line.length();
+            }
+            String field = line.substring(begin, end);
+            begin = end + 1;
+            if (field.equals("\\N")) {
+                continue;
+            }
+            switch (types[idx]) {
+                case 'L':
+                    values[idx] = Long.valueOf(field);
+                    break;
+                case 'D':
+                    values[idx] = new java.math.BigDecimal(field);
+                    break;
+                case 'T':
+                    values[idx] = new Timestamp(Long.parseLong(field));
+                    break;
+                default:
+                    values[idx] = field.indexOf('\\') < 0 ? field
+                        : field.replace("\\t", "\t").replace("\\n", "\n").replace("\\\\", "\\");
+                    break;
+            }
+        }
+        return values;
+    }
+
+    // Generation Constants
+    private static final int MinDegree = 2;
+    private static final double DegreeExponent = 2.1;
+    private static final int MaxDegree = 5000;
+    private static final int MaxCast = 12;
+    private static final int CastWindow = 50;
+    private static final int MaxPhotosPerAlbum = 200;
+    private static final int BatchSize = 1000;
+    private static final int BatchesPerCommit = 50;
+    private static final long BaseTime = 1262304000000L;       // 2010-01-01
+    private static final long YearMillis = 365L * 24 * 3600 * 1000;
+    private static final String Done = "_COMPLETE";
+
+    private static final String[] FirstNames = {
+        "Boromir", "Gandalf", "Frodo", "Legolas", "Gimli", "Galadriel", "Arwen", "Eowyn", "Elrond", "Sauron",
+        "Saruman", "Theoden", "Faramir", "Denethor", "Meriadoc", "Pippin", "Freyda", "Isabel", "Lily", "Ella",
+        "Sarah", "Ashley", "Brianna", "Shadya", "Biara", "Velaria", "Ornella", "Zehir", "Raelag", "Gotai",
+        "Kujin", "Hangvul", "Wulfstan", "Agrael", "Ylthin", "Cyrus", "Aranti", "Isabella", "Jonathan", "Bo"
+    };
+    private static final String[] LastNames = {
+        "SMITH", "JOHNSON", "WILLIAMS", "JONES", "BROWN", "DAVIS", "MILLER", "WILSON", "MOORE", "TAYLOR",
+        "ANDERSON", "THOMAS", "JACKSON", "WHITE", "HARRIS", "MARTIN", "THOMPSON", "GARCIA", "MARTINEZ", "ROBINSON",
+        "CLARK", "RODRIGUEZ", "LEWIS", "LEE", "WALKER", "HALL", "ALLEN", "YOUNG", "HERNANDEZ", "KING"
+    };
+    private static final String[] States = {
+        "Gondor", "Rohan", "Mordor", "Eriador", "Rhovanion", "Harad", "Rhun", "Lindon", "Arnor", "Dorwinion"
+    };
+    private static final String[] Institutions = { "Minas Tirith University", "Rivendell College", "Isengard Institute", "Shire Academy" };
+    private static final String[] Concentrations = { "Computer Science", "History", "Lore", "Smithing", "Herbalism" };
+    private static final String[] Degrees = { "BS", "MS", "PhD" };
+    private static final String[] EventTypes = { "Party", "Feast", "Council", "Battle", "Wedding" };
+    private static final String[] Confirmations = { "attending", "unsure", "declined", "not_replied" };
+    private static final String[] AlbumNames = { "Mountains", "Friends", "Creatures", "Rivers", "Battles", "Feasts" };
+    private static final String[] Visibilities = { "EVERYONE", "FRIENDS", "FRIENDS_OF_FRIENDS", "MYSELF" };
+
+    // Member Variables
+    private final long users;
+    private final long seed;
+    private final int cities;
+    private final ZipfSampler firstNames;
+    private final ZipfSampler lastNames;
+    private final ZipfSampler cityPicker;
+    private final ZipfSampler statePicker;
+}
@@ -0,0 +1,579 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+    The FakebookEtlLoader class replaces Project1/loadData.sql. It fills the Project1
+    tables from the public source tables (PUBLIC_USER_INFORMATION, PUBLIC_ARE_FRIENDS,
+    PUBLIC_EVENT_INFORMATION, PUBLIC_PHOTO_INFORMATION, PUBLIC_TAG_INFORMATION) in two
+    steps:
+
+      * extract: each source table is read once, on its own connection, all of them at
+        the same time. Cities and programs are deduplicated in hash dictionaries and get
+        their IDs there, from one block starting past the largest ID already in the
+        target, instead of from a sequence trigger per row; a city is a
+        (city, state, country) triple however many users or events name it, which
+        replaces the quadratic self-join loadData.sql uses for hometowns. Friend pairs
+        are ordered in Java, and every table is deduplicated on its primary key.
+      * load: the rows are written through batched inserts on parallel connections, one
+        slice of a table per connection, in waves that respect the foreign keys (users,
+        cities, and programs first; tags last). Albums and photos reference each other,
+        so they are written together in one transaction.
+
+    On Oracle the Project1 triggers that assign IDs and order friend pairs are disabled
+    for the load and re-enabled afterwards, and the ID sequences are advanced past the
+    IDs the loader assigned, so later single-row inserts keep working.
+
+    Unlike loadData.sql, events held in a city no user lives in are kept: their city is
+    added to Cities.
+
+    Usage: FakebookEtlLoader <jdbc url> <user> <password> [<connections>]
+    with the table prefixes read from system properties:
+        fakebook.etl.source        prefix of the source tables (default "jsoren.PUBLIC_")
+        fakebook.etl.target        prefix of the Project1 tables (default none)
+*/
+public final class FakebookEtlLoader {
+    // [Main Function]
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 3) {
+            System.err.println("Usage: FakebookEtlLoader <jdbc url> <user> <password> [<connections>]");
+            System.exit(1);
+        }
+        if (args[0].startsWith("jdbc:oracle:")) {
+            try {
+                Class.forName("oracle.jdbc.driver.OracleDriver");
+            }
+            catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        try (FakebookConnectionPool pool = FakebookConnectionPool.forUrl(args[0], args[1], args[2],
+                 Math.max(connections, ExtractTasks), 0)) {
+            new FakebookEtlLoader(pool, connections, System.getProperty("fakebook.etl.source", "jsoren.PUBLIC_"),
+                System.getProperty("fakebook.etl.target", "")).load();
+        }
+    }
+
+    // [Constructor]
+    // REQUIRES: <pool> can hand out at least <connections> connections and at least five
+    //   (one per source table), <connections> > 0
+    // EFFECTS:  creates a loader reading the tables prefixed <source> and writing the
+    //   Project1 tables prefixed <target>
+    public FakebookEtlLoader(FakebookConnectionPool pool, int connections, String source, String target) {
+        if (connections <= 0) {
+            throw new IllegalArgumentException("connections must be positive");
+        }
+        this.pool = pool;
+        this.connections = connections;
+        this.source = source;
+        this.target = target;
+        users = new Table(target + "USERS", "USER_ID, FIRST_NAME, LAST_NAME, YEAR_OF_BIRTH, MONTH_OF_BIRTH, DAY_OF_BIRTH, GENDER", 1);
+        friends = new Table(target + "FRIENDS", "USER1_ID, USER2_ID", 2);
+        cities = new Table(target + "CITIES", "CITY_ID, CITY_NAME, STATE_NAME, COUNTRY_NAME", 1);
+        currentCities = new Table(target + "USER_CURRENT_CITIES", "USER_ID, CURRENT_CITY_ID", 2);
+        hometownCities = new Table(target + "USER_HOMETOWN_CITIES", "USER_ID, HOMETOWN_CITY_ID", 2);
+        programs = new Table(target + "PROGRAMS", "PROGRAM_ID, INSTITUTION, CONCENTRATION, DEGREE", 1);
+        education = new Table(target + "EDUCATION", "USER_ID, PROGRAM_ID, PROGRAM_YEAR", 2);
+        events = new Table(target + "USER_EVENTS", "EVENT_ID, EVENT_CREATOR_ID, EVENT_NAME, EVENT_TAGLINE, " +
+            "EVENT_DESCRIPTION, EVENT_HOST, EVENT_TYPE, EVENT_SUBTYPE, EVENT_ADDRESS, EVENT_CITY_ID, " +
+            "EVENT_START_TIME, EVENT_END_TIME", 1);
+        albums = new Table(target + "ALBUMS", "ALBUM_ID, ALBUM_OWNER_ID, ALBUM_NAME, ALBUM_CREATED_TIME, " +
+            "ALBUM_MODIFIED_TIME, ALBUM_LINK, ALBUM_VISIBILITY, COVER_PHOTO_ID", 1);
+        photos = new Table(target + "PHOTOS", "PHOTO_ID, ALBUM_ID, PHOTO_CAPTION, PHOTO_CREATED_TIME, " +
+            "PHOTO_MODIFIED_TIME, PHOTO_LNK", 1);
+        tags = new Table(target + "TAGS", "TAG_PHOTO_ID, TAG_SUBJECT_ID, TAGE_CREATED_TIME, TAG_X, TAG_Y", 2);
+    }
+
+    // [Load Function]
+    // MODIFIES: the target tables
+    // EFFECTS:  extracts every source table and loads the Project1 tables from them,
+    //   printing the rows and time per table
+    public void load() throws SQLException {
+        long beginTime = System.nanoTime();
+        boolean oracle;
+        try (Connection connection = pool.borrow()) {
+            oracle = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("oracle");
+            cityIDs = new Dictionary(cities, maxID(connection, cities.name, "CITY_ID") + 1);
+            programIDs = new Dictionary(programs, maxID(connection, programs.name, "PROGRAM_ID") + 1);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(connections, ExtractTasks));
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws SQLException {
+                    extractUsers();
+                    return null;
+                }
+            }));
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws SQLException {
+                    extractFriends();
+                    return null;
+                }
+            }));
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws SQLException {
+                    extractEvents();
+                    return null;
+                }
+            }));
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws SQLException {
+                    extractPhotos();
+                    return null;
+                }
+            }));
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws SQLException {
+                    extractTags();
+                    return null;
+                }
+            }));
+            awaitAll(futures);
+            System.out.println(String.format("Extracted %d source tables in %.3f s", ExtractTasks,
+                (System.nanoTime() - beginTime) / 1e9));
+
+            if (oracle) {
+                setTriggers("DISABLE");
+            }
+            try {
+                loadWave(executor, users, cities, programs);
+                loadWave(executor, friends, currentCities, hometownCities, education, events);
+                loadTogether(executor, albums, photos);
+                loadWave(executor, tags);
+            }
+            finally {
+                if (oracle) {
+                    setTriggers("ENABLE");
+                }
+            }
+            if (oracle) {
+                try (Connection connection = pool.borrow();
+                     Statement stmt = connection.createStatement()) {
+                    advanceSequence(stmt, target + "city_id_counter", cityIDs.lastID());
+                    advanceSequence(stmt, target + "program_id_counter", programIDs.lastID());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        System.out.println(String.format("Total Time: %.3f s (%d connection(s))",
+            (System.nanoTime() - beginTime) / 1e9, connections));
+    }
+
+    // Extraction
+    // [Extract Users Function]
+    // EFFECTS:  reads PUBLIC_USER_INFORMATION into Users, Cities, the user city tables,
+    //   Programs, and Education
+    private void extractUsers() throws SQLException {
+        try (Connection connection = pool.borrow();
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(FetchSize);
+            ResultSet rst = stmt.executeQuery(
+                "SELECT USER_ID, FIRST_NAME, LAST_NAME, YEAR_OF_BIRTH, MONTH_OF_BIRTH, DAY_OF_BIRTH, GENDER, " +
+                "CURRENT_CITY, CURRENT_STATE, CURRENT_COUNTRY, HOMETOWN_CITY, HOMETOWN_STATE, HOMETOWN_COUNTRY, " +
+                "INSTITUTION_NAME, PROGRAM_CONCENTRATION, PROGRAM_DEGREE, PROGRAM_YEAR " +
+                "FROM " + source + "USER_INFORMATION");
+            while (rst.next()) {
+                long userID = rst.getLong(1);
+                users.add(userID, rst.getString(2), rst.getString(3),
+                    integer(rst, 4), integer(rst, 5), integer(rst, 6), rst.getString(7));
+                if (allPresent(rst, 8, 10)) {
+                    currentCities.add(userID, cityIDs.idOf(rst.getString(8), rst.getString(9), rst.getString(10)));
+                }
+                if (allPresent(rst, 11, 13)) {
+                    hometownCities.add(userID, cityIDs.idOf(rst.getString(11), rst.getString(12), rst.getString(13)));
+                }
+                if (allPresent(rst, 14, 17)) {
+                    long programID = programIDs.idOf(rst.getString(14), rst.getString(15), rst.getString(16));
+                    education.add(userID, programID, rst.getInt(17));
+                }
+            }
+            rst.close();
+        }
+    }
+
+    // [Extract Friends Function]
+    // EFFECTS:  reads PUBLIC_ARE_FRIENDS into Friends, each pair with the lower ID first
+    private void extractFriends() throws SQLException {
+        try (Connection connection = pool.borrow();
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(FetchSize);
+            ResultSet rst = stmt.executeQuery("SELECT USER1_ID, USER2_ID FROM " + source + "ARE_FRIENDS");
+            while (rst.next()) {
+                long user1 = rst.getLong(1);
+                long user2 = rst.getLong(2);
+                friends.add(Math.min(user1, user2), Math.max(user1, user2));
+            }
+            rst.close();
+        }
+    }
+
+    // [Extract Events Function]
+    // EFFECTS:  reads PUBLIC_EVENT_INFORMATION into User_Events (and Cities)
+    private void extractEvents() throws SQLException {
+        try (Connection connection = pool.borrow();
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(FetchSize);
+            ResultSet rst = stmt.executeQuery(
+                "SELECT EVENT_ID, EVENT_CREATOR_ID, EVENT_NAME, EVENT_TAGLINE, EVENT_DESCRIPTION, EVENT_HOST, " +
+                "EVENT_TYPE, EVENT_SUBTYPE, EVENT_ADDRESS, EVENT_CITY, EVENT_STATE, EVENT_COUNTRY, " +
+                "EVENT_START_TIME, EVENT_END_TIME " +
+                "FROM " + source + "EVENT_INFORMATION");
+            while (rst.next()) {
+                if (!allPresent(rst, 10, 12)) {
+                    continue;                       // EVENT_CITY_ID is required
+                }
+                events.add(rst.getLong(1), rst.getLong(2), rst.getString(3), rst.getString(4), rst.getString(5),
+                    rst.getString(6), rst.getString(7), rst.getString(8), rst.getString(9),
+                    cityIDs.idOf(rst.getString(10), rst.getString(11), rst.getString(12)),
+                    rst.getTimestamp(13), rst.getTimestamp(14));
+            }
+            rst.close();
+        }
+    }
+
+    // [Extract Photos Function]
+    // EFFECTS:  reads PUBLIC_PHOTO_INFORMATION into Albums and Photos
+    private void extractPhotos() throws SQLException {
+        try (Connection connection = pool.borrow();
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(FetchSize);
+            ResultSet rst = stmt.executeQuery(
+                "SELECT ALBUM_ID, OWNER_ID, ALBUM_NAME, ALBUM_CREATED_TIME, ALBUM_MODIFIED_TIME, ALBUM_LINK, " +
+                "ALBUM_VISIBILITY, COVER_PHOTO_ID, PHOTO_ID, PHOTO_CAPTION, PHOTO_CREATED_TIME, " +
+                "PHOTO_MODIFIED_TIME, PHOTO_LINK " +
+                "FROM " + source + "PHOTO_INFORMATION");
+            while (rst.next()) {
+                long albumID = rst.getLong(1);
+                albums.add(albumID, rst.getLong(2), rst.getString(3), rst.getTimestamp(4), rst.getTimestamp(5),
+                    rst.getString(6), rst.getString(7), rst.getLong(8));
+                photos.add(rst.getLong(9), albumID, rst.getString(10), rst.getTimestamp(11), rst.getTimestamp(12),
+                    rst.getString(13));
+            }
+            rst.close();
+        }
+    }
+
+    // [Extract Tags Function]
+    // EFFECTS:  reads PUBLIC_TAG_INFORMATION into Tags
+    private void extractTags() throws SQLException {
+        try (Connection connection = pool.borrow();
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(FetchSize);
+            ResultSet rst = stmt.executeQuery(
+                "SELECT PHOTO_ID, TAG_SUBJECT_ID, TAG_CREATED_TIME, TAG_X_COORDINATE, TAG_Y_COORDINATE " +
+                "FROM " + source + "TAG_INFORMATION");
+            while (rst.next()) {
+                tags.add(rst.getLong(1), rst.getLong(2), rst.getTimestamp(3), rst.getBigDecimal(4), rst.getBigDecimal(5));
+            }
+            rst.close();
+        }
+    }
+
+    // Loading
+    // [Load Wave Function]
+    // EFFECTS:  writes <tables>, each split into one slice per connection, all at once,
+    //   and returns once every slice is committed
+    private void loadWave(ExecutorService executor, Table... tables) throws SQLException {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (final Table table : tables) {
+            int size = table.rows.size();
+            int slice = Math.max(BatchSize, (size + connections - 1) / connections);
+            for (int begin = 0; begin < size; begin += slice) {
+                final int from = begin;
+                final int to = Math.min(size, begin + slice);
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws SQLException {
+                        write(new Table[] { table }, new int[] { from }, new int[] { to });
+                        return null;
+                    }
+                }));
+            }
+        }
+        awaitAll(futures);
+        report(tables);
+    }
+
+    // [Load Together Function]
+    // EFFECTS:  writes <tables>, in order, in one transaction on one connection
+    private void loadTogether(ExecutorService executor, final Table... tables) throws SQLException {
+        final int[] from = new int[tables.length];
+        final int[] to = new int[tables.length];
+        for (int idx = 0; idx < tables.length; idx++) {
+            to[idx] = tables[idx].rows.size();
+        }
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        futures.add(executor.submit(new Callable<Void>() {
+            public Void call() throws SQLException {
+                write(tables, from, to);
+                return null;
+            }
+        }));
+        awaitAll(futures);
+        report(tables);
+    }
+
+    // [Write Function]
+    // EFFECTS:  inserts rows [<from>[i], <to>[i]) of every <tables>[i] in batches, in one
+    //   transaction on a connection of its own
+    private void write(Table[] tables, int[] from, int[] to) throws SQLException {
+        try (Connection connection = pool.borrow()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (int idx = 0; idx < tables.length; idx++) {
+                    Table table = tables[idx];
+                    long beginTime = System.nanoTime();
+                    try (PreparedStatement stmt = connection.prepareStatement(table.insert)) {
+                        int pending = 0;
+                        for (int row = from[idx]; row < to[idx]; row++) {
+                            Object[] values = table.rows.get(row);
+                            for (int column = 0; column < values.length; column++) {
+                                if (values[column] == null) {
+                                    stmt.setNull(column + 1, Types.VARCHAR);
+                                }
+                                else {
+                                    stmt.setObject(column + 1, values[column]);
+                                }
+                            }
+                            stmt.addBatch();
+                            if (++pending == BatchSize) {
+                                stmt.executeBatch();
+                                pending = 0;
+                            }
+                        }
+                        if (pending > 0) {
+                            stmt.executeBatch();
+                        }
+                    }
+                    table.addNanos(System.nanoTime() - beginTime);
+                }
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    // [Trigger Function]
+    // EFFECTS:  runs ALTER TRIGGER ... <action> on every Project1 trigger the loader
+    //   replaces; triggers that do not exist are skipped
+    private void setTriggers(String action) throws SQLException {
+        try (Connection connection = pool.borrow();
+             Statement stmt = connection.createStatement()) {
+            for (String trigger : Triggers) {
+                try {
+                    stmt.execute("ALTER TRIGGER " + target + trigger + " " + action);
+                }
+                catch (SQLException e) {
+                    if (e.getErrorCode() != NoSuchTrigger) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    // [Sequence Function]
+    // EFFECTS:  advances <sequence> so that its next value is past <last>; sequences
+    //   that do not exist are skipped
+    private static void advanceSequence(Statement stmt, String sequence, long last) throws SQLException {
+        try {
+            long current = nextValue(stmt, sequence);
+            if (current < last) {
+                stmt.execute("ALTER SEQUENCE " + sequence + " INCREMENT BY " + (last - current));
+                nextValue(stmt, sequence);
+                stmt.execute("ALTER SEQUENCE " + sequence + " INCREMENT BY 1");
+            }
+        }
+        catch (SQLException e) {
+            if (e.getErrorCode() != NoSuchSequence) {
+                throw e;
+            }
+        }
+    }
+
+    private static long nextValue(Statement stmt, String sequence) throws SQLException {
+        try (ResultSet rst = stmt.executeQuery("SELECT " + sequence + ".NEXTVAL FROM DUAL")) {
+            rst.next();
+            return rst.getLong(1);
+        }
+    }
+
+    // [Max ID Function]
+    // EFFECTS:  returns the largest <column> in <table>, or 0 if it is empty
+    private static long maxID(Connection connection, String table, String column) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rst = stmt.executeQuery("SELECT MAX(" + column + ") FROM " + table)) {
+            rst.next();
+            return rst.getLong(1);
+        }
+    }
+
+    // [Row Helpers]
+    // EFFECTS:  returns column <column> of the current row as an Integer, or null
+    private static Integer integer(ResultSet rst, int column) throws SQLException {
+        int value = rst.getInt(column);
+        return rst.wasNull() ? null : value;
+    }
+
+    // EFFECTS:  returns true iff columns <first> through <last> of the current row are
+    //   all non-null
+    private static boolean allPresent(ResultSet rst, int first, int last) throws SQLException {
+        for (int column = first; column <= last; column++) {
+            if (rst.getObject(column) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void report(Table... tables) {
+        for (Table table : tables) {
+            System.out.println(String.format("%-28s %10d rows %10.3f s", table.name, table.rows.size(), table.nanos / 1e9));
+        }
+    }
+
+    // [Await Function]
+    // EFFECTS:  waits for every future, rethrowing the first task's own exception
+    private static void awaitAll(List<Future<Void>> futures) throws SQLException {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for a load task", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new SQLException(cause);
+            }
+        }
+    }
+
+    /*
+        A Table holds the extracted rows of one target table, deduplicated on the first
+        <keyColumns> columns (its primary key), and the time spent writing them.
+    */
+    private static final class Table {
+        Table(String name, String columns, int keyColumns) {
+            this.name = name;
+            this.keyColumns = keyColumns;
+            insert = "INSERT INTO " + name + " (" + columns + ") VALUES (" +
+                FakebookOracle.bindList(columns.split(",").length) + ")";
+        }
+
+        // EFFECTS:  adds <values> as a row unless a row with the same key was added
+        synchronized void add(Object... values) {
+            if (keys.add(Arrays.asList(Arrays.copyOf(values, keyColumns)))) {
+                rows.add(values);
+            }
+        }
+
+        synchronized void addNanos(long elapsed) {
+            nanos += elapsed;
+        }
+
+        final String name;
+        final String insert;
+        final int keyColumns;
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        final Set<List<Object>> keys = new HashSet<List<Object>>();
+        long nanos;
+    }
+
+    /*
+        A Dictionary assigns consecutive IDs, from <firstID>, to distinct value tuples
+        and adds a row (ID, values...) to its table for each new one.
+    */
+    private static final class Dictionary {
+        Dictionary(Table table, long firstID) {
+            this.table = table;
+            this.firstID = firstID;
+        }
+
+        // EFFECTS:  returns the ID of <values>, assigning the next one if they are new
+        synchronized long idOf(String... values) {
+            List<String> key = Arrays.asList(values);
+            Long id = ids.get(key);
+            if (id == null) {
+                id = firstID + ids.size();
+                ids.put(key, id);
+                Object[] row = new Object[values.length + 1];
+                row[0] = id;
+                System.arraycopy(values, 0, row, 1, values.length);
+                table.add(row);
+            }
+            return id;
+        }
+
+        // EFFECTS:  returns the last ID assigned (firstID - 1 if none)
+        synchronized long lastID() {
+            return firstID + ids.size() - 1;
+        }
+
+        private final Table table;
+        private final long firstID;
+        private final Map<List<String>, Long> ids = new HashMap<List<String>, Long>();
+    }
+
+    // Constants
+    private static final int ExtractTasks = 5;
+    private static final int FetchSize = 1000;
+    private static final int BatchSize = 1000;
+    private static final String[] Triggers = { "city_id_trigger", "program_id_trigger", "order_friends_pairs" };
+    private static final int NoSuchTrigger = 4080;     // ORA-04080
+    private static final int NoSuchSequence = 2289;    // ORA-02289
+
+    // Member Variables
+    private final FakebookConnectionPool pool;
+    private final int connections;
+    private final String source;
+    private final String target;
+    private final Table users;
+    private final Table friends;
+    private final Table cities;
+    private final Table currentCities;
+    private final Table hometownCities;
+    private final Table programs;
+    private final Table education;
+    private final Table events;
+    private final Table albums;
+    private final Table photos;
+    private final Table tags;
+    private Dictionary cityIDs;
+    private Dictionary programIDs;
+}
@@ -0,0 +1,111 @@
+package project2;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.sql.Connection;
+
+/*
+    The FakebookFootprintBenchmark class measures how much heap the user lists of Query 2
+    and Query 3 retain, once as the FakebookArrayList<UserInfo> the list queries return
+    and once as a FakebookUserList filled from the streamed queries. Retained heap is the
+    difference in used heap, after repeated full collections, from before the list is
+    built to after it is built while it is still reachable. It also checks that both
+    lists render identically. If the oracle reports an error while either list is built,
+    the row is printed as FAILED, since a partial list says nothing about the footprint.
+
+    Run it with a heap large enough for both lists and nothing else running in the JVM.
+    Configuration is read from the same system properties as FakebookBenchmark:
+        fakebook.bench.oracle      FakebookOracle class with a (Connection) constructor
+        fakebook.bench.url         JDBC URL; "%d" is replaced by the dataset size
+        fakebook.bench.user        JDBC user
+        fakebook.bench.password    JDBC password
+        fakebook.bench.sizes       comma-separated dataset sizes (number of users)
+        fakebook.bench.generate    if "true", (re)load each dataset from FakebookDataGenerator
+        fakebook.bench.seed        generator seed
+        fakebook.bench.dataDir     directory caching the generated data files
+*/
+public final class FakebookFootprintBenchmark {
+    // [Main Function]
+    public static void main(String[] args) throws Exception {
+        Class<? extends FakebookOracle> type = Class.forName(
+            System.getProperty("fakebook.bench.oracle", "project2.StudentFakebookOracle")).asSubclass(FakebookOracle.class);
+        Constructor<? extends FakebookOracle> oracleConstructor = type.getConstructor(Connection.class);
+        String url = System.getProperty("fakebook.bench.url", "jdbc:h2:./fakebook-%d");
+        String user = System.getProperty("fakebook.bench.user", "sa");
+        String password = System.getProperty("fakebook.bench.password", "");
+        boolean generate = Boolean.getBoolean("fakebook.bench.generate");
+        long seed = Long.getLong("fakebook.bench.seed", 484L);
+        File dataDir = new File(System.getProperty("fakebook.bench.dataDir", "fakebook-data"));
+
+        System.out.println("# Oracle: " + type.getName());
+        System.out.println(String.format("%-24s %9s %9s %14s %14s %10s %10s %7s %9s",
+            "Benchmark", "(size)", "rows", "objects.bytes", "compact.bytes", "objects/row", "compact/row", "ratio", "identical"));
+        for (long size : FakebookBenchmark.longList("fakebook.bench.sizes", "800")) {
+            String datasetUrl = url.replace("%d", Long.toString(size));
+            FakebookBenchmark.checkDriver(datasetUrl);
+            try (FakebookConnectionPool pool = FakebookConnectionPool.forUrl(datasetUrl, user, password, 1, 64);
+                 Connection connection = pool.borrow()) {
+                if (generate) {
+                    FakebookDataGenerator.prepare(connection, size, seed, dataDir);
+                }
+                FakebookOracle oracle = oracleConstructor.newInstance(connection);
+                for (int query = 2; query <= 3; query++) {
+                    measure(oracle, query, size);
+                }
+            }
+        }
+    }
+
+    // [Measure Function]
+    // EFFECTS:  builds both lists of <query> and prints the heap each retains, or FAILED
+    //   if the oracle reports an error meanwhile
+    private static void measure(FakebookOracle oracle, int query, long size) throws Exception {
+        // both lists stay reachable until the comparison at the end
+        long errors = oracle.getErrorCount();
+        long before = usedHeap();
+        FakebookArrayList<UserInfo> objects = query == 2 ? oracle.lonelyUsers() : oracle.liveAwayFromHome();
+        long objectBytes = usedHeap() - before;
+
+        before = usedHeap();
+        FakebookUserList compact = new FakebookUserList(", ");
+        if (query == 2) {
+            oracle.lonelyUsers(compact);
+        }
+        else {
+            oracle.liveAwayFromHome(compact);
+        }
+        long compactBytes = usedHeap() - before;
+
+        errors = oracle.getErrorCount() - errors;
+        if (errors != 0) {
+            System.out.println(String.format("%-24s %9d %9s   (%d query errors)",
+                FakebookBenchmark.QueryNames[query], size, "FAILED", errors));
+            return;
+        }
+        int rows = objects.size();
+        boolean identical = rows == compact.size() && objects.toString().equals(compact.toString());
+        System.out.println(String.format("%-24s %9d %9d %14d %14d %10.1f %10.1f %7.2f %9s",
+            FakebookBenchmark.QueryNames[query], size, rows, objectBytes, compactBytes,
+            rows == 0 ? 0.0 : (double) objectBytes / rows, rows == 0 ? 0.0 : (double) compactBytes / rows,
+            objectBytes <= 0 || compactBytes <= 0 ? Double.NaN : (double) objectBytes / compactBytes, identical));
+    }
+
+    // [Heap Function]
+    // EFFECTS:  returns the used heap once repeated full collections stop freeing memory
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int round = 0; round < MaxCollections; round++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    // Constants
+    private static final int MaxCollections = 10;
+}
@@ -0,0 +1,197 @@
+package project2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+    The FakebookFriendAges class finds the oldest and youngest friend of every user at
+    once (Query 8 for all users), over a FakebookFriendIndex.
+
+    Query 8 orders friends by birth year, month, and day ascending (missing values last)
+    and then by user ID descending. Each user's place in that order is packed into one
+    long age key, so that comparing two keys compares the two users:
+
+        bit  62       year is missing
+        bits 61..43   year + 2^18
+        bit  42       month is missing
+        bits 41..37   month
+        bit  36       day is missing
+        bits 35..31   day
+        bits 30..0    Integer.MAX_VALUE - user index (user indexes are in ID order)
+
+    With the keys in hand, one pass over the friend edges keeps a running minimum and
+    maximum key per user; the user index comes back out of the low bits. Ranges of users
+    are split across a fork/join pool, and every user's neighbor list is read by exactly
+    one task, so the pass takes O(edges) time and needs no synchronization. Dates that do
+    not fit the fields above (years beyond 2^18 from 0, months or days outside 0 to 31)
+    are ranked with a sort instead, which yields keys that compare the same way.
+*/
+final class FakebookFriendAges {
+    // [Constructor]
+    // REQUIRES: <ageKeys> holds one key per user of <index>, as returned by ageKeys()
+    // EFFECTS:  finds extremes over <index> using the common fork/join pool
+    public FakebookFriendAges(FakebookFriendIndex index, long[] ageKeys) {
+        this(index, ageKeys, ForkJoinPool.commonPool());
+    }
+
+    // [Constructor]
+    // REQUIRES: <ageKeys> holds one key per user of <index>, as returned by ageKeys()
+    // EFFECTS:  finds extremes over <index> using the workers of <pool>
+    public FakebookFriendAges(FakebookFriendIndex index, long[] ageKeys, ForkJoinPool pool) {
+        if (ageKeys.length != index.userCount()) {
+            throw new IllegalArgumentException("expected " + index.userCount() + " age keys, got " + ageKeys.length);
+        }
+        this.index = index;
+        this.ageKeys = ageKeys;
+        this.pool = pool;
+    }
+
+    // [Extremes Function]
+    // EFFECTS:  returns, for every user u, the smallest age key among u's friends at
+    //   [2 * u] (the oldest friend) and the largest at [2 * u + 1] (the youngest friend);
+    //   a user without friends gets Long.MAX_VALUE and Long.MIN_VALUE
+    public long[] extremes() {
+        long[] extremes = new long[2 * index.userCount()];
+        if (extremes.length > 0) {
+            int grain = Math.max(1, index.userCount() / (pool.getParallelism() * TasksPerWorker));
+            pool.invoke(new ExtremesTask(0, index.userCount(), grain, extremes));
+        }
+        return extremes;
+    }
+
+    /*
+        An ExtremesTask scans the friends of the users in [begin, end), splitting the
+        range in half until it is at most <grain> users long.
+    */
+    private final class ExtremesTask extends RecursiveAction {
+        ExtremesTask(int begin, int end, int grain, long[] extremes) {
+            this.begin = begin;
+            this.end = end;
+            this.grain = grain;
+            this.extremes = extremes;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin > grain) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new ExtremesTask(begin, middle, grain, extremes),
+                          new ExtremesTask(middle, end, grain, extremes));
+                return;
+            }
+            for (int user = begin; user < end; user++) {
+                long oldest = Long.MAX_VALUE;
+                long youngest = Long.MIN_VALUE;
+                for (int pos = index.neighborsBegin(user); pos < index.neighborsEnd(user); pos++) {
+                    long key = ageKeys[index.neighbor(pos)];
+                    if (key < oldest) {
+                        oldest = key;
+                    }
+                    if (key > youngest) {
+                        youngest = key;
+                    }
+                }
+                extremes[2 * user] = oldest;
+                extremes[2 * user + 1] = youngest;
+            }
+        }
+
+        private final int begin;
+        private final int end;
+        private final int grain;
+        private final long[] extremes;
+        private static final long serialVersionUID = 1L;
+    }
+
+    // [Age Key Functions]
+    // REQUIRES: <years>, <months>, and <days> have one entry per user, in user index
+    //   order, with FakebookSnapshot.NullInt for missing values
+    // EFFECTS:  returns the age key of every user
+    public static long[] ageKeys(final int[] years, final int[] months, final int[] days) {
+        long[] keys = new long[years.length];
+        for (int user = 0; user < keys.length; user++) {
+            keys[user] = ageKey(years[user], months[user], days[user], user);
+            if (keys[user] < 0) {
+                return rankedKeys(years, months, days);
+            }
+        }
+        return keys;
+    }
+
+    // EFFECTS:  returns the packed age key of <user>, or -1 if its date does not fit
+    static long ageKey(int year, int month, int day, int user) {
+        long yearBits = field(year, YearBias, YearBits);
+        long monthBits = field(month, 0, DayBits);
+        long dayBits = field(day, 0, DayBits);
+        if (yearBits < 0 || monthBits < 0 || dayBits < 0) {
+            return -1;
+        }
+        return yearBits << (2 * (DayBits + 1) + UserBits)
+            | monthBits << (DayBits + 1 + UserBits)
+            | dayBits << UserBits
+            | (Integer.MAX_VALUE - user);
+    }
+
+    // EFFECTS:  returns <value> + <bias> in <bits> bits below a missing-value flag, or
+    //   -1 if it does not fit
+    private static long field(int value, int bias, int bits) {
+        if (value == FakebookSnapshot.NullInt) {
+            return 1L << bits;
+        }
+        long biased = (long) value + bias;
+        return biased >= 0 && biased < (1L << bits) ? biased : -1;
+    }
+
+    // EFFECTS:  returns keys built from every user's rank in Query 8's order rather than
+    //   from its date
+    private static long[] rankedKeys(final int[] years, final int[] months, final int[] days) {
+        Integer[] order = new Integer[years.length];
+        for (int user = 0; user < order.length; user++) {
+            order[user] = user;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int cmp = compareNullsLast(years[a], years[b]);
+                if (cmp == 0) {
+                    cmp = compareNullsLast(months[a], months[b]);
+                }
+                if (cmp == 0) {
+                    cmp = compareNullsLast(days[a], days[b]);
+                }
+                return cmp != 0 ? cmp : Integer.compare(b, a);
+            }
+        });
+        long[] keys = new long[order.length];
+        for (int rank = 0; rank < order.length; rank++) {
+            keys[order[rank]] = (long) rank << UserBits | (Integer.MAX_VALUE - order[rank]);
+        }
+        return keys;
+    }
+
+    private static int compareNullsLast(int a, int b) {
+        if (a == FakebookSnapshot.NullInt || b == FakebookSnapshot.NullInt) {
+            return Boolean.compare(a == FakebookSnapshot.NullInt, b == FakebookSnapshot.NullInt);
+        }
+        return Integer.compare(a, b);
+    }
+
+    // [User Function]
+    // EFFECTS:  returns the index of the user whose age key is <key>
+    public static int userOf(long key) {
+        return Integer.MAX_VALUE - (int) (key & Integer.MAX_VALUE);
+    }
+
+    // Constants
+    private static final int TasksPerWorker = 16;
+    private static final int UserBits = 31;
+    private static final int DayBits = 5;                   // months and days share a width
+    private static final int YearBits = 19;
+    private static final int YearBias = 1 << 18;
+
+    // Member Variables
+    private final FakebookFriendIndex index;
+    private final long[] ageKeys;
+    private final ForkJoinPool pool;
+}
@@ -0,0 +1,177 @@
+package project2;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/*
+    The FakebookFriendIndex class is a compressed sparse row (CSR) adjacency index of the
+    Friends table. Users are addressed by dense indexes in ID order; the neighbors of
+    user u are neighbors[offsets[u]] through neighbors[offsets[u + 1] - 1], sorted
+    ascending. Every friendship is stored in both directions, so neither direction needs
+    an OR over USER1_ID and USER2_ID, and nothing is boxed: the whole index is one
+    buffer of user IDs and two int buffers, which either wrap arrays or are views of a
+    mapped FakebookSnapshot file.
+
+    Iterate the neighbors of a user without allocating as follows:
+
+        for (int pos = index.neighborsBegin(u); pos < index.neighborsEnd(u); pos++) {
+            int friend = index.neighbor(pos);
+            ...
+        }
+*/
+final class FakebookFriendIndex implements FakebookCoTagMatcher.Friendships {
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection, <fetchSize> > 0
+    // EFFECTS:  builds the index from the Users table and a single pass over the Friends
+    //   table; pairs naming a user that does not exist are ignored
+    public static FakebookFriendIndex load(Connection connection, int fetchSize) throws SQLException {
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly, FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(fetchSize);
+            FakebookLongList ids = new FakebookLongList();
+            ResultSet rst = stmt.executeQuery("SELECT USER_ID FROM " + FakebookOracleConstants.UsersTable + " ORDER BY USER_ID");
+            while (rst.next()) {
+                ids.add(rst.getLong(1));
+            }
+            rst.close();
+            long[] userIds = ids.toArray();
+
+            FakebookIntList sources = new FakebookIntList();
+            FakebookIntList targets = new FakebookIntList();
+            rst = stmt.executeQuery("SELECT USER1_ID, USER2_ID FROM " + FakebookOracleConstants.FriendsTable);
+            while (rst.next()) {
+                sources.add(indexOf(userIds, rst.getLong(1)));
+                targets.add(indexOf(userIds, rst.getLong(2)));
+            }
+            rst.close();
+            return build(LongBuffer.wrap(userIds), sources.toArray(), targets.toArray());
+        }
+    }
+
+    // [Build Function]
+    // REQUIRES: <userIds> is sorted ascending without duplicates, <sources> and <targets>
+    //   have the same length
+    // EFFECTS:  builds the index over the users in <userIds> from the friendships
+    //   (<sources>[i], <targets>[i]), given as indexes into <userIds>; negative indexes,
+    //   self-friendships, and duplicates (in either direction) are ignored
+    public static FakebookFriendIndex build(LongBuffer userIds, int[] sources, int[] targets) {
+        int users = userIds.limit();
+        int[] offsets = new int[users + 1];
+        for (int edge = 0; edge < sources.length; edge++) {
+            if (isEdge(sources[edge], targets[edge])) {
+                offsets[sources[edge] + 1]++;
+                offsets[targets[edge] + 1]++;
+            }
+        }
+        for (int user = 0; user < users; user++) {
+            offsets[user + 1] += offsets[user];
+        }
+
+        int[] neighbors = new int[offsets[users]];
+        int[] fill = Arrays.copyOf(offsets, users);
+        for (int edge = 0; edge < sources.length; edge++) {
+            if (isEdge(sources[edge], targets[edge])) {
+                neighbors[fill[sources[edge]]++] = targets[edge];
+                neighbors[fill[targets[edge]]++] = sources[edge];
+            }
+        }
+
+        // sort every list and squeeze out duplicates in place
+        int size = 0;
+        for (int user = 0; user < users; user++) {
+            int begin = offsets[user];
+            int end = offsets[user + 1];
+            Arrays.sort(neighbors, begin, end);
+            offsets[user] = size;
+            for (int pos = begin; pos < end; pos++) {
+                if (pos == begin || neighbors[pos] != neighbors[pos - 1]) {
+                    neighbors[size++] = neighbors[pos];
+                }
+            }
+        }
+        offsets[users] = size;
+        return new FakebookFriendIndex(userIds, IntBuffer.wrap(offsets),
+            IntBuffer.wrap(size == neighbors.length ? neighbors : Arrays.copyOf(neighbors, size)));
+    }
+
+    // [Wrap Function]
+    // REQUIRES: <offsets> and <neighbors> are the CSR arrays of an index over <userIds>,
+    //   as returned by offsetBuffer() and neighborBuffer()
+    // EFFECTS:  returns the index they describe, without copying them
+    static FakebookFriendIndex wrap(LongBuffer userIds, IntBuffer offsets, IntBuffer neighbors) {
+        return new FakebookFriendIndex(userIds, offsets, neighbors);
+    }
+
+    private static boolean isEdge(int source, int target) {
+        return source >= 0 && target >= 0 && source != target;
+    }
+
+    private static int indexOf(long[] userIds, long userID) {
+        int idx = Arrays.binarySearch(userIds, userID);
+        return idx >= 0 ? idx : -1;
+    }
+
+    // [User Functions]
+    public int userCount() { return userIds.limit(); }
+    public long userId(int user) { return userIds.get(user); }
+
+    // EFFECTS:  returns the index of the user with ID <userID>, or -1 if there is none
+    public int userIndex(long userID) {
+        int idx = FakebookSnapshot.binarySearch(userIds, 0, userIds.limit(), userID);
+        return idx >= 0 ? idx : -1;
+    }
+
+    // [Edge Count Function]
+    // EFFECTS:  returns the number of friendships, each counted once
+    public int edgeCount() {
+        return neighbors.limit() / 2;
+    }
+
+    // [Neighbor Functions]
+    public int degree(int user) { return offsets.get(user + 1) - offsets.get(user); }
+    public int neighborsBegin(int user) { return offsets.get(user); }
+    public int neighborsEnd(int user) { return offsets.get(user + 1); }
+    public int neighbor(int pos) { return neighbors.get(pos); }
+
+    // EFFECTS:  returns a copy of the neighbors of <user>, in ascending order
+    public int[] neighbors(int user) {
+        int[] copy = new int[degree(user)];
+        IntBuffer range = neighbors.duplicate();
+        range.position(offsets.get(user));
+        range.get(copy);
+        return copy;
+    }
+
+    // [Buffer Functions]
+    // EFFECTS:  return the CSR offsets (one per user, plus one) and neighbor lists
+    IntBuffer offsetBuffer() { return offsets; }
+    IntBuffer neighborBuffer() { return neighbors; }
+
+    // [Friendship Function]
+    // EFFECTS:  returns true iff users <a> and <b> are friends, searching the shorter of
+    //   the two neighbor lists
+    public boolean areFriends(int a, int b) {
+        if (degree(a) > degree(b)) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        return FakebookSnapshot.binarySearch(neighbors, offsets.get(a), offsets.get(a + 1), b) >= 0;
+    }
+
+    // [Constructor]
+    private FakebookFriendIndex(LongBuffer userIds, IntBuffer offsets, IntBuffer neighbors) {
+        this.userIds = userIds;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    // Member Variables
+    private final LongBuffer userIds;
+    private final IntBuffer offsets;
+    private final IntBuffer neighbors;
+}
@@ -0,0 +1,299 @@
+package project2;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    The FakebookIndexBenchmark class measures what the secondary indexes of
+    FakebookSchema.Indexes (Project1/createIndexes.sql) are worth on a generated dataset.
+    Every query is measured, as by FakebookBenchmark, once without any of the indexes and
+    once with all of them, and the cost of writing is measured for every indexed table
+    both ways: the time per row to insert a batch of rows and delete them again. With
+    fakebook.index.each set, every index is also measured alone, against the queries
+    that use its columns and the writes to its table, so an index that slows writes
+    more than it speeds reads shows up on its own line. A query measurement during which
+    the oracle reports an error is printed as FAILED and left out of the comparisons.
+
+    The materialized aggregates of Project1/createIndexes.sql are Oracle-specific and are
+    not measured here.
+
+    Configuration is read from the same system properties as FakebookBenchmark
+    (fakebook.bench.*), plus:
+        fakebook.index.each        if "true", also measure each index alone
+        fakebook.index.writeRows   rows per write batch
+*/
+public final class FakebookIndexBenchmark {
+    // [Main Function]
+    public static void main(String[] args) throws Exception {
+        FakebookIndexBenchmark benchmark = new FakebookIndexBenchmark();
+        for (long size : FakebookBenchmark.longList("fakebook.bench.sizes", "800")) {
+            benchmark.runDataset(size);
+        }
+    }
+
+    // [Constructor]
+    // EFFECTS:  reads the benchmark configuration from system properties
+    FakebookIndexBenchmark() throws ClassNotFoundException, NoSuchMethodException {
+        Class<? extends FakebookOracle> type = Class.forName(
+            System.getProperty("fakebook.bench.oracle", "project2.StudentFakebookOracle")).asSubclass(FakebookOracle.class);
+        oracleConstructor = type.getConstructor(Connection.class);
+        url = System.getProperty("fakebook.bench.url", "jdbc:h2:./fakebook-%d");
+        user = System.getProperty("fakebook.bench.user", "sa");
+        password = System.getProperty("fakebook.bench.password", "");
+        generate = Boolean.getBoolean("fakebook.bench.generate");
+        seed = Long.getLong("fakebook.bench.seed", 484L);
+        dataDir = new File(System.getProperty("fakebook.bench.dataDir", "fakebook-data"));
+        each = Boolean.getBoolean("fakebook.index.each");
+        writeRows = Integer.getInteger("fakebook.index.writeRows", 1000);
+        queries = new FakebookBenchmark();
+        System.out.println("# Oracle: " + type.getName());
+    }
+
+    // [Dataset Function]
+    // EFFECTS:  measures the dataset of <size> users without indexes, with each index
+    //   alone (if configured), and with every index, and leaves the indexes in place
+    void runDataset(long size) throws Exception {
+        String datasetUrl = url.replace("%d", Long.toString(size));
+        FakebookBenchmark.checkDriver(datasetUrl);
+        try (FakebookConnectionPool pool = FakebookConnectionPool.forUrl(datasetUrl, user, password, 1, 64);
+             Connection connection = pool.borrow()) {
+            if (generate) {
+                FakebookDataGenerator.prepare(connection, size, seed, dataDir);
+            }
+            FakebookOracle oracle = oracleConstructor.newInstance(connection);
+
+            FakebookSchema.dropIndexes(connection);
+            Map<String, FakebookBenchmark.Measurement> without = new LinkedHashMap<String, FakebookBenchmark.Measurement>();
+            for (int query = 0; query < FakebookBenchmark.QueryNames.length; query++) {
+                measureQuery(oracle, query, without);
+            }
+            Map<String, Double> writesWithout = new LinkedHashMap<String, Double>();
+            for (String[] index : FakebookSchema.Indexes) {
+                if (!writesWithout.containsKey(index[1])) {
+                    writesWithout.put(index[1], writeCost(connection, index[1]));
+                }
+            }
+
+            if (each) {
+                System.out.println(String.format("%-24s %9s %10s %-24s %12s %12s %8s",
+                    "Index", "(size)", "build(ms)", "Benchmark", "without", "with", "speedup"));
+                for (String[] index : FakebookSchema.Indexes) {
+                    long buildNanos = createIndex(connection, index);
+                    Map<String, FakebookBenchmark.Measurement> with = new LinkedHashMap<String, FakebookBenchmark.Measurement>();
+                    for (String query : index[3].split(",")) {
+                        measureQuery(oracle, Integer.parseInt(query), with);
+                    }
+                    for (Map.Entry<String, FakebookBenchmark.Measurement> entry : with.entrySet()) {
+                        if (!without.containsKey(entry.getKey())) {
+                            continue;
+                        }
+                        printEach(index[0], size, buildNanos, entry.getKey(),
+                            without.get(entry.getKey()).mean(), entry.getValue().mean(), "ms/op", 1e6);
+                    }
+                    printEach(index[0], size, buildNanos, "insert+delete " + tableName(index[1]),
+                        writesWithout.get(index[1]), writeCost(connection, index[1]), "us/row", 1e3);
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.executeUpdate("DROP INDEX " + FakebookSchema.indexName(index));
+                    }
+                }
+            }
+
+            long buildNanos = 0;
+            for (String[] index : FakebookSchema.Indexes) {
+                buildNanos += createIndex(connection, index);
+            }
+            System.out.println(String.format("# All %d indexes built in %.3f ms", FakebookSchema.Indexes.length, buildNanos / 1e6));
+            System.out.println(String.format("%-40s %9s %12s %10s %12s %10s %-6s %8s",
+                "Benchmark", "(size)", "without", "Error", "with", "Error", "Units", "speedup"));
+            for (int query = 0; query < FakebookBenchmark.QueryNames.length; query++) {
+                Map<String, FakebookBenchmark.Measurement> with = new LinkedHashMap<String, FakebookBenchmark.Measurement>();
+                measureQuery(oracle, query, with);
+                for (Map.Entry<String, FakebookBenchmark.Measurement> entry : with.entrySet()) {
+                    FakebookBenchmark.Measurement before = without.get(entry.getKey());
+                    FakebookBenchmark.Measurement after = entry.getValue();
+                    if (before == null) {
+                        continue;
+                    }
+                    System.out.println(String.format("%-40s %9d %12.3f %10.3f %12.3f %10.3f %-6s %8.2f",
+                        entry.getKey(), size, before.mean() / 1e6, before.error() / 1e6,
+                        after.mean() / 1e6, after.error() / 1e6, "ms/op", before.mean() / after.mean()));
+                }
+            }
+            for (Map.Entry<String, Double> entry : writesWithout.entrySet()) {
+                double after = writeCost(connection, entry.getKey());
+                System.out.println(String.format("%-40s %9d %12.3f %10s %12.3f %10s %-6s %8.2f",
+                    "insert+delete " + tableName(entry.getKey()), size, entry.getValue() / 1e3, "",
+                    after / 1e3, "", "us/row", entry.getValue() / after));
+            }
+        }
+    }
+
+    // [Measure Query Function]
+    // MODIFIES: <results>
+    // EFFECTS:  measures every parameter combination of <query> into <results>, keyed
+    //   by a name that includes the parameters; a combination during which the oracle
+    //   reports an error is printed as FAILED instead
+    private void measureQuery(FakebookOracle oracle, int query, Map<String, FakebookBenchmark.Measurement> results)
+            throws SQLException {
+        for (long[] params : queries.parameters(query)) {
+            StringBuilder name = new StringBuilder(FakebookBenchmark.QueryNames[query]);
+            for (long param : params) {
+                if (param >= 0) {
+                    name.append(name.indexOf("(") < 0 ? "(" : ",").append(param);
+                }
+            }
+            if (name.indexOf("(") >= 0) {
+                name.append(')');
+            }
+            FakebookBenchmark.Measurement measurement = queries.measure(oracle, query, params);
+            if (measurement.errors != 0) {
+                System.out.println(String.format("# %s FAILED (%d query errors)", name, measurement.errors));
+                continue;
+            }
+            results.put(name.toString(), measurement);
+        }
+    }
+
+    // [Create Index Function]
+    // EFFECTS:  creates <index> and returns the time it took
+    private static long createIndex(Connection connection, String[] index) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            long beginTime = System.nanoTime();
+            stmt.executeUpdate(FakebookSchema.indexDefinition(index));
+            return System.nanoTime() - beginTime;
+        }
+    }
+
+    // [Write Cost Function]
+    // EFFECTS:  returns the mean nanoseconds per row to insert a batch of <writeRows>
+    //   rows into <table> and delete them again, over WriteRounds rounds after one warmup
+    //   round; the rows use negative IDs, so they never collide with generated data
+    private double writeCost(Connection connection, String table) throws SQLException {
+        String[] write = writeStatements(table);
+        long nanos = 0;
+        for (int round = 0; round <= WriteRounds; round++) {
+            long beginTime = System.nanoTime();
+            try (PreparedStatement insert = connection.prepareStatement(write[0]);
+                 Statement delete = connection.createStatement()) {
+                for (int row = 0; row < writeRows; row++) {
+                    Object[] values = writeRow(table, row);
+                    for (int column = 0; column < values.length; column++) {
+                        insert.setObject(column + 1, values[column]);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                delete.executeUpdate(write[1]);
+            }
+            if (round > 0) {
+                nanos += System.nanoTime() - beginTime;
+            }
+        }
+        return (double) nanos / WriteRounds / writeRows;
+    }
+
+    // EFFECTS:  returns the insert statement and the matching delete statement of the
+    //   benchmark rows of <table>
+    private static String[] writeStatements(String table) {
+        if (table.equals(FakebookOracleConstants.UsersTable)) {
+            return new String[] {
+                "INSERT INTO " + table + " (USER_ID, FIRST_NAME, LAST_NAME, YEAR_OF_BIRTH, MONTH_OF_BIRTH, " +
+                "DAY_OF_BIRTH, GENDER) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                "DELETE FROM " + table + " WHERE USER_ID < 0" };
+        }
+        if (table.equals(FakebookOracleConstants.FriendsTable)) {
+            return new String[] {
+                "INSERT INTO " + table + " (USER1_ID, USER2_ID) VALUES (?, ?)",
+                "DELETE FROM " + table + " WHERE USER1_ID < 0" };
+        }
+        if (table.equals(FakebookOracleConstants.TagsTable)) {
+            return new String[] {
+                "INSERT INTO " + table + " (TAG_PHOTO_ID, TAG_SUBJECT_ID, TAG_CREATED_TIME, TAG_X, TAG_Y) " +
+                "VALUES (?, ?, ?, ?, ?)",
+                "DELETE FROM " + table + " WHERE TAG_PHOTO_ID < 0" };
+        }
+        if (table.equals(FakebookOracleConstants.PhotosTable)) {
+            return new String[] {
+                "INSERT INTO " + table + " (PHOTO_ID, ALBUM_ID, PHOTO_CREATED_TIME, PHOTO_LINK) VALUES (?, ?, ?, ?)",
+                "DELETE FROM " + table + " WHERE PHOTO_ID < 0" };
+        }
+        if (table.equals(FakebookOracleConstants.EventsTable)) {
+            return new String[] {
+                "INSERT INTO " + table + " (EVENT_ID, EVENT_CREATOR_ID, EVENT_NAME, EVENT_CITY_ID) VALUES (?, ?, ?, ?)",
+                "DELETE FROM " + table + " WHERE EVENT_ID < 0" };
+        }
+        if (table.equals(FakebookOracleConstants.CitiesTable)) {
+            return new String[] {
+                "INSERT INTO " + table + " (CITY_ID, CITY_NAME, STATE_NAME, COUNTRY_NAME) VALUES (?, ?, ?, ?)",
+                "DELETE FROM " + table + " WHERE CITY_ID < 0" };
+        }
+        if (table.equals(FakebookOracleConstants.HometownCitiesTable)) {
+            return new String[] {
+                "INSERT INTO " + table + " (USER_ID, HOMETOWN_CITY_ID) VALUES (?, ?)",
+                "DELETE FROM " + table + " WHERE USER_ID < 0" };
+        }
+        throw new IllegalArgumentException("no benchmark rows for " + table);
+    }
+
+    // EFFECTS:  returns the values of benchmark row <row> of <table>, matching
+    //   writeStatements(table)
+    private static Object[] writeRow(String table, int row) {
+        long id = -(row + 1L);
+        long other = -(row % 100 + 1L);     // a few rows share each value of a secondary column
+        Timestamp now = new Timestamp(0L);
+        if (table.equals(FakebookOracleConstants.UsersTable)) {
+            return new Object[] { id, "First" + row % 97, "Last" + row % 89, 1990, row % 12 + 1, row % 28 + 1, "female" };
+        }
+        if (table.equals(FakebookOracleConstants.FriendsTable)) {
+            return new Object[] { id - 1, id };         // ordered pairs, as loaded
+        }
+        if (table.equals(FakebookOracleConstants.TagsTable)) {
+            return new Object[] { id, other, now, 0, 0 };
+        }
+        if (table.equals(FakebookOracleConstants.PhotosTable)) {
+            return new Object[] { id, other, now, "http://example.com/" + row };
+        }
+        if (table.equals(FakebookOracleConstants.EventsTable)) {
+            return new Object[] { id, -1L, "Event" + row, (int) other };
+        }
+        if (table.equals(FakebookOracleConstants.CitiesTable)) {
+            return new Object[] { (int) id, "City" + row, "State" + row % 50, "Country" };
+        }
+        return new Object[] { id, (int) other };
+    }
+
+    // [Report Functions]
+    private static void printEach(String index, long size, long buildNanos, String benchmark,
+                                  double without, double with, String units, double scale) {
+        System.out.println(String.format("%-24s %9d %10.3f %-24s %9.3f %-2s %9.3f %-2s %8.2f",
+            index, size, buildNanos / 1e6, benchmark, without / scale, units.substring(0, 2), with / scale,
+            units.substring(0, 2), without / with));
+    }
+
+    // EFFECTS:  returns <table> without the table prefix
+    private static String tableName(String table) {
+        return table.substring(FakebookOracleConstants.UsersTable.length() - "Users".length());
+    }
+
+    // Constants
+    private static final int WriteRounds = 5;
+
+    // Member Variables
+    private final Constructor<? extends FakebookOracle> oracleConstructor;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final boolean generate;
+    private final long seed;
+    private final File dataDir;
+    private final boolean each;
+    private final int writeRows;
+    private final FakebookBenchmark queries;
+}
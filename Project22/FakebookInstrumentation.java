@@ -0,0 +1,619 @@
+package project2;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    The FakebookInstrumentation class profiles the queries a FakebookOracle runs over a
+    JDBC connection. wrap() returns a proxy of the connection whose statements and result
+    sets time every call into the driver, so each run of a query is split into phases:
+
+        prepare   creating and preparing statements
+        execute   executing statements (parse, plan, and the first batch of rows)
+        fetch     ResultSet.next(), including the round trips for later batches
+        decode    reading column values out of the current row
+        build     everything else the query does (building results in Java)
+        render    printing the results, timed by the caller between beginRender() and end()
+
+    Every run also counts statements, executions, round trips (one per execution plus one
+    per further batch of fetch-size rows), rows, the approximate bytes of the column
+    values read, and the bytes the calling thread allocated. Runs are grouped by name into
+    FakebookQueryProfiles holding an HDR-style latency histogram per phase, and the
+    profiles are exported as JSON with writeJson().
+
+    A StatementListener, if set, also hears of every statement execution once its result
+    has been read, with its SQL, bind values, and the time spent executing it and fetching
+    its rows (see FakebookSlowQueryLog).
+
+    A wrapped connection, like any other in this project, serves one thread at a time.
+*/
+final class FakebookInstrumentation {
+    // [Wrap Function]
+    // EFFECTS:  returns a proxy of <connection> that reports to this instrumentation
+    public Connection wrap(Connection connection) {
+        return (Connection) proxy(Connection.class, connection, new ConnectionHandle(connection));
+    }
+
+    // [Begin Function]
+    // REQUIRES: no run is in progress
+    // MODIFIES: this
+    // EFFECTS:  starts a run of the query named <query>
+    public void begin(String query) {
+        if (current != null) {
+            throw new IllegalStateException("a run of " + current.query + " is in progress");
+        }
+        current = new Run(query);
+        current.allocatedBefore = allocatedBytes();
+        current.beginTime = System.nanoTime();
+    }
+
+    // [Begin Render Function]
+    // REQUIRES: a run is in progress
+    // MODIFIES: this
+    // EFFECTS:  ends the query phases of the current run; what follows is rendering
+    public void beginRender() {
+        current.renderTime = System.nanoTime();
+        current.allocatedAfter = allocatedBytes();
+        current.rendering = true;
+    }
+
+    // [End Function]
+    // REQUIRES: a run is in progress
+    // MODIFIES: this
+    // EFFECTS:  ends the current run and adds it to the profile of its query
+    public void end() {
+        long endTime = System.nanoTime();
+        Run run = current;
+        current = null;
+        if (!run.rendering) {
+            run.renderTime = endTime;
+            run.allocatedAfter = allocatedBytes();
+        }
+
+        FakebookQueryProfile profile = profiles.get(run.query);
+        if (profile == null) {
+            profiles.put(run.query, profile = new FakebookQueryProfile(run.query));
+        }
+        long queryNanos = run.renderTime - run.beginTime;
+        long[] phases = new long[Phases.length];
+        phases[Prepare] = run.phaseNanos[Prepare];
+        phases[Execute] = run.phaseNanos[Execute];
+        phases[Fetch] = run.phaseNanos[Fetch];
+        phases[Decode] = run.phaseNanos[Decode];
+        phases[Build] = Math.max(0, queryNanos - phases[Prepare] - phases[Execute] - phases[Fetch] - phases[Decode]);
+        phases[Render] = endTime - run.renderTime;
+        profile.record(endTime - run.beginTime, phases, run.counters, Math.max(0, run.allocatedAfter - run.allocatedBefore));
+    }
+
+    // [Listener Function]
+    // MODIFIES: this
+    // EFFECTS:  reports every later statement execution to <listener> (null for none)
+    public void setStatementListener(StatementListener listener) {
+        this.listener = listener;
+    }
+
+    // [Profile Accessor]
+    // EFFECTS:  returns the profile of <query>, or null if it never ran
+    public FakebookQueryProfile getProfile(String query) {
+        return profiles.get(query);
+    }
+
+    // [JSON Export Function]
+    // MODIFIES: <out>
+    // EFFECTS:  writes every profile, in the order the queries first ran, as one JSON
+    //   object
+    public void writeJson(Appendable out) throws IOException {
+        out.append("{\"queries\": [");
+        boolean first = true;
+        for (FakebookQueryProfile profile : profiles.values()) {
+            out.append(first ? "\n  " : ",\n  ");
+            profile.appendJson(out);
+            first = false;
+        }
+        out.append("\n]}\n");
+    }
+
+    // [Allocation Function]
+    // EFFECTS:  returns the bytes allocated so far by this thread, or 0 if the JVM
+    //   cannot tell
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+
+    // [Phase Recording Function]
+    private void addPhase(int phase, long nanos) {
+        if (current != null) {
+            current.phaseNanos[phase] += nanos;
+        }
+    }
+
+    private void count(int counter, long amount) {
+        if (current != null) {
+            current.counters[counter] += amount;
+        }
+    }
+
+    // [Value Size Function]
+    // EFFECTS:  returns the approximate number of bytes <value> took on the wire
+    private static long sizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Integer || value instanceof Float) {
+            return 4;
+        }
+        if (value instanceof java.util.Date) {
+            return 11;                                  // an Oracle TIMESTAMP
+        }
+        return 8;
+    }
+
+    private static Object proxy(Class<?> type, Object target, InvocationHandler handler) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    /*
+        A Run holds the figures of the run in progress.
+    */
+    private static final class Run {
+        Run(String query) {
+            this.query = query;
+        }
+
+        final String query;
+        final long[] phaseNanos = new long[Phases.length];
+        final long[] counters = new long[Counters.length];
+        long beginTime;
+        long renderTime;
+        long allocatedBefore;
+        long allocatedAfter;
+        boolean rendering;
+    }
+
+    /*
+        A StatementListener hears of each statement execution through a wrapped
+        connection once its result set is exhausted or closed (or, for statements that
+        return no rows, right after the execution). <connection> is the connection that
+        was wrapped, so the listener can run statements of its own without being told
+        about them; <binds> holds the parameter values by index, from 1.
+    */
+    interface StatementListener {
+        void executed(Connection connection, String sql, List<Object> binds, long nanos) throws SQLException;
+    }
+
+    /*
+        An Execution accumulates the time of one statement execution until its result
+        has been read.
+    */
+    private final class Execution {
+        Execution(Connection connection, String sql, List<Object> binds, long nanos) {
+            this.connection = connection;
+            this.sql = sql;
+            this.binds = binds;
+            this.nanos = nanos;
+        }
+
+        // EFFECTS:  reports this execution to the listener, the first time only
+        void finish() throws SQLException {
+            if (!finished) {
+                finished = true;
+                if (listener != null && sql != null) {
+                    listener.executed(connection, sql, binds, nanos);
+                }
+            }
+        }
+
+        final Connection connection;
+        final String sql;
+        final List<Object> binds;
+        long nanos;
+        boolean finished;
+    }
+
+    /*
+        A ConnectionHandle times statement creation and wraps the statements it returns.
+    */
+    private final class ConnectionHandle implements InvocationHandler {
+        ConnectionHandle(Connection target) {
+            this.target = target;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (!name.equals("createStatement") && !name.equals("prepareStatement") && !name.equals("prepareCall")) {
+                return FakebookConnectionPool.invoke(target, method, args);
+            }
+
+            long beginTime = System.nanoTime();
+            Statement statement = (Statement) FakebookConnectionPool.invoke(target, method, args);
+            addPhase(Prepare, System.nanoTime() - beginTime);
+            count(Statements, 1);
+            Class<?> type = name.equals("prepareCall") ? CallableStatement.class
+                : name.equals("prepareStatement") ? PreparedStatement.class : Statement.class;
+            String sql = name.equals("createStatement") ? null : (String) args[0];
+            return proxy(type, statement, new StatementHandle(target, statement, sql));
+        }
+
+        private final Connection target;
+    }
+
+    /*
+        A StatementHandle times executions and wraps the result sets they return. It
+        remembers the parameters bound to a prepared statement for the listener.
+    */
+    private final class StatementHandle implements InvocationHandler {
+        StatementHandle(Connection connection, Statement target, String sql) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.startsWith("execute")) {
+                finishExecution();
+                long beginTime = System.nanoTime();
+                Object result = FakebookConnectionPool.invoke(target, method, args);
+                long nanos = System.nanoTime() - beginTime;
+                addPhase(Execute, nanos);
+                count(Executions, 1);
+                count(RoundTrips, 1);
+                String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+                execution = new Execution(connection, executed, new ArrayList<Object>(binds.values()), nanos);
+                if (result instanceof ResultSet) {
+                    return wrap((ResultSet) result);
+                }
+                if (!Boolean.TRUE.equals(result)) {
+                    finishExecution();              // no rows to wait for
+                }
+                return result;
+            }
+            if (name.equals("setFetchSize")) {
+                fetchSize = Math.max(1, (Integer) args[0]);
+            }
+            else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                     && target instanceof PreparedStatement) {
+                binds.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            }
+            else if (name.equals("clearParameters")) {
+                binds.clear();
+            }
+            else if (name.equals("close")) {
+                finishExecution();
+            }
+            if (name.equals("getResultSet")) {
+                ResultSet result = (ResultSet) FakebookConnectionPool.invoke(target, method, args);
+                return result == null ? null : wrap(result);
+            }
+            return FakebookConnectionPool.invoke(target, method, args);
+        }
+
+        private ResultSet wrap(ResultSet result) {
+            return (ResultSet) proxy(ResultSet.class, result, new ResultSetHandle(result, fetchSize, execution));
+        }
+
+        private void finishExecution() throws SQLException {
+            if (execution != null) {
+                execution.finish();
+                execution = null;
+            }
+        }
+
+        private final Connection connection;
+        private final Statement target;
+        private final String sql;
+        private final TreeMap<Integer, Object> binds = new TreeMap<Integer, Object>();
+        private Execution execution;
+        private int fetchSize = DefaultFetchSize;
+    }
+
+    /*
+        A ResultSetHandle times row fetches and column reads and counts rows, round trips,
+        and bytes.
+    */
+    private final class ResultSetHandle implements InvocationHandler {
+        ResultSetHandle(ResultSet target, int fetchSize, Execution execution) {
+            this.target = target;
+            this.fetchSize = fetchSize;
+            this.execution = execution;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("setFetchSize")) {
+                fetchSize = Math.max(1, (Integer) args[0]);
+            }
+            if (name.equals("next")) {
+                long beginTime = System.nanoTime();
+                Object more = FakebookConnectionPool.invoke(target, method, args);
+                long nanos = System.nanoTime() - beginTime;
+                addPhase(Fetch, nanos);
+                if (execution != null) {
+                    execution.nanos += nanos;
+                    if (!(Boolean) more) {
+                        execution.finish();
+                    }
+                }
+                if (rows > 0 && rows % fetchSize == 0) {
+                    count(RoundTrips, 1);               // the first batch came with the execution
+                }
+                if ((Boolean) more) {
+                    rows++;
+                    count(Rows, 1);
+                }
+                return more;
+            }
+            if (name.startsWith("get") && args != null && args.length >= 1) {
+                long beginTime = System.nanoTime();
+                Object value = FakebookConnectionPool.invoke(target, method, args);
+                addPhase(Decode, System.nanoTime() - beginTime);
+                count(Bytes, sizeOf(value));
+                return value;
+            }
+            if (name.equals("close") && execution != null) {
+                Object result = FakebookConnectionPool.invoke(target, method, args);
+                execution.finish();
+                return result;
+            }
+            return FakebookConnectionPool.invoke(target, method, args);
+        }
+
+        private final ResultSet target;
+        private final Execution execution;
+        private int fetchSize;
+        private long rows;
+    }
+
+    // Constants
+    private static final int DefaultFetchSize = 10;     // the Oracle driver's, for statements that never set one
+    static final String[] Phases = { "prepare", "execute", "fetch", "decode", "build", "render" };
+    static final int Prepare = 0;
+    static final int Execute = 1;
+    static final int Fetch = 2;
+    static final int Decode = 3;
+    static final int Build = 4;
+    static final int Render = 5;
+    static final String[] Counters = { "statements", "executions", "roundTrips", "rows", "bytes" };
+    static final int Statements = 0;
+    static final int Executions = 1;
+    static final int RoundTrips = 2;
+    static final int Rows = 3;
+    static final int Bytes = 4;
+
+    // Member Variables
+    private final Map<String, FakebookQueryProfile> profiles = new LinkedHashMap<String, FakebookQueryProfile>();
+    private Run current;
+    private StatementListener listener;
+}
+
+/*
+    The FakebookQueryProfile class accumulates the runs of one query: a latency histogram
+    for whole runs and one per phase, the totals of the counters, and allocations.
+*/
+final class FakebookQueryProfile {
+    // [Constructor]
+    public FakebookQueryProfile(String query) {
+        this.query = query;
+        latency = new FakebookLatencyHistogram();
+        phases = new FakebookLatencyHistogram[FakebookInstrumentation.Phases.length];
+        for (int phase = 0; phase < phases.length; phase++) {
+            phases[phase] = new FakebookLatencyHistogram();
+        }
+        counters = new long[FakebookInstrumentation.Counters.length];
+    }
+
+    // [Record Function]
+    // MODIFIES: this
+    // EFFECTS:  adds one run that took <nanos> in total, <phaseNanos> per phase
+    void record(long nanos, long[] phaseNanos, long[] runCounters, long allocated) {
+        runs++;
+        latency.record(nanos);
+        for (int phase = 0; phase < phases.length; phase++) {
+            phases[phase].record(phaseNanos[phase]);
+        }
+        for (int counter = 0; counter < counters.length; counter++) {
+            counters[counter] += runCounters[counter];
+        }
+        allocatedBytes += allocated;
+    }
+
+    // [Accessors]
+    public long getRuns() { return runs; }
+    public FakebookLatencyHistogram getLatency() { return latency; }
+    public FakebookLatencyHistogram getPhase(int phase) { return phases[phase]; }
+    public long getCounter(int counter) { return counters[counter]; }
+    public long getAllocatedBytes() { return allocatedBytes; }
+
+    // [JSON Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends this profile as a JSON object; counters are totals over all runs
+    void appendJson(Appendable out) throws IOException {
+        out.append("{\"query\": \"").append(query).append("\", \"runs\": ").append(Long.toString(runs));
+        for (int counter = 0; counter < counters.length; counter++) {
+            out.append(", \"").append(FakebookInstrumentation.Counters[counter]).append("\": ")
+                .append(Long.toString(counters[counter]));
+        }
+        out.append(", \"allocatedBytes\": ").append(Long.toString(allocatedBytes));
+        out.append(",\n   \"latency\": ");
+        latency.appendJson(out);
+        out.append(",\n   \"phases\": {");
+        for (int phase = 0; phase < phases.length; phase++) {
+            out.append(phase == 0 ? "\n     \"" : ",\n     \"").append(FakebookInstrumentation.Phases[phase]).append("\": ");
+            phases[phase].appendJson(out);
+        }
+        out.append("}}");
+    }
+
+    // Member Variables
+    private final String query;
+    private final FakebookLatencyHistogram latency;
+    private final FakebookLatencyHistogram[] phases;
+    private final long[] counters;
+    private long runs;
+    private long allocatedBytes;
+}
+
+/*
+    The FakebookLatencyHistogram class records nanosecond latencies with the bucketing of
+    an HDR histogram: values are grouped by their highest set bit and, within each such
+    power of two, into 128 linear sub-buckets, so every recorded value is known to within
+    1% (two significant digits) however large it is, in a fixed array of counts.
+    Values above MaxValue (one hour) are recorded as MaxValue.
+*/
+final class FakebookLatencyHistogram {
+    // [Constructor]
+    public FakebookLatencyHistogram() {
+        counts = new long[index(MaxValue) + 1];
+        min = Long.MAX_VALUE;
+    }
+
+    // [Record Function]
+    // REQUIRES: <value> >= 0
+    // MODIFIES: this
+    public void record(long value) {
+        long clamped = Math.min(value, MaxValue);
+        counts[index(clamped)]++;
+        count++;
+        sum += clamped;
+        min = Math.min(min, clamped);
+        max = Math.max(max, clamped);
+    }
+
+    // [Accessors]
+    public long getCount() { return count; }
+    public long getMin() { return count == 0 ? 0 : min; }
+    public long getMax() { return max; }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    // [Percentile Function]
+    // REQUIRES: 0 <= <percentile> <= 100
+    // EFFECTS:  returns the smallest value (to within its bucket) that at least
+    //   <percentile> percent of the recorded values do not exceed; 0 if none were recorded
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int idx = 0; idx < counts.length; idx++) {
+            seen += counts[idx];
+            if (seen >= rank) {
+                return Math.min(max, highestEquivalentValue(idx));
+            }
+        }
+        return max;
+    }
+
+    // [JSON Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends a summary and the non-empty buckets, as [highest value, count]
+    //   pairs, as a JSON object
+    void appendJson(Appendable out) throws IOException {
+        out.append("{\"unit\": \"ns\", \"count\": ").append(Long.toString(count))
+            .append(", \"min\": ").append(Long.toString(getMin()))
+            .append(", \"mean\": ").append(String.format("%.1f", getMean()))
+            .append(", \"max\": ").append(Long.toString(max));
+        for (int idx = 0; idx < Percentiles.length; idx++) {
+            out.append(", \"").append(PercentileNames[idx]).append("\": ")
+                .append(Long.toString(getValueAtPercentile(Percentiles[idx])));
+        }
+        out.append(", \"buckets\": [");
+        boolean first = true;
+        for (int idx = 0; idx < counts.length; idx++) {
+            if (counts[idx] != 0) {
+                out.append(first ? "[" : ", [").append(Long.toString(highestEquivalentValue(idx)))
+                    .append(", ").append(Long.toString(counts[idx])).append(']');
+                first = false;
+            }
+        }
+        out.append("]}");
+    }
+
+    // [Merge Function]
+    // MODIFIES: this
+    // EFFECTS:  adds every value recorded in <other>
+    public void merge(FakebookLatencyHistogram other) {
+        for (int idx = 0; idx < counts.length; idx++) {
+            counts[idx] += other.counts[idx];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // [Bucket Functions]
+    // EFFECTS:  returns the index of the count <value> falls in: values below 256 map to
+    //   themselves, and every further power of two is split into 128 sub-buckets
+    private static int index(long value) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - HalfMagnitude);
+        int subBucket = (int) (value >>> bucket);
+        return (bucket << HalfMagnitude) + subBucket;
+    }
+
+    // EFFECTS:  returns the largest value that falls in the count at <index>
+    private static long highestEquivalentValue(int index) {
+        int bucket = Math.max(0, (index >> HalfMagnitude) - 1);
+        long subBucket = index - ((long) bucket << HalfMagnitude);
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+    // Constants
+    private static final int HalfMagnitude = 7;                      // 128 sub-buckets per power of two
+    static final long MaxValue = 3600L * 1000000000L;                 // one hour in nanoseconds
+    private static final double[] Percentiles = { 50.0, 90.0, 99.0, 99.9 };
+    private static final String[] PercentileNames = { "p50", "p90", "p99", "p99.9" };
+
+    // Member Variables
+    private final long[] counts;
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+}
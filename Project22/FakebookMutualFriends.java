@@ -0,0 +1,170 @@
+package project2;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+    The FakebookMutualFriends class ranks pairs of users who are not friends by their
+    number of mutual friends (Query 6), over a FakebookFriendIndex.
+
+    Every non-friend pair (a, b) with a < b is counted from a alone: for each friend w of
+    a, every friend b > a of w gains one mutual friend. The counts for one a live in a
+    dense counter array indexed by b, so no pair is ever boxed or hashed, and the friends
+    of a are marked in that same array beforehand so friend pairs are never counted. The
+    counter arrays are borrowed from a free list that lives only as long as one call, so
+    there is about one per running worker and none outlives the call. Ranges of a are
+    split across a fork/join pool; each task keeps a bounded FakebookTopK heap of its
+    best pairs, and heaps are merged as tasks join. Only the winning pairs have their
+    mutual friends listed, by intersecting two sorted neighbor lists.
+*/
+final class FakebookMutualFriends {
+    // [Constructor]
+    // EFFECTS:  ranks pairs over <index> using the common fork/join pool
+    public FakebookMutualFriends(FakebookFriendIndex index) {
+        this(index, ForkJoinPool.commonPool());
+    }
+
+    // [Constructor]
+    // EFFECTS:  ranks pairs over <index> using the workers of <pool>
+    public FakebookMutualFriends(FakebookFriendIndex index, ForkJoinPool pool) {
+        this.index = index;
+        this.pool = pool;
+    }
+
+    // [Top Pairs Function]
+    // EFFECTS:  returns the <num> non-friend pairs with the most mutual friends (at least
+    //   one), as packed (lower user index, higher user index) keys, ranked by mutual
+    //   friend count descending and then by the lower and the higher user index
+    public long[] topPairs(int num) {
+        if (num <= 0 || index.userCount() == 0) {
+            return new long[0];
+        }
+        int grain = Math.max(1, index.userCount() / (pool.getParallelism() * TasksPerWorker));
+        ConcurrentLinkedQueue<int[]> scratch = new ConcurrentLinkedQueue<int[]>();
+        return pool.invoke(new CountTask(0, index.userCount(), grain, num, scratch)).rankedKeys();
+    }
+
+    // [Shared Friends Function]
+    // EFFECTS:  returns the mutual friends of users <a> and <b>, in ascending order
+    public int[] sharedFriends(int a, int b) {
+        int posA = index.neighborsBegin(a);
+        int endA = index.neighborsEnd(a);
+        int posB = index.neighborsBegin(b);
+        int endB = index.neighborsEnd(b);
+        FakebookIntList shared = new FakebookIntList();
+        while (posA < endA && posB < endB) {
+            int friendA = index.neighbor(posA);
+            int friendB = index.neighbor(posB);
+            if (friendA == friendB) {
+                shared.add(friendA);
+                posA++;
+                posB++;
+            }
+            else if (friendA < friendB) {
+                posA++;
+            }
+            else {
+                posB++;
+            }
+        }
+        return shared.toArray();
+    }
+
+    /*
+        A CountTask ranks the pairs whose lower user lies in [begin, end), splitting the
+        range in half until it is at most <grain> users long.
+    */
+    private final class CountTask extends RecursiveTask<FakebookTopK> {
+        CountTask(int begin, int end, int grain, int num, ConcurrentLinkedQueue<int[]> scratch) {
+            this.begin = begin;
+            this.end = end;
+            this.grain = grain;
+            this.num = num;
+            this.scratch = scratch;
+        }
+
+        @Override
+        protected FakebookTopK compute() {
+            if (end - begin > grain) {
+                int middle = (begin + end) >>> 1;
+                CountTask left = new CountTask(begin, middle, grain, num, scratch);
+                left.fork();
+                FakebookTopK right = new CountTask(middle, end, grain, num, scratch).compute();
+                FakebookTopK top = left.join();
+                top.merge(right);
+                return top;
+            }
+
+            // counts[0 .. n) holds per-candidate counts; counts[n ..) lists the candidates
+            int users = index.userCount();
+            int[] counts = scratch.poll();
+            if (counts == null) {
+                counts = new int[2 * users];
+            }
+            FakebookTopK top = new FakebookTopK(num);
+            for (int a = begin; a < end; a++) {
+                int friendsBegin = index.neighborsBegin(a);
+                int friendsEnd = index.neighborsEnd(a);
+                for (int pos = friendsBegin; pos < friendsEnd; pos++) {
+                    counts[index.neighbor(pos)] = Integer.MIN_VALUE;
+                }
+
+                int candidates = 0;
+                for (int pos = friendsBegin; pos < friendsEnd; pos++) {
+                    int friend = index.neighbor(pos);
+                    for (int fof = firstAbove(friend, a); fof < index.neighborsEnd(friend); fof++) {
+                        int b = index.neighbor(fof);
+                        if (counts[b]++ == 0) {
+                            counts[users + candidates++] = b;
+                        }
+                    }
+                }
+
+                for (int idx = 0; idx < candidates; idx++) {
+                    int b = counts[users + idx];
+                    if (top.admits(counts[b])) {
+                        top.offer(counts[b], FakebookSnapshot.pack(a, b));
+                    }
+                    counts[b] = 0;
+                }
+                for (int pos = friendsBegin; pos < friendsEnd; pos++) {
+                    counts[index.neighbor(pos)] = 0;
+                }
+            }
+            scratch.add(counts);                    // all zero again, ready for the next leaf
+            return top;
+        }
+
+        private final int begin;
+        private final int end;
+        private final int grain;
+        private final int num;
+        private final ConcurrentLinkedQueue<int[]> scratch;
+        private static final long serialVersionUID = 1L;
+    }
+
+    // [Search Function]
+    // EFFECTS:  returns the position of the first neighbor of <user> greater than <bound>
+    private int firstAbove(int user, int bound) {
+        int low = index.neighborsBegin(user);
+        int high = index.neighborsEnd(user);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index.neighbor(middle) <= bound) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Constants
+    private static final int TasksPerWorker = 64;
+
+    // Member Variables
+    private final FakebookFriendIndex index;
+    private final ForkJoinPool pool;
+}
@@ -1,8 +1,14 @@
 package project2;
 
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class FakebookOracle {
     // Abstract Query Functions to be Implemented
@@ -17,74 +23,236 @@ public abstract class FakebookOracle {
     public abstract AgeInfo findAgeInfo(long userID) throws SQLException;
     public abstract FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException;
     
+    // Batched Query Functions
+    // [Query 8, Batched]
+    // EFFECTS:  returns the oldest and youngest friend of every user in <userIDs>, keyed by
+    //   user ID in the order given; subclasses should override this to answer the whole
+    //   batch in a single round trip instead of one query per user
+    public Map<Long, AgeInfo> findAgeInfo(long[] userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new LinkedHashMap<Long, AgeInfo>();
+        for (long userID : userIDs) {
+            if (!results.containsKey(userID)) {
+                results.put(userID, findAgeInfo(userID));
+            }
+        }
+        return results;
+    }
+    
+    // [Query 8, All Users]
+    // EFFECTS:  hands the oldest and youngest friend of every user, in user ID order, to
+    //   <consumer> until it returns false, and returns the number of users handed over;
+    //   users without friends get the same answer findAgeInfo(long) gives them. This
+    //   version answers the users userIDs() lists with findAgeInfo(long[], consumer);
+    //   subclasses that can answer every user at once should override it
+    public long findAgeInfo(FakebookRowConsumer<? super UserAgeInfo> consumer) throws SQLException, IOException {
+        return findAgeInfo(userIDs(), consumer);
+    }
+    
+    // [Query 8, Streamed]
+    // EFFECTS:  hands the oldest and youngest friend of every user in <userIDs>, in the
+    //   order given and once per ID, to <consumer> until it returns false, and returns
+    //   the number of users handed over; runs findAgeInfo(long[]) AgeInfoChunkSize users
+    //   at a time
+    public long findAgeInfo(long[] userIDs, FakebookRowConsumer<? super UserAgeInfo> consumer) throws SQLException, IOException {
+        long count = 0;
+        for (int begin = 0; begin < userIDs.length; begin += AgeInfoChunkSize) {
+            long[] chunk = Arrays.copyOfRange(userIDs, begin, Math.min(userIDs.length, begin + AgeInfoChunkSize));
+            for (Map.Entry<Long, AgeInfo> entry : findAgeInfo(chunk).entrySet()) {
+                count++;
+                if (!consumer.accept(new UserAgeInfo(entry.getKey(), entry.getValue()))) {
+                    return count;
+                }
+            }
+        }
+        return count;
+    }
+    
+    // [User IDs Function]
+    // EFFECTS:  returns the ID of every user, in ascending order. This version throws
+    //   SQLFeatureNotSupportedException; oracles that can list their users override it,
+    //   and callers of any other oracle pass the IDs to findAgeInfo(long[], consumer)
+    protected long[] userIDs() throws SQLException {
+        throw new SQLFeatureNotSupportedException(getClass().getSimpleName() + " does not list its users");
+    }
+    
+    // Streaming Query Functions
+    //   Each hands the rows of the list query of the same name to <consumer>, in the same
+    //   order, until <consumer> returns false, and returns the number of rows handed over.
+    //   These versions build the whole list first; subclasses should override them to
+    //   read straight from the cursor, so that memory use does not grow with the number of
+    //   rows, and may then implement the list queries on top of them with collector().
+    // [Query 2, Streamed]
+    public long lonelyUsers(FakebookRowConsumer<? super UserInfo> consumer) throws SQLException, IOException {
+        return feed(lonelyUsers(), consumer);
+    }
+    
+    // [Query 3, Streamed]
+    public long liveAwayFromHome(FakebookRowConsumer<? super UserInfo> consumer) throws SQLException, IOException {
+        return feed(liveAwayFromHome(), consumer);
+    }
+    
+    // [Query 9, Streamed]
+    public long findPotentialSiblings(FakebookRowConsumer<? super SiblingInfo> consumer) throws SQLException, IOException {
+        return feed(findPotentialSiblings(), consumer);
+    }
+    
+    // [Error Count Function]
+    // EFFECTS:  returns the number of errors queries have reported with reportError()
+    //   instead of throwing; a result returned while this changed may be an error marker
+    //   (e.g. BirthMonthInfo(-1, -1, -1)) rather than an answer
+    public long getErrorCount() {
+        return errors.get();
+    }
+    
+    // [Error Reporting Function]
+    // MODIFIES: this
+    // EFFECTS:  prints the message of <e> and counts it in getErrorCount()
+    protected void reportError(SQLException e) {
+        System.err.println(e.getMessage());
+        errors.incrementAndGet();
+    }
+    
+    // [Feed Function]
+    // EFFECTS:  hands the elements of <rows> to <consumer> until it returns false; returns
+    //   the number of elements handed over
+    protected static <T> long feed(List<T> rows, FakebookRowConsumer<? super T> consumer) throws IOException {
+        long count = 0;
+        for (T row : rows) {
+            count++;
+            if (!consumer.accept(row)) {
+                break;
+            }
+        }
+        return count;
+    }
+    
+    // [Collector Function]
+    // EFFECTS:  returns a consumer that appends every row to <rows>
+    protected static <T> FakebookRowConsumer<T> collector(final List<T> rows) {
+        return new FakebookRowConsumer<T>() {
+            public boolean accept(T row) {
+                rows.add(row);
+                return true;
+            }
+        };
+    }
+    
+    // [Bind List Function]
+    // REQUIRES: <count> > 0
+    // EFFECTS:  returns "?, ?, ..., ?" with <count> bind variables, for use in IN lists
+    protected static String bindList(int count) {
+        StringBuilder builder = new StringBuilder(3 * count);
+        for (int idx = 0; idx < count; idx++) {
+            if (idx != 0) {
+                builder.append(", ");
+            }
+            builder.append('?');
+        }
+        return builder.toString();
+    }
+    
     // Query Result Printing Functions
+    //   Each writes a decorated header, the results, and a blank line straight to <writer>,
+    //   element by element, so printing takes time linear in the size of the output.
     public void printQuery0(Writer writer, BirthMonthInfo results) throws IOException {
-        String output = String.format("%sQuery 0%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeader(writer, 0);
+        results.appendTo(writer);
+        printFooter(writer);
     }
     
     public void printQuery1(Writer writer, FirstNameInfo results) throws IOException {
-        String output = String.format("%sQuery 1%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeader(writer, 1);
+        results.appendTo(writer);
+        printFooter(writer);
     }
     
     public void printQuery2(Writer writer, FakebookArrayList<UserInfo> results) throws IOException {
-        String output = String.format("%sQuery 2%s%nNumber of lonely users: %d%nLonely users are: %s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
-        writer.flush();
+        printQuery2(writer, results.size(), results);
+    }
+    
+    public void printQuery2(Writer writer, FakebookUserList results) throws IOException {
+        printQuery2(writer, results.size(), results);
     }
     
     public void printQuery3(Writer writer, FakebookArrayList<UserInfo> results) throws IOException {
-        String output = String.format("%sQuery 3%s%nNumber of users who live away from home: %d%nThose users are: %s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
-        writer.flush();
+        printQuery3(writer, results.size(), results);
+    }
+    
+    public void printQuery3(Writer writer, FakebookUserList results) throws IOException {
+        printQuery3(writer, results.size(), results);
     }
     
     public void printQuery4(Writer writer, FakebookArrayList<TaggedPhotoInfo> results) throws IOException {
-        String output = String.format("%sQuery 4%s%nThe following are the top %d photo(s) with the most tags:%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
-        writer.flush();
+        printHeader(writer, 4);
+        writer.append("The following are the top ").append(Integer.toString(results.size()))
+            .append(" photo(s) with the most tags:").append(NL);
+        results.appendTo(writer);
+        printFooter(writer);
     }
     
     public void printQuery5(Writer writer, FakebookArrayList<MatchPair> results) throws IOException {
-        String output = String.format("%sQuery 5%s%nTop %d match(es):%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
-        writer.flush();
+        printHeader(writer, 5);
+        writer.append("Top ").append(Integer.toString(results.size())).append(" match(es):").append(NL);
+        results.appendTo(writer);
+        printFooter(writer);
     }
     
     public void printQuery6(Writer writer, FakebookArrayList<UsersPair> results) throws IOException {
-        String output = String.format("%sQuery 6%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeader(writer, 6);
+        results.appendTo(writer);
+        printFooter(writer);
     }
     
     public void printQuery7(Writer writer, EventStateInfo results) throws IOException {
-        String output = String.format("%sQuery 7%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeader(writer, 7);
+        results.appendTo(writer);
+        printFooter(writer);
     }
     
     public void printQuery8(Writer writer, AgeInfo results) throws IOException {
-        String output = String.format("%sQuery 8%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printHeader(writer, 8);
+        results.appendTo(writer);
+        printFooter(writer);
     }
     
     public void printQuery9(Writer writer, FakebookArrayList<SiblingInfo> results) throws IOException {
-        String output = String.format("%sQuery 9%s%n%d pair(s) of potential siblings:%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
+        printHeader(writer, 9);
+        writer.append(Integer.toString(results.size())).append(" pair(s) of potential siblings:").append(NL);
+        results.appendTo(writer);
+        printFooter(writer);
+    }
+    
+    // [Printing Helpers]
+    private static void printQuery2(Writer writer, int size, FakebookRenderable results) throws IOException {
+        printHeader(writer, 2);
+        writer.append("Number of lonely users: ").append(Integer.toString(size)).append(NL)
+            .append("Lonely users are: ");
+        results.appendTo(writer);
+        printFooter(writer);
+    }
+    
+    private static void printQuery3(Writer writer, int size, FakebookRenderable results) throws IOException {
+        printHeader(writer, 3);
+        writer.append("Number of users who live away from home: ").append(Integer.toString(size)).append(NL)
+            .append("Those users are: ");
+        results.appendTo(writer);
+        printFooter(writer);
+    }
+    
+    private static void printHeader(Writer writer, int query) throws IOException {
+        writer.append(FakebookOracleConstants.PrintDecoration).append("Query ").append(Integer.toString(query))
+            .append(FakebookOracleConstants.PrintDecoration).append(NL);
+    }
+    
+    private static void printFooter(Writer writer) throws IOException {
+        writer.append(NL).append(NL);
         writer.flush();
     }
+    
+    // Constants
+    private static final String NL = FakebookOracleConstants.NewLine;
+    private static final int AgeInfoChunkSize = 4096;
+    
+    // Member Variables
+    private final AtomicLong errors = new AtomicLong();
 }
@@ -1,12 +1,14 @@
 package project2;
 
+import java.io.IOException;
+
 /*
     The UserInfo class stores a subset of the information about Fakebook users;
     specifically, it stores user IDs, first names, and last names. Query 0,
     Query 2, Query 3, Query 4, Query 5, Query 6, Query 8, and Query 9 will use this data
     structure.
 */
-final class UserInfo {
+final class UserInfo implements FakebookRenderable {
     // [Constructor]
     public UserInfo(long id, String fname, String lname) {
         userID = id;
@@ -17,7 +19,36 @@ final class UserInfo {
     // [UserInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this UserInfo instance
     public String toString() {
-        return String.format("%s %s (%d)", firstName, lastName, userID);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [UserInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        appendTo(out, userID, firstName, lastName);
+    }
+    
+    // [UserInfo Rendering Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends what toString() returns for a UserInfo(<id>, <fname>, <lname>) to
+    //   <out>, without creating one
+    static void appendTo(Appendable out, long id, String fname, String lname) throws IOException {
+        out.append(String.valueOf(fname)).append(' ').append(String.valueOf(lname))
+            .append(" (").append(Long.toString(id)).append(')');
+    }
+    
+    // [Field Accessors]
+    public long getUserID() {
+        return userID;
+    }
+    
+    public String getFirstName() {
+        return firstName;
+    }
+    
+    public String getLastName() {
+        return lastName;
     }
     
     // Member Variables
@@ -32,7 +63,7 @@ final class UserInfo {
     latter two of which refer to the album that contains the photo in question).
     Query 4 and Query 5 will use this data structure.
 */
-final class PhotoInfo {
+final class PhotoInfo implements FakebookRenderable {
     // [Constructor]
     public PhotoInfo(long pID, long aID, String link, String albName) {
         photoID = pID;
@@ -44,8 +75,17 @@ final class PhotoInfo {
     // [PhotoInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this PhotoInfo instance
     public String toString() {
-        return String.format("(Photo #%d) from Album #%d (%s) at url '%s'",
-            photoID, albumID, albumName, link);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [PhotoInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("(Photo #").append(Long.toString(photoID))
+            .append(") from Album #").append(Long.toString(albumID))
+            .append(" (").append(String.valueOf(albumName))
+            .append(") at url '").append(String.valueOf(link)).append('\'');
     }
     
     // Member Variables
@@ -61,7 +101,7 @@ final class PhotoInfo {
     photo and a list of UserInfo instances identifying the users tagged in that
     photo. Query 4 will use this data structure.
 */
-final class TaggedPhotoInfo {
+final class TaggedPhotoInfo implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: <photo> is not NULL
     public TaggedPhotoInfo(PhotoInfo photo) {
@@ -80,7 +120,16 @@ final class TaggedPhotoInfo {
     // [TaggedPhotoInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this TaggedPhotoInfo instance
     public String toString() {
-        return String.format("%s%n%d Tags%n%s", photo, usersTagged.size(), usersTagged);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [TaggedPhotoInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        photo.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine).append(Integer.toString(usersTagged.size())).append(" Tags").append(FakebookOracleConstants.NewLine);
+        usersTagged.appendTo(out);
     }
     
     // Member Variables
@@ -94,7 +143,7 @@ final class TaggedPhotoInfo {
     user (plus each user's birth year) and a list of PhotoInfo instances identifying
     the photos in which they are both tagged. Query 5 will use this data structure.
 */
-final class MatchPair {
+final class MatchPair implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> is NULL
     public MatchPair(UserInfo user1, long user1yr, UserInfo user2, long user2yr) {
@@ -116,9 +165,20 @@ final class MatchPair {
     // [MatchPair-to-String Converter]
     // EFFECTS:  returns a string representation of this MatchPair instance
     public String toString() {
-        return String.format("%s born in %d / %s born in %d%n" +
-            "They are not Fakebook friends and are tagged in %d common photo(s)%n%s",
-            user1, user1Year, user2, user2Year, sharedPhotos.size(), sharedPhotos);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [MatchPair Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        user1.appendTo(out);
+        out.append(" born in ").append(Long.toString(user1Year)).append(" / ");
+        user2.appendTo(out);
+        out.append(" born in ").append(Long.toString(user2Year)).append(FakebookOracleConstants.NewLine)
+            .append("They are not Fakebook friends and are tagged in ")
+            .append(Integer.toString(sharedPhotos.size())).append(" common photo(s)").append(FakebookOracleConstants.NewLine);
+        sharedPhotos.appendTo(out);
     }
     
     // Member Variables
@@ -135,7 +195,7 @@ final class MatchPair {
     users and a list of UserInfo instances identifying the two users' common
     friends. Query 6 will use this data structure.
 */
-final class UsersPair {
+final class UsersPair implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> is NULL
     public UsersPair(UserInfo user1, UserInfo user2) {
@@ -155,8 +215,19 @@ final class UsersPair {
     // [UserPair-to-String Converter]
     // EFFECTS:  returns a string representation of this UsersPair instance
     public String toString() {
-        return String.format("%s and %s are not Fakebook friends but share %d common friends:%n%s",
-            user1, user2, sharedFriends.size(), sharedFriends);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [UsersPair Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        user1.appendTo(out);
+        out.append(" and ");
+        user2.appendTo(out);
+        out.append(" are not Fakebook friends but share ").append(Integer.toString(sharedFriends.size()))
+            .append(" common friends:").append(FakebookOracleConstants.NewLine);
+        sharedFriends.appendTo(out);
     }
     
     // Member Variables
@@ -170,7 +241,7 @@ final class UsersPair {
     siblings; specifically, it stores one UserInfo instance for each of th two
     users. Query 9 will use this data structure.
 */
-final class SiblingInfo {
+final class SiblingInfo implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> are NULL
     public SiblingInfo(UserInfo user1, UserInfo user2) {
@@ -181,7 +252,16 @@ final class SiblingInfo {
     // [SiblingInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this SiblingInfo instance
     public String toString() {
-        return String.format("%s and %s", user1.toString(), user2.toString());
+        return FakebookRenderable.render(this);
+    }
+    
+    // [SiblingInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        user1.appendTo(out);
+        out.append(" and ");
+        user2.appendTo(out);
     }
     
     // Member Variables
@@ -196,7 +276,7 @@ final class SiblingInfo {
     are, and the month in which the fewest (but at least 1) users were born
     and who those users are. Query 0 will use this data structure.
 */
-final class BirthMonthInfo {
+final class BirthMonthInfo implements FakebookRenderable {
     // [Constructor]
     public BirthMonthInfo(long totalUsers, int mostPopularMonth, int leastPopularMonth) {
         usersWithBirthMonth = totalUsers;
@@ -222,15 +302,36 @@ final class BirthMonthInfo {
         usersBornInLeastPopularMonth.add(user);
     }
     
+    // [Month Accessors]
+    // EFFECTS:  returns the most (resp. least) popular birth month
+    public int getMostPopularMonth() {
+        return monthOfMostUsers;
+    }
+    
+    public int getLeastPopularMonth() {
+        return monthOfLeastUsers;
+    }
+    
     // [BirthMonthInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this BirthMonthInfo instance
     public String toString() {
-        return String.format("Users with birth month info: %d%n" +
-            "The most common birth month is %d (%d users)%nUsers: %s%n" +
-            "The least common birth month is %d (%d users)%nUsers: %s",
-            usersWithBirthMonth,
-			monthOfMostUsers, usersBornInMostPopularMonth.size(), usersBornInMostPopularMonth,
-			monthOfLeastUsers, usersBornInLeastPopularMonth.size(), usersBornInLeastPopularMonth);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [BirthMonthInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Users with birth month info: ").append(Long.toString(usersWithBirthMonth)).append(FakebookOracleConstants.NewLine)
+            .append("The most common birth month is ").append(Integer.toString(monthOfMostUsers))
+            .append(" (").append(Integer.toString(usersBornInMostPopularMonth.size())).append(" users)").append(FakebookOracleConstants.NewLine)
+            .append("Users: ");
+        usersBornInMostPopularMonth.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine)
+            .append("The least common birth month is ").append(Integer.toString(monthOfLeastUsers))
+            .append(" (").append(Integer.toString(usersBornInLeastPopularMonth.size())).append(" users)").append(FakebookOracleConstants.NewLine)
+            .append("Users: ");
+        usersBornInLeastPopularMonth.appendTo(out);
     }
     
     // Member Variables
@@ -247,7 +348,7 @@ final class BirthMonthInfo {
     names with the fewest letters, and a list of the most commonly-held first names and
     how many users have that first name. Query 1 will use this data structure.
 */
-final class FirstNameInfo {
+final class FirstNameInfo implements FakebookRenderable {
     // [Constructor]
     public FirstNameInfo() {
         commonCount = 0;
@@ -279,10 +380,20 @@ final class FirstNameInfo {
     // [FirstNameInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this FirstNameInfo instance
     public String toString() {
-        return String.format("The longest first name(s) is (are) %s%n" +
-            "The shortest first name(s) is (are) %s%n" +
-            "The most common first name(s) is (are) %s - having %d users having each one",
-            longestFirstNames, shortestFirstNames, mostCommonFirstNames, commonCount);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [FirstNameInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("The longest first name(s) is (are) ");
+        longestFirstNames.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine).append("The shortest first name(s) is (are) ");
+        shortestFirstNames.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine).append("The most common first name(s) is (are) ");
+        mostCommonFirstNames.appendTo(out);
+        out.append(" - having ").append(Long.toString(commonCount)).append(" users having each one");
     }
     
     // Member Variables
@@ -297,7 +408,7 @@ final class FirstNameInfo {
     held; specifically, it stores a list of the states in which the most events are
     held and the number of events therein held. Query 7 will use this data structure.
 */
-final class EventStateInfo {
+final class EventStateInfo implements FakebookRenderable {
     // [Constructor]
     public EventStateInfo(long count) {
         eventCount = count;
@@ -312,9 +423,16 @@ final class EventStateInfo {
     // [EventStateInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this EventStateInfo instance
     public String toString() {
-        return String.format("State(s) with the most events: %s%n" + 
-            "Number of events in that (those) state(s): %d",
-            popularStates, eventCount);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [EventStateInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("State(s) with the most events: ");
+        popularStates.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine).append("Number of events in that (those) state(s): ").append(Long.toString(eventCount));
     }
     
     // Member Variables
@@ -327,7 +445,7 @@ final class EventStateInfo {
     though it does not store information about who that particular user is. Query 8 will
     use this data structure.
 */
-final class AgeInfo {
+final class AgeInfo implements FakebookRenderable {
     // [Constructor]
     // REQUIRES: neither <oldest> nor <youngest> is NULL
     public AgeInfo(UserInfo oldest, UserInfo youngest) {
@@ -338,11 +456,60 @@ final class AgeInfo {
     // [AgeInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this AgeInfo instance
     public String toString() {
-        return String.format("Oldest friend: %s%nYoungest friend: %s",
-            oldestFriend, youngestFriend);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [AgeInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Oldest friend: ");
+        FakebookRenderable.append(out, oldestFriend);
+        out.append(FakebookOracleConstants.NewLine).append("Youngest friend: ");
+        FakebookRenderable.append(out, youngestFriend);
     }
     
     // Member Variabls
     UserInfo oldestFriend;
     UserInfo youngestFriend;
 }
+
+/*
+    The UserAgeInfo class pairs a user ID with the AgeInfo of that user. Query 8, run
+    for every user at once, will use this data structure.
+*/
+final class UserAgeInfo implements FakebookRenderable {
+    // [Constructor]
+    // REQUIRES: <ageInfo> is not NULL
+    public UserAgeInfo(long id, AgeInfo ageInfo) {
+        userID = id;
+        this.ageInfo = ageInfo;
+    }
+    
+    // [UserAgeInfo-to-String Converter]
+    // EFFECTS:  returns a string representation of this UserAgeInfo instance
+    public String toString() {
+        return FakebookRenderable.render(this);
+    }
+    
+    // [UserAgeInfo Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("User ").append(Long.toString(userID)).append(FakebookOracleConstants.NewLine);
+        ageInfo.appendTo(out);
+    }
+    
+    // [Field Accessors]
+    public long getUserID() {
+        return userID;
+    }
+    
+    public AgeInfo getAgeInfo() {
+        return ageInfo;
+    }
+    
+    // Member Variables
+    private long userID;
+    private AgeInfo ageInfo;
+}
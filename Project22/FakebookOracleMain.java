@@ -1,9 +1,12 @@
 package project2;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public final class FakebookOracleMain {
@@ -11,10 +14,33 @@ public final class FakebookOracleMain {
     private static String username = "victoree";                    // place your uniqname here
     private static String password = "hongshin9384";                    // place your Oracle/SQL*PLUS password here
     
+    // Connection Settings (override with -Dfakebook.<name>=<value>, e.g. to point at a local database)
+    private static String url = System.getProperty("fakebook.url", "jdbc:oracle:thin:@forktail.dsc.umich.edu:1521:COURSEDB");
+    private static int poolSize = Integer.getInteger("fakebook.poolSize", 1);
+    private static int statementCacheSize = Integer.getInteger("fakebook.statementCacheSize", 32);
+    private static int fetchSize = Integer.getInteger("fakebook.fetchSize", FakebookOracleConstants.DefaultFetchSize);
+    private static int instrumentRuns = Integer.getInteger("fakebook.instrument.runs", 10);
+    private static String instrumentJson = System.getProperty("fakebook.instrument.json");   // default: standard output
+    private static long slowThresholdMillis = Long.getLong("fakebook.slowlog.thresholdMillis", 250L);
+    private static String slowLogFile = System.getProperty("fakebook.slowlog.file", "fakebook-slow.log");
+    private static String slowBaselineFile = System.getProperty("fakebook.slowlog.baseline", "fakebook-plans.tsv");
+    private static double slowLatencyFactor = Double.parseDouble(System.getProperty("fakebook.slowlog.latencyFactor", "2.0"));
+    private static boolean slowUpdateBaseline = Boolean.getBoolean("fakebook.slowlog.updateBaseline");
+    private static String snapshotFile = System.getProperty("fakebook.snapshot");               // memory-mapped snapshot
+    
     // [Main Function]
     // Expected Command Line Arguments:
     //  [0] either "all" or a digit 0-9, representing what query to run
-    //  [1] either "p" or "t", indicating "print results" and "time queries" respectively
+    //  [1] either "p", "t", "i", "s", "w", or "a", indicating "print results", "time
+    //      queries", "instrument queries" (phase timings, round trips, rows, bytes, and
+    //      allocations over repeated runs, written as JSON), "log slow queries" (execution
+    //      plans of slow statements, checked against a baseline), "write a snapshot" (of
+    //      the whole database, to the file named by fakebook.snapshot), and "stream Query
+    //      8 for every user" (argument [0] is ignored for the last two) respectively;
+    //      when fakebook.snapshot is set, "p" and "t" answer from that file, memory-mapped,
+    //      instead of the database
+    //  [2] (optional) a number of connections; if given, independent queries run
+    //      concurrently on that many connections, still reported in query order
     public static void main(String[] args) {
         int start = 0;                                // inclusive
         int stop = 10;                                // exclusive
@@ -24,7 +50,25 @@ public final class FakebookOracleMain {
         }
 
         boolean print = args[1].equals("p");
-        if (print) {
+        if (args[1].equals("i")) {
+            instrument(start, stop);
+        }
+        else if (args[1].equals("s")) {
+            slowLog(start, stop);
+        }
+        else if (args[1].equals("w")) {
+            saveSnapshot();
+        }
+        else if (args[1].equals("a")) {
+            allAgeInfo();
+        }
+        else if (snapshotFile != null) {
+            mapped(start, stop, print);
+        }
+        else if (args.length > 2) {
+            parallel(start, stop, print, Integer.parseInt(args[2]));
+        }
+        else if (print) {
             query(start, stop);
         }
         else {
@@ -33,45 +77,13 @@ public final class FakebookOracleMain {
     }
     
     private static void query(int start, int stop) {
-        try (Connection oracleConnection = getConnection()) {
-            FakebookOracle db = new StudentFakebookOracle(oracleConnection);
+        try (FakebookConnectionPool pool = createPool(poolSize);
+             Connection oracleConnection = pool.borrow()) {
+            FakebookOracle db = new StudentFakebookOracle(oracleConnection, FakebookOracleConstants.ForwardOnly, fetchSize);
             OutputStreamWriter out = new OutputStreamWriter(System.out);
             
             for (int query = start; query < stop; query++) {
-                switch (query) {
-                    case 0:
-                        db.printQuery0(out, db.findMonthOfBirthInfo());
-                        break;
-                    case 1:
-                        db.printQuery1(out, db.findNameInfo());
-                        break;
-                    case 2:
-                        db.printQuery2(out, db.lonelyUsers());
-                        break;
-                    case 3:
-                        db.printQuery3(out, db.liveAwayFromHome());
-                        break;
-                    case 4:
-                        db.printQuery4(out, db.findPhotosWithMostTags(5));
-                        break;
-                    case 5:
-                        db.printQuery5(out, db.matchMaker(5, 2));
-                        break;
-                    case 6:
-                        db.printQuery6(out, db.suggestFriends(5));
-                        break;
-                    case 7:
-                        db.printQuery7(out, db.findEventStates());
-                        break;
-                    case 8:
-                        db.printQuery8(out, db.findAgeInfo(215L));
-                        break;
-                    case 9:
-                        db.printQuery9(out, db.findPotentialSiblings());
-                        break;
-                    default:
-                        break;
-                }
+                printQuery(db, out, query);
             }
             
             oracleConnection.close();
@@ -88,46 +100,14 @@ public final class FakebookOracleMain {
         long beginTime = 0L;
         long endTime = 0L;
         
-        try (Connection oracleConnection = getConnection()) {
-            FakebookOracle db = new StudentFakebookOracle(oracleConnection);
+        try (FakebookConnectionPool pool = createPool(poolSize);
+             Connection oracleConnection = pool.borrow()) {
+            FakebookOracle db = new StudentFakebookOracle(oracleConnection, FakebookOracleConstants.ForwardOnly, fetchSize);
             OutputStreamWriter out = new OutputStreamWriter(System.out);
             
             for (int query = start; query < stop; query++) {
                 beginTime = System.currentTimeMillis();
-                switch (query) {
-                    case 0:
-                        db.findMonthOfBirthInfo();
-                        break;
-                    case 1:
-                        db.findNameInfo();
-                        break;
-                    case 2:
-                        db.lonelyUsers();
-                        break;
-                    case 3:
-                        db.liveAwayFromHome();
-                        break;
-                    case 4:
-                        db.findPhotosWithMostTags(5);
-                        break;
-                    case 5:
-                        db.matchMaker(5, 2);
-                        break;
-                    case 6:
-                        db.suggestFriends(5);
-                        break;
-                    case 7:
-                        db.findEventStates();
-                        break;
-                    case 8:
-                        db.findAgeInfo(215L);
-                        break;
-                    case 9:
-                        db.findPotentialSiblings();
-                        break;
-                    default:
-                        break;
-                }
+                runQuery(db, query);
                 endTime = System.currentTimeMillis();
                 
                 out.write(String.format("Query %d Time: %.3f%n", query, (endTime - beginTime) / 1000.0));
@@ -135,6 +115,46 @@ public final class FakebookOracleMain {
             }
             
             oracleConnection.close();
+            out.write(String.format("%s%n", pool.getMetrics()));
+            out.flush();
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private static void instrument(int start, int stop) {
+        FakebookInstrumentation instrumentation = new FakebookInstrumentation();
+        Writer discard = new Writer() {
+            public void write(char[] buffer, int offset, int length) {}
+            public void flush() {}
+            public void close() {}
+        };
+        
+        try (FakebookConnectionPool pool = createPool(poolSize);
+             Connection oracleConnection = pool.borrow()) {
+            FakebookOracle db = new StudentFakebookOracle(instrumentation.wrap(oracleConnection),
+                FakebookOracleConstants.ForwardOnly, fetchSize);
+            
+            for (int run = 0; run < instrumentRuns; run++) {
+                for (int query = start; query < stop; query++) {
+                    instrumentation.begin("Query " + query);
+                    Object results = runQuery(db, query);
+                    instrumentation.beginRender();
+                    printResults(db, discard, query, results);
+                    instrumentation.end();
+                }
+            }
+            
+            Writer out = instrumentJson == null ? new OutputStreamWriter(System.out) : new FileWriter(instrumentJson);
+            instrumentation.writeJson(out);
+            out.flush();
+            if (instrumentJson != null) {
+                out.close();
+            }
         }
         catch (SQLException e) {
             e.printStackTrace();
@@ -144,20 +164,237 @@ public final class FakebookOracleMain {
         }
     }
     
-    private static Connection getConnection() throws SQLException {
+    private static void slowLog(int start, int stop) {
+        FakebookInstrumentation instrumentation = new FakebookInstrumentation();
+        
+        try (FakebookConnectionPool pool = createPool(poolSize);
+             Connection oracleConnection = pool.borrow()) {
+            FakebookSlowQueryLog slowLog = new FakebookSlowQueryLog(slowThresholdMillis, new File(slowLogFile),
+                new File(slowBaselineFile), slowLatencyFactor);
+            instrumentation.setStatementListener(slowLog);
+            FakebookOracle db = new StudentFakebookOracle(instrumentation.wrap(oracleConnection),
+                FakebookOracleConstants.ForwardOnly, fetchSize);
+            OutputStreamWriter out = new OutputStreamWriter(System.out);
+            
+            for (int query = start; query < stop; query++) {
+                slowLog.setLabel("Query " + query);
+                long before = slowLog.getSlowStatements();
+                runQuery(db, query);
+                out.write(String.format("Query %d: %d slow statement(s)%n", query, slowLog.getSlowStatements() - before));
+                out.flush();
+            }
+            
+            for (String regression : slowLog.getRegressions()) {
+                out.write(String.format("REGRESSION %s%n", regression));
+            }
+            out.write(String.format("%d slow statement(s), %d regression(s); plans logged to %s%n",
+                slowLog.getSlowStatements(), slowLog.getRegressions().size(), slowLogFile));
+            if (slowUpdateBaseline) {
+                slowLog.saveBaseline();
+                out.write(String.format("Baseline written to %s%n", slowBaselineFile));
+            }
+            out.flush();
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private static void saveSnapshot() {
+        if (snapshotFile == null) {
+            System.err.println("Set -Dfakebook.snapshot=<file> to write a snapshot");
+            return;
+        }
+        
+        try (FakebookConnectionPool pool = createPool(poolSize);
+             Connection oracleConnection = pool.borrow()) {
+            long beginTime = System.currentTimeMillis();
+            FakebookSnapshot snapshot = FakebookSnapshot.load(oracleConnection, fetchSize);
+            long loadedTime = System.currentTimeMillis();
+            snapshot.save(new File(snapshotFile));
+            long endTime = System.currentTimeMillis();
+            
+            System.out.println(String.format("Snapshot Load Time: %.3f%nSnapshot Save Time: %.3f%nSnapshot written to %s",
+                (loadedTime - beginTime) / 1000.0, (endTime - loadedTime) / 1000.0, snapshotFile));
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private static void allAgeInfo() {
+        try (FakebookConnectionPool pool = createPool(poolSize)) {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+            FakebookRowConsumer<UserAgeInfo> printer = new FakebookRowConsumer<UserAgeInfo>() {
+                public boolean accept(UserAgeInfo row) throws IOException {
+                    row.appendTo(out);
+                    out.write(FakebookOracleConstants.NewLine);
+                    return true;
+                }
+            };
+            
+            long beginTime = System.currentTimeMillis();
+            long users;
+            if (snapshotFile != null) {
+                users = new InMemoryFakebookOracle(new File(snapshotFile)).findAgeInfo(printer);
+            }
+            else {
+                try (Connection oracleConnection = pool.borrow()) {
+                    users = new StudentFakebookOracle(oracleConnection, FakebookOracleConstants.ForwardOnly, fetchSize)
+                        .findAgeInfo(printer);
+                }
+            }
+            long endTime = System.currentTimeMillis();
+            out.flush();
+            System.err.println(String.format("Query 8 for %d users: %.3f", users, (endTime - beginTime) / 1000.0));
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private static void mapped(int start, int stop, boolean print) {
         try {
-            Class.forName("oracle.jdbc.driver.OracleDriver").newInstance();
+            long beginTime = System.currentTimeMillis();
+            FakebookOracle db = new InMemoryFakebookOracle(new File(snapshotFile));
+            long endTime = System.currentTimeMillis();
+            OutputStreamWriter out = new OutputStreamWriter(System.out);
+            if (!print) {
+                out.write(String.format("Snapshot Map Time: %.3f%n", (endTime - beginTime) / 1000.0));
+            }
+            
+            for (int query = start; query < stop; query++) {
+                if (print) {
+                    printQuery(db, out, query);
+                    continue;
+                }
+                beginTime = System.currentTimeMillis();
+                runQuery(db, query);
+                endTime = System.currentTimeMillis();
+                
+                out.write(String.format("Query %d Time: %.3f%n", query, (endTime - beginTime) / 1000.0));
+                out.flush();
+            }
+            out.flush();
         }
-        catch (InstantiationException e) {
+        catch (SQLException e) {
             e.printStackTrace();
         }
-        catch (IllegalAccessException e) {
+        catch (IOException e) {
             e.printStackTrace();
         }
-        catch (ClassNotFoundException e) {
+    }
+    
+    private static void parallel(int start, int stop, boolean print, int parallelism) {
+        try (FakebookConnectionPool pool = createPool(parallelism)) {
+            FakebookQueryRunner runner = new FakebookQueryRunner(pool, parallelism, fetchSize);
+            runner.run(start, stop, print, new OutputStreamWriter(System.out));
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        catch (IOException e) {
             e.printStackTrace();
         }
+    }
+    
+    // [Print Query Function]
+    // EFFECTS:  runs query number <query> against <db> and prints its results to <out>
+    static void printQuery(FakebookOracle db, Writer out, int query) throws SQLException, IOException {
+        printResults(db, out, query, runQuery(db, query));
+    }
+    
+    // [Print Results Function]
+    // REQUIRES: <results> is what runQuery(<db>, <query>) returned
+    // EFFECTS:  prints <results> to <out> as the results of query number <query>
+    @SuppressWarnings("unchecked")
+    static void printResults(FakebookOracle db, Writer out, int query, Object results) throws IOException {
+        switch (query) {
+            case 0:
+                db.printQuery0(out, (BirthMonthInfo) results);
+                break;
+            case 1:
+                db.printQuery1(out, (FirstNameInfo) results);
+                break;
+            case 2:
+                db.printQuery2(out, (FakebookArrayList<UserInfo>) results);
+                break;
+            case 3:
+                db.printQuery3(out, (FakebookArrayList<UserInfo>) results);
+                break;
+            case 4:
+                db.printQuery4(out, (FakebookArrayList<TaggedPhotoInfo>) results);
+                break;
+            case 5:
+                db.printQuery5(out, (FakebookArrayList<MatchPair>) results);
+                break;
+            case 6:
+                db.printQuery6(out, (FakebookArrayList<UsersPair>) results);
+                break;
+            case 7:
+                db.printQuery7(out, (EventStateInfo) results);
+                break;
+            case 8:
+                db.printQuery8(out, (AgeInfo) results);
+                break;
+            case 9:
+                db.printQuery9(out, (FakebookArrayList<SiblingInfo>) results);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    // [Run Query Function]
+    // EFFECTS:  runs query number <query> against <db> and returns its results (null for
+    //   an unknown query number)
+    static Object runQuery(FakebookOracle db, int query) throws SQLException {
+        switch (query) {
+            case 0:
+                return db.findMonthOfBirthInfo();
+            case 1:
+                return db.findNameInfo();
+            case 2:
+                return db.lonelyUsers();
+            case 3:
+                return db.liveAwayFromHome();
+            case 4:
+                return db.findPhotosWithMostTags(5);
+            case 5:
+                return db.matchMaker(5, 2);
+            case 6:
+                return db.suggestFriends(5);
+            case 7:
+                return db.findEventStates();
+            case 8:
+                return db.findAgeInfo(215L);
+            case 9:
+                return db.findPotentialSiblings();
+            default:
+                return null;
+        }
+    }
+    
+    private static FakebookConnectionPool createPool(int size) {
+        if (url.startsWith("jdbc:oracle:")) {
+            try {
+                Class.forName("oracle.jdbc.driver.OracleDriver");
+            }
+            catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
         
-        return DriverManager.getConnection("jdbc:oracle:thin:@forktail.dsc.umich.edu:1521:COURSEDB", username, password);
+        return FakebookConnectionPool.forUrl(url, System.getProperty("fakebook.user", username),
+            System.getProperty("fakebook.password", password), size, statementCacheSize);
     }
 }
@@ -1,13 +1,62 @@
 package project2;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
+/*
+    A FakebookRenderable can write its string representation straight to a Writer (or any
+    other Appendable), in time linear in the length of the output and without building
+    intermediate strings; toString() returns exactly the characters appendTo() writes.
+*/
+interface FakebookRenderable {
+    // [Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the string representation of this instance to <out>
+    void appendTo(Appendable out) throws IOException;
+
+    // [Append Helper]
+    // EFFECTS:  appends <value> to <out> as String.format's %s would
+    static void append(Appendable out, Object value) throws IOException {
+        if (value instanceof FakebookRenderable) {
+            ((FakebookRenderable) value).appendTo(out);
+        }
+        else {
+            out.append(String.valueOf(value));
+        }
+    }
+
+    // [Render Helper]
+    // EFFECTS:  returns the characters <value>.appendTo() writes
+    static String render(FakebookRenderable value) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            value.appendTo(builder);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);    // StringBuilder never throws
+        }
+        return builder.toString();
+    }
+}
+
+/*
+    A FakebookRowConsumer receives the rows of a streamed query one at a time, as they come
+    off the cursor. The query reads the next row only after accept() returns, so a slow
+    consumer slows the query down instead of letting rows pile up in memory, and a consumer
+    that returns false stops the query early.
+*/
+interface FakebookRowConsumer<T> {
+    // [Accept Function]
+    // EFFECTS:  handles <row>; returns true to receive the next row, false to stop
+    boolean accept(T row) throws IOException;
+}
+
 /*
     The FakebookArrayList class is an ArrayList that allows customization of the toString
     function, specifically the inter-item delimiter and the removal of leading/trailing
     brackets.
 */
-final class FakebookArrayList<T> extends ArrayList<T> {
+final class FakebookArrayList<T> extends ArrayList<T> implements FakebookRenderable {
     // [Constructor]
     public FakebookArrayList(String delim) {
         super();
@@ -19,20 +68,33 @@ final class FakebookArrayList<T> extends ArrayList<T> {
     // EFFECTS:  constructs a string representation of the elements contained in this
     //   FakebookArrayList instance, each one delimited by <delimiter>
     public String toString() {
-        String result = "";
-        
+        return FakebookRenderable.render(this);
+    }
+    
+    // [Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>, one element at a time
+    public void appendTo(Appendable out) throws IOException {
         int num = size();
+        if (num < 2 || delimiter.isEmpty()) {
+            // an empty rendering prints as "[]", which we can only tell once rendered
+            StringBuilder result = new StringBuilder();
+            for (int idx = 0; idx < num; idx++) {
+                if (idx != 0) {
+                    result.append(delimiter);
+                }
+                FakebookRenderable.append(result, get(idx));
+            }
+            out.append(result.length() == 0 ? "[]" : result);
+            return;
+        }
+
         for (int idx = 0; idx < num; idx++) {
             if (idx != 0) {
-                result += delimiter;
+                out.append(delimiter);
             }
-            result += get(idx);
+            FakebookRenderable.append(out, get(idx));
         }
-
-		if (result.equals("")) {
-			return "[]";
-		}
-	    return result;
     }
     
     // Member Variables
@@ -0,0 +1,168 @@
+package project2;
+
+import java.util.Arrays;
+
+/*
+    The FakebookPairSet class is an open-addressing hash set of unordered pairs of dense
+    user indexes, each stored as one packed long (lower << 32 | higher). It is a compact
+    replacement for a Set<Long> of friendships: at the default load factor it costs
+    16 bytes per pair and never boxes.
+*/
+final class FakebookPairSet implements FakebookCoTagMatcher.Friendships {
+    // [Constructor]
+    // REQUIRES: <expected> >= 0
+    public FakebookPairSet(int expected) {
+        keys = new long[tableSize(expected)];
+        Arrays.fill(keys, Empty);
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  adds the pair {<a>, <b>}; returns true iff it was not present
+    public boolean add(int a, int b) {
+        if (2 * (size + 1) > keys.length) {
+            rehash(keys.length * 2);
+        }
+        long key = FakebookSnapshot.pack(Math.min(a, b), Math.max(a, b));
+        int slot = slot(key, keys.length);
+        while (keys[slot] != Empty) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        size++;
+        return true;
+    }
+
+    // [Membership Function]
+    // EFFECTS:  returns true iff the pair {<a>, <b>} is present
+    public boolean areFriends(int a, int b) {
+        long key = FakebookSnapshot.pack(Math.min(a, b), Math.max(a, b));
+        int slot = slot(key, keys.length);
+        while (keys[slot] != Empty) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return false;
+    }
+
+    // [Size Function]
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        keys = new long[capacity];
+        Arrays.fill(keys, Empty);
+        for (long key : old) {
+            if (key != Empty) {
+                int slot = slot(key, capacity);
+                while (keys[slot] != Empty) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    // [Table Helpers]
+    // EFFECTS:  returns a power of two at least twice <expected>
+    static int tableSize(int expected) {
+        int size = 16;
+        while (size < 2L * expected) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    // EFFECTS:  returns the home slot of <key> in a table of <capacity> slots
+    static int slot(long key, int capacity) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (capacity - 1);
+    }
+
+    // Constants
+    static final long Empty = -1L;     // no packed pair of non-negative indexes is -1
+
+    // Member Variables
+    private long[] keys;
+    private int size;
+}
+
+/*
+    The FakebookPairCounter class is an open-addressing hash map from packed pairs (or
+    any non-negative long) to int counts, used to count co-occurrences without boxing.
+*/
+final class FakebookPairCounter {
+    // [Constructor]
+    // REQUIRES: <expected> >= 0
+    public FakebookPairCounter(int expected) {
+        keys = new long[FakebookPairSet.tableSize(expected)];
+        counts = new int[keys.length];
+        Arrays.fill(keys, FakebookPairSet.Empty);
+    }
+
+    // [Increment Function]
+    // MODIFIES: this
+    // EFFECTS:  adds one to the count of <key>
+    public void increment(long key) {
+        if (2 * (size + 1) > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = FakebookPairSet.slot(key, keys.length);
+        while (keys[slot] != FakebookPairSet.Empty) {
+            if (keys[slot] == key) {
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        counts[slot] = 1;
+        size++;
+    }
+
+    // [Top Function]
+    // EFFECTS:  offers every (count, key) entry to <top> and returns it
+    public FakebookTopK offerTo(FakebookTopK top) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FakebookPairSet.Empty && top.admits(counts[slot])) {
+                top.offer(counts[slot], keys[slot]);
+            }
+        }
+        return top;
+    }
+
+    // [Size Function]
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        Arrays.fill(keys, FakebookPairSet.Empty);
+        for (int idx = 0; idx < oldKeys.length; idx++) {
+            if (oldKeys[idx] != FakebookPairSet.Empty) {
+                int slot = FakebookPairSet.slot(oldKeys[idx], capacity);
+                while (keys[slot] != FakebookPairSet.Empty) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = oldKeys[idx];
+                counts[slot] = oldCounts[idx];
+            }
+        }
+    }
+
+    // Member Variables
+    private long[] keys;
+    private int[] counts;
+    private int size;
+}
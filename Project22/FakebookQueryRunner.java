@@ -0,0 +1,213 @@
+package project2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+    The FakebookQueryRunner class runs a range of the ten Fakebook queries concurrently,
+    each on its own pooled connection and its own StudentFakebookOracle instance. The
+    earliest query that has not finished writes its output straight through; a query
+    that runs ahead of it buffers its output until every earlier query has finished, so
+    the printed output is identical to running the queries one after another while only
+    the queries that finish out of order are ever held in memory.
+*/
+final class FakebookQueryRunner {
+    // [Constructor]
+    // REQUIRES: <pool> can hand out at least <parallelism> connections, <parallelism> > 0
+    public FakebookQueryRunner(FakebookConnectionPool pool, int parallelism, int fetchSize) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.fetchSize = fetchSize;
+    }
+
+    // [Run Function]
+    // EFFECTS:  runs queries <start> (inclusive) through <stop> (exclusive); if <print>,
+    //   writes each query's results to <out> in query order, otherwise writes each
+    //   query's latency followed by the wall-clock time of the whole run
+    public void run(int start, int stop, boolean print, Writer out) throws SQLException, IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final OrderedOutput output = print ? new OrderedOutput(out, start, stop - start) : null;
+        long beginTime = System.nanoTime();
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (int query = start; query < stop; query++) {
+                final int number = query;
+                futures.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        return execute(number, output);
+                    }
+                }));
+            }
+
+            // the queries print their own output; waiting in order surfaces the first
+            // failure, after which no later query's output is written
+            for (int idx = 0; idx < futures.size(); idx++) {
+                long nanos = await(futures.get(idx));
+                if (!print) {
+                    out.write(String.format("Query %d Time: %.3f%n", start + idx, nanos / 1e9));
+                    out.flush();
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        if (!print) {
+            out.write(String.format("Total Time: %.3f (%d connection(s))%n",
+                (System.nanoTime() - beginTime) / 1e9, parallelism));
+            out.flush();
+        }
+    }
+
+    // [Execute Function]
+    // EFFECTS:  runs query number <query> on a connection of its own and returns its
+    //   latency; if <output> is not null, prints the query's results to it
+    private long execute(int query, OrderedOutput output) throws SQLException, IOException {
+        try (Connection connection = pool.borrow()) {
+            FakebookOracle db = new StudentFakebookOracle(connection, FakebookOracleConstants.ForwardOnly, fetchSize);
+            long beginTime = System.nanoTime();
+            if (output != null) {
+                FakebookOracleMain.printQuery(db, output.writer(query), query);
+                output.finish(query);
+            }
+            else {
+                FakebookOracleMain.runQuery(db, query);
+            }
+            return System.nanoTime() - beginTime;
+        }
+    }
+
+    // [Await Function]
+    // EFFECTS:  waits for <future>, rethrowing the query's own exception
+    private static long await(Future<Long> future) throws SQLException, IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a query", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /*
+        An OrderedOutput passes the output of queries <start> onwards to one writer in
+        query order. The earliest unfinished query (next) writes straight through; any
+        later query appends to a buffer of its own, which is written out (and dropped)
+        once next reaches it. A query that fails never finishes, so the output stops
+        where it would have stopped had the queries run one after another.
+    */
+    private static final class OrderedOutput {
+        OrderedOutput(Writer out, int start, int count) {
+            this.out = out;
+            this.start = start;
+            buffers = new StringBuilder[count];
+            finished = new boolean[count];
+        }
+
+        // EFFECTS:  returns the writer query number <query> prints to
+        Writer writer(int query) {
+            final int idx = query - start;
+            return new Writer() {
+                public void write(char[] chars, int offset, int length) throws IOException {
+                    OrderedOutput.this.append(idx, chars, offset, length);
+                }
+
+                public void write(String string, int offset, int length) throws IOException {
+                    OrderedOutput.this.append(idx, string, offset, length);
+                }
+
+                public void flush() throws IOException {
+                    OrderedOutput.this.flush(idx);
+                }
+
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+
+        synchronized void append(int idx, char[] chars, int offset, int length) throws IOException {
+            if (idx == next) {
+                out.write(chars, offset, length);
+            }
+            else {
+                buffer(idx).append(chars, offset, length);
+            }
+        }
+
+        synchronized void append(int idx, String string, int offset, int length) throws IOException {
+            if (idx == next) {
+                out.write(string, offset, length);
+            }
+            else {
+                buffer(idx).append(string, offset, offset + length);
+            }
+        }
+
+        synchronized void flush(int idx) throws IOException {
+            if (idx == next) {
+                out.flush();
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS:  marks query number <query> finished; if it was next, writes out the
+        //   buffers of the queries after it, up to the first that is still running
+        synchronized void finish(int query) throws IOException {
+            int idx = query - start;
+            finished[idx] = true;
+            while (next < finished.length && finished[next]) {
+                next++;
+                if (next < buffers.length && buffers[next] != null) {
+                    out.write(buffers[next].toString());
+                    buffers[next] = null;
+                }
+            }
+            out.flush();
+        }
+
+        private StringBuilder buffer(int idx) {
+            if (buffers[idx] == null) {
+                buffers[idx] = new StringBuilder();
+            }
+            return buffers[idx];
+        }
+
+        private final Writer out;
+        private final int start;
+        private final StringBuilder[] buffers;
+        private final boolean[] finished;
+        private int next;
+    }
+
+    // Member Variables
+    private final FakebookConnectionPool pool;
+    private final int parallelism;
+    private final int fetchSize;
+}
@@ -0,0 +1,169 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+    The FakebookSchema class creates and drops the Fakebook tables on an arbitrary JDBC
+    database, typically a local embedded one used for benchmarks and regression runs.
+    The columns follow Project1/createTables.sql, renamed to match the public tables the
+    queries read (e.g. User_Current_City, PHOTO_LINK, TAG_CREATED_TIME), using portable
+    SQL types. Triggers, sequences, and foreign keys are left out: loaders are expected to
+    supply ordered friend pairs and explicit city and program IDs themselves. The
+    secondary indexes of Project1/createIndexes.sql can be added and removed separately.
+    This class cannot be instantiated.
+*/
+final class FakebookSchema {
+    // [Create Function]
+    // REQUIRES: none of the Fakebook tables exist yet
+    // EFFECTS:  creates every Fakebook table (and the schema the table prefix names, if any)
+    public static void create(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            String schema = schemaName();
+            if (schema != null) {
+                try {
+                    stmt.executeUpdate("CREATE SCHEMA " + schema);
+                }
+                catch (SQLException e) {
+                    // the schema already exists
+                }
+            }
+            for (String[] table : Tables) {
+                stmt.executeUpdate("CREATE TABLE " + table[0] + " (" + table[1] + ")");
+            }
+        }
+    }
+
+    // [Drop Function]
+    // EFFECTS:  drops every Fakebook table that exists
+    public static void drop(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (int idx = Tables.length - 1; idx >= 0; idx--) {
+                try {
+                    stmt.executeUpdate("DROP TABLE " + Tables[idx][0]);
+                }
+                catch (SQLException e) {
+                    // the table does not exist
+                }
+            }
+        }
+    }
+
+    // [Create Indexes Function]
+    // REQUIRES: the Fakebook tables exist
+    // EFFECTS:  creates every secondary index that does not exist yet
+    public static void createIndexes(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String[] index : Indexes) {
+                try {
+                    stmt.executeUpdate(indexDefinition(index));
+                }
+                catch (SQLException e) {
+                    // the index already exists
+                }
+            }
+        }
+    }
+
+    // [Drop Indexes Function]
+    // EFFECTS:  drops every secondary index that exists
+    public static void dropIndexes(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String[] index : Indexes) {
+                try {
+                    stmt.executeUpdate("DROP INDEX " + indexName(index));
+                }
+                catch (SQLException e) {
+                    // the index does not exist
+                }
+            }
+        }
+    }
+
+    // [Index Definition Functions]
+    // EFFECTS:  returns the CREATE INDEX statement of <index>, an entry of Indexes
+    static String indexDefinition(String[] index) {
+        return "CREATE INDEX " + indexName(index) + " ON " + index[1] + " (" + index[2] + ")";
+    }
+
+    // EFFECTS:  returns the name of <index>, in the schema of its table
+    static String indexName(String[] index) {
+        String schema = schemaName();
+        return schema == null ? index[0] : schema + "." + index[0];
+    }
+
+    // [Schema Name Function]
+    // EFFECTS:  returns the schema part of the table prefix, or null if there is none
+    private static String schemaName() {
+        int dot = FakebookOracleConstants.UsersTable.indexOf('.');
+        return dot < 0 ? null : FakebookOracleConstants.UsersTable.substring(0, dot);
+    }
+
+    // [Constructor]
+    // EFFECTS:  throws an AssertionError
+    private FakebookSchema() {
+        throw new AssertionError();
+    }
+
+    // Table Definitions, in an order that satisfies the (omitted) foreign keys
+    static final String[][] Tables = {
+        { FakebookOracleConstants.UsersTable,
+          "USER_ID BIGINT NOT NULL, FIRST_NAME VARCHAR(100) NOT NULL, LAST_NAME VARCHAR(100) NOT NULL, " +
+          "YEAR_OF_BIRTH INTEGER, MONTH_OF_BIRTH INTEGER, DAY_OF_BIRTH INTEGER, GENDER VARCHAR(100), " +
+          "PRIMARY KEY (USER_ID)" },
+        { FakebookOracleConstants.FriendsTable,
+          "USER1_ID BIGINT NOT NULL, USER2_ID BIGINT NOT NULL, PRIMARY KEY (USER1_ID, USER2_ID)" },
+        { FakebookOracleConstants.CitiesTable,
+          "CITY_ID INTEGER NOT NULL, CITY_NAME VARCHAR(100) NOT NULL, STATE_NAME VARCHAR(100) NOT NULL, " +
+          "COUNTRY_NAME VARCHAR(100) NOT NULL, PRIMARY KEY (CITY_ID)" },
+        { FakebookOracleConstants.CurrentCitiesTable,
+          "USER_ID BIGINT NOT NULL, CURRENT_CITY_ID INTEGER NOT NULL, PRIMARY KEY (USER_ID, CURRENT_CITY_ID)" },
+        { FakebookOracleConstants.HometownCitiesTable,
+          "USER_ID BIGINT NOT NULL, HOMETOWN_CITY_ID INTEGER NOT NULL, PRIMARY KEY (USER_ID, HOMETOWN_CITY_ID)" },
+        { FakebookOracleConstants.ProgramsTable,
+          "PROGRAM_ID INTEGER NOT NULL, INSTITUTION VARCHAR(100) NOT NULL, CONCENTRATION VARCHAR(100) NOT NULL, " +
+          "DEGREE VARCHAR(100) NOT NULL, PRIMARY KEY (PROGRAM_ID)" },
+        { FakebookOracleConstants.EducationTable,
+          "USER_ID BIGINT NOT NULL, PROGRAM_ID INTEGER NOT NULL, PROGRAM_YEAR INTEGER NOT NULL, " +
+          "PRIMARY KEY (USER_ID, PROGRAM_ID)" },
+        { FakebookOracleConstants.EventsTable,
+          "EVENT_ID BIGINT NOT NULL, EVENT_CREATOR_ID BIGINT NOT NULL, EVENT_NAME VARCHAR(100) NOT NULL, " +
+          "EVENT_TAGLINE VARCHAR(100), EVENT_DESCRIPTION VARCHAR(100), EVENT_HOST VARCHAR(100), " +
+          "EVENT_TYPE VARCHAR(100), EVENT_SUBTYPE VARCHAR(100), EVENT_ADDRESS VARCHAR(2000), " +
+          "EVENT_CITY_ID INTEGER NOT NULL, EVENT_START_TIME TIMESTAMP, EVENT_END_TIME TIMESTAMP, " +
+          "PRIMARY KEY (EVENT_ID)" },
+        { FakebookOracleConstants.AlbumsTable,
+          "ALBUM_ID BIGINT NOT NULL, ALBUM_OWNER_ID BIGINT NOT NULL, ALBUM_NAME VARCHAR(100) NOT NULL, " +
+          "ALBUM_CREATED_TIME TIMESTAMP NOT NULL, ALBUM_MODIFIED_TIME TIMESTAMP, ALBUM_LINK VARCHAR(100) NOT NULL, " +
+          "ALBUM_VISIBILITY VARCHAR(100) NOT NULL, COVER_PHOTO_ID BIGINT NOT NULL, PRIMARY KEY (ALBUM_ID)" },
+        { FakebookOracleConstants.PhotosTable,
+          "PHOTO_ID BIGINT NOT NULL, ALBUM_ID BIGINT NOT NULL, PHOTO_CAPTION VARCHAR(2000), " +
+          "PHOTO_CREATED_TIME TIMESTAMP NOT NULL, PHOTO_MODIFIED_TIME TIMESTAMP, PHOTO_LINK VARCHAR(2000) NOT NULL, " +
+          "PRIMARY KEY (PHOTO_ID)" },
+        { FakebookOracleConstants.TagsTable,
+          "TAG_PHOTO_ID BIGINT NOT NULL, TAG_SUBJECT_ID BIGINT NOT NULL, TAG_CREATED_TIME TIMESTAMP NOT NULL, " +
+          "TAG_X NUMERIC NOT NULL, TAG_Y NUMERIC NOT NULL, PRIMARY KEY (TAG_PHOTO_ID, TAG_SUBJECT_ID)" },
+        { FakebookOracleConstants.ParticipantsTable,
+          "EVENT_ID BIGINT NOT NULL, USER_ID BIGINT NOT NULL, CONFIRMATION VARCHAR(100) NOT NULL, " +
+          "PRIMARY KEY (EVENT_ID, USER_ID)" },
+        { FakebookOracleConstants.MessagesTable,
+          "MESSAGE_ID BIGINT NOT NULL, SENDER_ID BIGINT NOT NULL, RECEIVER_ID BIGINT NOT NULL, " +
+          "MESSAGE_CONTENT VARCHAR(2000) NOT NULL, SENT_TIME TIMESTAMP NOT NULL, PRIMARY KEY (MESSAGE_ID)" },
+    };
+
+    // Index Definitions, as in Project1/createIndexes.sql: name, table, columns, and the
+    // queries that filter or join on those columns
+    static final String[][] Indexes = {
+        { "USERS_MONTH_NAME_IDX", FakebookOracleConstants.UsersTable,
+          "MONTH_OF_BIRTH, USER_ID, FIRST_NAME, LAST_NAME", "0" },
+        { "USERS_FIRST_NAME_IDX", FakebookOracleConstants.UsersTable, "FIRST_NAME", "1" },
+        { "USERS_LAST_NAME_IDX", FakebookOracleConstants.UsersTable, "LAST_NAME, USER_ID, YEAR_OF_BIRTH", "9" },
+        { "FRIENDS_USER2_IDX", FakebookOracleConstants.FriendsTable, "USER2_ID, USER1_ID", "2,6,8,9" },
+        { "TAGS_SUBJECT_IDX", FakebookOracleConstants.TagsTable, "TAG_SUBJECT_ID, TAG_PHOTO_ID", "4,5" },
+        { "PHOTOS_ALBUM_IDX", FakebookOracleConstants.PhotosTable, "ALBUM_ID, PHOTO_ID", "4" },
+        { "USER_EVENTS_CITY_IDX", FakebookOracleConstants.EventsTable, "EVENT_CITY_ID", "7" },
+        { "CITIES_STATE_IDX", FakebookOracleConstants.CitiesTable, "CITY_ID, STATE_NAME", "7" },
+        { "USER_HOMETOWN_CITY_IDX", FakebookOracleConstants.HometownCitiesTable, "HOMETOWN_CITY_ID, USER_ID", "9" },
+    };
+}
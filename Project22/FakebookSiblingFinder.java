@@ -0,0 +1,147 @@
+package project2;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+    The FakebookSiblingFinder class finds the potential siblings of Query 9 (friends with
+    the same last name and the same hometown, born less than 10 years apart) over a
+    FakebookFriendIndex, without the self-joins of Users and User_Hometown_Cities.
+
+    Every hometown row of a user with a known last name and birth year goes into the
+    bucket of its (last name, hometown city) key, so only users who already agree on
+    both are ever compared. Each bucket is sorted by birth year and swept with a window
+    of 10 years: every user is paired only with the users after it in the window, and
+    each such candidate is checked against the friend index. Ranges of buckets are split
+    across a fork/join pool; the pairs found are sorted into user order at the end, so a
+    common last name costs the size of its buckets' windows, not the square of its
+    population.
+
+    A pair sharing more than one hometown is found once per shared hometown, as the join
+    over User_Hometown_Cities reports it.
+*/
+final class FakebookSiblingFinder {
+    // [Constructor]
+    // EFFECTS:  finds siblings over <index> using the common fork/join pool
+    public FakebookSiblingFinder(FakebookFriendIndex index) {
+        this(index, ForkJoinPool.commonPool());
+    }
+
+    // [Constructor]
+    // EFFECTS:  finds siblings over <index> using the workers of <pool>
+    public FakebookSiblingFinder(FakebookFriendIndex index, ForkJoinPool pool) {
+        this.index = index;
+        this.pool = pool;
+    }
+
+    // [Sibling Pairs Function]
+    // REQUIRES: <lastNames> and <years> have one entry per user of the index, holding a
+    //   non-negative last name code (-1 if missing) and a birth year
+    //   (FakebookSnapshot.NullInt if missing); <hometownUsers>[i] and <hometownCities>[i]
+    //   form the hometown rows, without duplicates
+    // EFFECTS:  returns every potential sibling pair as a packed (lower user index, higher
+    //   user index) key, once per hometown the two share, in ascending order
+    public long[] siblingPairs(int[] lastNames, int[] years, int[] hometownUsers, int[] hometownCities) {
+        // order the usable hometown rows by bucket key, remembering each row's position
+        FakebookLongList keyed = new FakebookLongList();
+        FakebookLongList bucketKeys = new FakebookLongList();
+        for (int row = 0; row < hometownUsers.length; row++) {
+            int user = hometownUsers[row];
+            if (user >= 0 && lastNames[user] >= 0 && years[user] != FakebookSnapshot.NullInt) {
+                bucketKeys.add(FakebookSnapshot.pack(lastNames[user], hometownCities[row]));
+            }
+        }
+        long[] buckets = bucketKeys.toSortedUniqueArray();
+        if (buckets.length == 0) {
+            return new long[0];
+        }
+        for (int row = 0; row < hometownUsers.length; row++) {
+            int user = hometownUsers[row];
+            if (user >= 0 && lastNames[user] >= 0 && years[user] != FakebookSnapshot.NullInt) {
+                int bucket = Arrays.binarySearch(buckets, FakebookSnapshot.pack(lastNames[user], hometownCities[row]));
+                keyed.add(FakebookSnapshot.pack(bucket, row));
+            }
+        }
+        long[] rows = keyed.toSortedUniqueArray();
+
+        // members[bounds[b] .. bounds[b + 1]) are bucket b's users as (year, user) keys
+        int[] bounds = new int[buckets.length + 1];
+        long[] members = new long[rows.length];
+        for (int idx = 0; idx < rows.length; idx++) {
+            int user = hometownUsers[FakebookSnapshot.low(rows[idx])];
+            bounds[FakebookSnapshot.high(rows[idx]) + 1]++;
+            members[idx] = ((long) years[user] << 32) | user;
+        }
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            bounds[bucket + 1] += bounds[bucket];
+        }
+
+        int grain = Math.max(1, buckets.length / (pool.getParallelism() * TasksPerWorker));
+        long[] pairs = pool.invoke(new SweepTask(0, buckets.length, grain, bounds, members)).toArray();
+        Arrays.sort(pairs);
+        return pairs;
+    }
+
+    /*
+        A SweepTask sweeps the buckets in [begin, end), splitting the range in half until
+        it is at most <grain> buckets long, and returns the pairs it finds.
+    */
+    private final class SweepTask extends RecursiveTask<FakebookLongList> {
+        SweepTask(int begin, int end, int grain, int[] bounds, long[] members) {
+            this.begin = begin;
+            this.end = end;
+            this.grain = grain;
+            this.bounds = bounds;
+            this.members = members;
+        }
+
+        @Override
+        protected FakebookLongList compute() {
+            if (end - begin > grain) {
+                int middle = (begin + end) >>> 1;
+                SweepTask left = new SweepTask(begin, middle, grain, bounds, members);
+                left.fork();
+                FakebookLongList pairs = new SweepTask(middle, end, grain, bounds, members).compute();
+                FakebookLongList leftPairs = left.join();
+                for (int idx = 0; idx < pairs.size(); idx++) {
+                    leftPairs.add(pairs.get(idx));
+                }
+                return leftPairs;
+            }
+
+            FakebookLongList pairs = new FakebookLongList();
+            for (int bucket = begin; bucket < end; bucket++) {
+                int first = bounds[bucket];
+                int last = bounds[bucket + 1];
+                Arrays.sort(members, first, last);
+                for (int a = first; a < last; a++) {
+                    long yearA = members[a] >> 32;
+                    int userA = (int) members[a];
+                    for (int b = a + 1; b < last && (members[b] >> 32) - yearA < YearWindow; b++) {
+                        int userB = (int) members[b];
+                        if (userA != userB && index.areFriends(userA, userB)) {
+                            pairs.add(FakebookSnapshot.pack(Math.min(userA, userB), Math.max(userA, userB)));
+                        }
+                    }
+                }
+            }
+            return pairs;
+        }
+
+        private final int begin;
+        private final int end;
+        private final int grain;
+        private final int[] bounds;
+        private final long[] members;
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Constants
+    private static final int TasksPerWorker = 16;
+    private static final long YearWindow = 10;              // years apart, exclusive
+
+    // Member Variables
+    private final FakebookFriendIndex index;
+    private final ForkJoinPool pool;
+}
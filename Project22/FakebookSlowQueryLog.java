@@ -0,0 +1,370 @@
+package project2;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    The FakebookSlowQueryLog class is a FakebookInstrumentation.StatementListener that
+    keeps a log of slow statements. Every statement execution (execution plus fetching
+    its rows) that takes at least <thresholdMillis> is explained, and the log file gets
+    its time, its elapsed time, its SQL, and its execution plan.
+
+    Statements and plans are fingerprinted so runs can be compared:
+      * the SQL fingerprint is a hash of the SQL with literals replaced by '?', IN lists
+        collapsed, and whitespace and case normalized, so it identifies "the same query"
+      * the plan fingerprint is a hash of the plan text with whitespace collapsed and
+        numbers (costs, row estimates, generated index names) masked, so it changes
+        when the shape of the plan changes and not when the statistics move a little
+
+    A baseline file holds one line per SQL fingerprint: its plan fingerprint, its best
+    elapsed time, and its normalized SQL. A slow statement is flagged as a regression
+    when its plan fingerprint differs from the baseline's, or when it took more than
+    <latencyFactor> times the baseline's time. saveBaseline() rewrites the baseline with
+    what this log observed (keeping the entries of statements it did not see).
+
+    Plans come from EXPLAIN PLAN and DBMS_XPLAN on Oracle and from EXPLAIN on other
+    databases (e.g. an embedded H2 database), with the statement's bind values. Each
+    distinct statement is explained once per log.
+*/
+final class FakebookSlowQueryLog implements FakebookInstrumentation.StatementListener {
+    // [Constructor]
+    // REQUIRES: <thresholdMillis> >= 0, <latencyFactor> > 1
+    // EFFECTS:  creates a log appending to <logFile> and reading the baseline from
+    //   <baselineFile>, if it exists
+    public FakebookSlowQueryLog(long thresholdMillis, File logFile, File baselineFile, double latencyFactor) throws IOException {
+        this.thresholdNanos = thresholdMillis * 1000000L;
+        this.logFile = logFile;
+        this.baselineFile = baselineFile;
+        this.latencyFactor = latencyFactor;
+        baseline = loadBaseline(baselineFile);
+    }
+
+    // [Label Function]
+    // MODIFIES: this
+    // EFFECTS:  tags the statements that follow with <label> (e.g. "Query 9")
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    // [Executed Function]
+    // MODIFIES: this, the log file
+    // EFFECTS:  if the execution was slow, explains it, logs it, and checks it against
+    //   the baseline
+    public void executed(Connection connection, String sql, List<Object> binds, long nanos) throws SQLException {
+        if (nanos < thresholdNanos) {
+            return;
+        }
+        String normalized = normalizeSql(sql);
+        String sqlFingerprint = fingerprint(normalized);
+        String plan = plans.get(sqlFingerprint);
+        if (plan == null) {
+            try {
+                plan = explain(connection, sql, binds);
+            }
+            catch (SQLException e) {
+                plan = "(plan unavailable: " + e.getMessage() + ")";
+            }
+            plans.put(sqlFingerprint, plan);
+        }
+        String planFingerprint = fingerprint(normalizePlan(plan));
+        slowStatements++;
+
+        List<String> flags = new ArrayList<String>();
+        Observation expected = baseline.get(sqlFingerprint);
+        if (expected == null) {
+            flags.add("NEW");
+        }
+        else {
+            if (!expected.planFingerprint.equals(planFingerprint)) {
+                flags.add("PLAN CHANGED from " + expected.planFingerprint);
+            }
+            if (nanos > expected.nanos * latencyFactor) {
+                flags.add(String.format("LATENCY %.1fx baseline of %.3f ms", (double) nanos / expected.nanos, expected.nanos / 1e6));
+            }
+        }
+        for (String flag : flags) {
+            if (!flag.equals("NEW")) {
+                regressions.add(String.format("%s sql=%s: %s", label, sqlFingerprint, flag));
+            }
+        }
+
+        Observation observed = observations.get(sqlFingerprint);
+        if (observed == null || !observed.planFingerprint.equals(planFingerprint) || nanos < observed.nanos) {
+            observations.put(sqlFingerprint, new Observation(planFingerprint, nanos, normalized));
+        }
+
+        try (Writer out = new FileWriter(logFile, true)) {
+            out.append("# ").append(new Timestamp(System.currentTimeMillis()).toString())
+                .append("  ").append(label)
+                .append("  sql=").append(sqlFingerprint)
+                .append("  plan=").append(planFingerprint)
+                .append(String.format("  elapsed=%.3f ms", nanos / 1e6));
+            for (String flag : flags) {
+                out.append("  [").append(flag).append(']');
+            }
+            out.append(NL).append(sql.trim()).append(NL);
+            if (!binds.isEmpty()) {
+                out.append("-- binds: ").append(binds.toString()).append(NL);
+            }
+            out.append(plan).append(NL).append(NL);
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not write the slow query log " + logFile, e);
+        }
+    }
+
+    // [Accessors]
+    public long getSlowStatements() {
+        return slowStatements;
+    }
+
+    // EFFECTS:  returns a description of every regression found so far, in order
+    public List<String> getRegressions() {
+        return regressions;
+    }
+
+    // [Save Baseline Function]
+    // MODIFIES: the baseline file
+    // EFFECTS:  writes the baseline, with this log's observations replacing the entries
+    //   of the statements it saw
+    public void saveBaseline() throws IOException {
+        TreeMap<String, Observation> merged = new TreeMap<String, Observation>(baseline);
+        merged.putAll(observations);
+        try (Writer out = new FileWriter(baselineFile)) {
+            out.append("# sql fingerprint, plan fingerprint, elapsed nanoseconds, normalized SQL").append(NL);
+            for (Map.Entry<String, Observation> entry : merged.entrySet()) {
+                Observation observation = entry.getValue();
+                out.append(entry.getKey()).append('\t').append(observation.planFingerprint).append('\t')
+                    .append(Long.toString(observation.nanos)).append('\t').append(observation.sql).append(NL);
+            }
+        }
+    }
+
+    // [Explain Function]
+    // EFFECTS:  returns the execution plan <connection>'s database chooses for <sql>
+    //   with <binds>, one line per row of the plan
+    static String explain(Connection connection, String sql, List<Object> binds) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        if (connection.getMetaData().getDatabaseProductName().toLowerCase().contains("oracle")) {
+            // EXPLAIN PLAN leaves bind variables unbound, so they are named instead of set
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DELETE FROM PLAN_TABLE WHERE STATEMENT_ID = '" + StatementID + "'");
+                stmt.execute("EXPLAIN PLAN SET STATEMENT_ID = '" + StatementID + "' FOR " + namedBinds(sql));
+                ResultSet rst = stmt.executeQuery(
+                    "SELECT PLAN_TABLE_OUTPUT FROM TABLE(DBMS_XPLAN.DISPLAY(NULL, '" + StatementID + "', 'BASIC'))");
+                appendRows(plan, rst);
+                rst.close();
+            }
+        }
+        else {
+            try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (int idx = 0; idx < binds.size(); idx++) {
+                    stmt.setObject(idx + 1, binds.get(idx));
+                }
+                ResultSet rst = stmt.executeQuery();
+                appendRows(plan, rst);
+                rst.close();
+            }
+        }
+        return plan.toString().trim();
+    }
+
+    // [Normalization Functions]
+    // EFFECTS:  returns <sql> with string and number literals replaced by '?', runs of
+    //   whitespace replaced by one space, lists of two or more '?' (IN lists of any
+    //   length) replaced by "(?, ...)", and everything else in upper case
+    static String normalizeSql(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        int idx = 0;
+        while (idx < sql.length()) {
+            char ch = sql.charAt(idx);
+            if (ch == '\'') {
+                idx = skipString(sql, idx);
+                normalized.append('?');
+            }
+            else if (Character.isWhitespace(ch)) {
+                while (idx < sql.length() && Character.isWhitespace(sql.charAt(idx))) {
+                    idx++;
+                }
+                normalized.append(' ');
+            }
+            else if (Character.isDigit(ch) && (idx == 0 || !isWordChar(sql.charAt(idx - 1)))) {
+                while (idx < sql.length() && (Character.isDigit(sql.charAt(idx)) || sql.charAt(idx) == '.')) {
+                    idx++;
+                }
+                normalized.append('?');
+            }
+            else {
+                normalized.append(Character.toUpperCase(ch));
+                idx++;
+            }
+        }
+        return normalized.toString().trim().replaceAll("\\(\\?(, ?\\?)+\\)", "(?, ...)");
+    }
+
+    // EFFECTS:  returns the non-blank lines of <plan>, trimmed, with runs of whitespace
+    //   and of dashes collapsed and every number replaced by '#'
+    static String normalizePlan(String plan) {
+        StringBuilder normalized = new StringBuilder(plan.length());
+        for (String line : plan.split("\r?\n")) {
+            line = line.trim().replaceAll("\\s+", " ").replaceAll("-{2,}", "--").replaceAll("[0-9]+", "#");
+            if (!line.isEmpty()) {
+                normalized.append(line).append('\n');
+            }
+        }
+        return normalized.toString();
+    }
+
+    // [Fingerprint Function]
+    // EFFECTS:  returns the first 16 hex digits of the SHA-1 hash of <text>
+    static String fingerprint(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(16);
+            for (int idx = 0; idx < 8; idx++) {
+                hex.append(String.format("%02x", hash[idx] & 0xff));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // every JVM provides SHA-1
+        }
+    }
+
+    // [Bind Naming Function]
+    // EFFECTS:  returns <sql> with its JDBC '?' placeholders (outside string literals)
+    //   replaced by :1, :2, ...
+    private static String namedBinds(String sql) {
+        StringBuilder named = new StringBuilder(sql.length() + 8);
+        int bind = 0;
+        int idx = 0;
+        while (idx < sql.length()) {
+            char ch = sql.charAt(idx);
+            if (ch == '\'') {
+                int end = skipString(sql, idx);
+                named.append(sql, idx, end);
+                idx = end;
+            }
+            else {
+                if (ch == '?') {
+                    named.append(':').append(++bind);
+                }
+                else {
+                    named.append(ch);
+                }
+                idx++;
+            }
+        }
+        return named.toString();
+    }
+
+    // EFFECTS:  returns the index just past the string literal starting at <start>
+    private static int skipString(String sql, int start) {
+        int idx = start + 1;
+        while (idx < sql.length()) {
+            if (sql.charAt(idx) == '\'') {
+                if (idx + 1 < sql.length() && sql.charAt(idx + 1) == '\'') {
+                    idx += 2;                   // an escaped quote
+                    continue;
+                }
+                return idx + 1;
+            }
+            idx++;
+        }
+        return idx;
+    }
+
+    private static boolean isWordChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$' || ch == '#';
+    }
+
+    // EFFECTS:  appends every row of <rst>, columns separated by tabs, one per line
+    private static void appendRows(StringBuilder out, ResultSet rst) throws SQLException {
+        ResultSetMetaData meta = rst.getMetaData();
+        int columns = meta.getColumnCount();
+        while (rst.next()) {
+            for (int column = 1; column <= columns; column++) {
+                if (column > 1) {
+                    out.append('\t');
+                }
+                String value = rst.getString(column);
+                out.append(value == null ? "" : value);
+            }
+            out.append(NL);
+        }
+    }
+
+    // [Baseline Loading Function]
+    // EFFECTS:  returns the entries of the baseline file <file>, or none if it does not
+    //   exist
+    private static Map<String, Observation> loadBaseline(File file) throws IOException {
+        Map<String, Observation> entries = new HashMap<String, Observation>();
+        if (!file.exists()) {
+            return entries;
+        }
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 4);
+                if (fields.length != 4) {
+                    throw new IOException("Malformed baseline line in " + file + ": " + line);
+                }
+                entries.put(fields[0], new Observation(fields[1], Long.parseLong(fields[2]), fields[3]));
+            }
+        }
+        return entries;
+    }
+
+    /*
+        An Observation is the plan fingerprint and best elapsed time of one statement.
+    */
+    private static final class Observation {
+        Observation(String planFingerprint, long nanos, String sql) {
+            this.planFingerprint = planFingerprint;
+            this.nanos = nanos;
+            this.sql = sql;
+        }
+
+        final String planFingerprint;
+        final long nanos;
+        final String sql;
+    }
+
+    // Constants
+    private static final String StatementID = "fakebook_slow";
+    private static final String NL = FakebookOracleConstants.NewLine;
+
+    // Member Variables
+    private final long thresholdNanos;
+    private final File logFile;
+    private final File baselineFile;
+    private final double latencyFactor;
+    private final Map<String, Observation> baseline;
+    private final Map<String, Observation> observations = new HashMap<String, Observation>();
+    private final Map<String, String> plans = new HashMap<String, String>();
+    private final List<String> regressions = new ArrayList<String>();
+    private String label = "";
+    private long slowStatements;
+}
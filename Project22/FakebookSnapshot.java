@@ -0,0 +1,731 @@
+package project2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The FakebookSnapshot class is an immutable, columnar copy of the Fakebook tables the
+    ten queries read. Every entity is addressed by a dense index: users and photos are
+    sorted by ID, so index order is ID order. Columns are primitive buffers; repeated
+    strings (names, genders, states, album names) are dictionary-encoded into an int code,
+    while photo links, which are unique per photo, are kept in a UTF-8 heap of their own.
+    Friendships are kept in a FakebookFriendIndex over the same user indexes; the other
+    relationships are stored as sorted packed (index << 32 | index) longs, which can be
+    range-scanned and binary-searched without boxing. Integer columns that are NULL in
+    the database hold NullInt.
+
+    A snapshot is either loaded over JDBC, in which case its buffers wrap heap arrays,
+    or mapped from a file written by save(), in which case they are views of the file's
+    pages: map() reads a header and nothing else, every process mapping the same file
+    shares one copy in the OS page cache, and strings are decoded when they are asked
+    for (dictionary strings through a small fixed-size cache). The file layout (version
+    2, little-endian) is
+
+        int magic, int version, int section count, int 0
+        per section: long offset, long length in bytes
+        the sections, each starting on an 8-byte boundary, in the order of Sections
+
+    where the string dictionary and the photo links are each stored as a heap of UTF-8
+    bytes plus an offset per string (and one past the end; a NULL string's end offset is
+    complemented), and the friend index as its CSR offsets and neighbors.
+*/
+final class FakebookSnapshot {
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection, <fetchSize> > 0
+    // EFFECTS:  reads the Users, Friends, Cities, current and hometown city, Albums,
+    //   Photos, Tags, and User_Events tables once, in a single forward pass each
+    public static FakebookSnapshot load(Connection connection, int fetchSize) throws SQLException {
+        FakebookSnapshot snapshot = new FakebookSnapshot();
+        FakebookStringDictionary strings = new FakebookStringDictionary();
+
+        try (Statement stmt = connection.createStatement(FakebookOracleConstants.ForwardOnly, FakebookOracleConstants.ReadOnly)) {
+            stmt.setFetchSize(fetchSize);
+
+            // Users, sorted by ID
+            FakebookLongList ids = new FakebookLongList();
+            FakebookIntList first = new FakebookIntList();
+            FakebookIntList last = new FakebookIntList();
+            FakebookIntList years = new FakebookIntList();
+            FakebookIntList months = new FakebookIntList();
+            FakebookIntList days = new FakebookIntList();
+            FakebookIntList genders = new FakebookIntList();
+            ResultSet rst = stmt.executeQuery(
+                "SELECT USER_ID, FIRST_NAME, LAST_NAME, YEAR_OF_BIRTH, MONTH_OF_BIRTH, DAY_OF_BIRTH, GENDER " +
+                "FROM " + FakebookOracleConstants.UsersTable + " ORDER BY USER_ID");
+            while (rst.next()) {
+                ids.add(rst.getLong(1));
+                first.add(strings.encode(rst.getString(2)));
+                last.add(strings.encode(rst.getString(3)));
+                years.add(getInt(rst, 4));
+                months.add(getInt(rst, 5));
+                days.add(getInt(rst, 6));
+                genders.add(strings.encode(rst.getString(7)));
+            }
+            rst.close();
+            snapshot.userIds = LongBuffer.wrap(ids.toArray());
+            snapshot.firstNames = IntBuffer.wrap(first.toArray());
+            snapshot.lastNames = IntBuffer.wrap(last.toArray());
+            snapshot.birthYears = IntBuffer.wrap(years.toArray());
+            snapshot.birthMonths = IntBuffer.wrap(months.toArray());
+            snapshot.birthDays = IntBuffer.wrap(days.toArray());
+            snapshot.genders = IntBuffer.wrap(genders.toArray());
+
+            // Friends, as a CSR index over the user indexes
+            FakebookIntList sources = new FakebookIntList();
+            FakebookIntList targets = new FakebookIntList();
+            rst = stmt.executeQuery("SELECT USER1_ID, USER2_ID FROM " + FakebookOracleConstants.FriendsTable);
+            while (rst.next()) {
+                sources.add(snapshot.userIndex(rst.getLong(1)));
+                targets.add(snapshot.userIndex(rst.getLong(2)));
+            }
+            rst.close();
+            snapshot.friends = FakebookFriendIndex.build(snapshot.userIds, sources.toArray(), targets.toArray());
+
+            // Cities, sorted by ID
+            FakebookLongList cityIds = new FakebookLongList();
+            FakebookIntList states = new FakebookIntList();
+            rst = stmt.executeQuery("SELECT CITY_ID, STATE_NAME FROM " + FakebookOracleConstants.CitiesTable + " ORDER BY CITY_ID");
+            while (rst.next()) {
+                cityIds.add(rst.getLong(1));
+                states.add(strings.encode(rst.getString(2)));
+            }
+            rst.close();
+            snapshot.cityIds = LongBuffer.wrap(cityIds.toArray());
+            snapshot.cityStates = IntBuffer.wrap(states.toArray());
+
+            // Current and hometown cities, as (user index, city ID) pairs
+            snapshot.currentCities = loadUserCities(stmt, snapshot,
+                "SELECT USER_ID, CURRENT_CITY_ID FROM " + FakebookOracleConstants.CurrentCitiesTable);
+            snapshot.hometownCities = loadUserCities(stmt, snapshot,
+                "SELECT USER_ID, HOMETOWN_CITY_ID FROM " + FakebookOracleConstants.HometownCitiesTable);
+
+            // Albums, sorted by ID
+            FakebookLongList albumIds = new FakebookLongList();
+            FakebookIntList albumNames = new FakebookIntList();
+            rst = stmt.executeQuery("SELECT ALBUM_ID, ALBUM_NAME FROM " + FakebookOracleConstants.AlbumsTable + " ORDER BY ALBUM_ID");
+            while (rst.next()) {
+                albumIds.add(rst.getLong(1));
+                albumNames.add(strings.encode(rst.getString(2)));
+            }
+            rst.close();
+            snapshot.albumIds = LongBuffer.wrap(albumIds.toArray());
+            snapshot.albumNames = IntBuffer.wrap(albumNames.toArray());
+
+            // Photos, sorted by ID; photos whose album is missing are dropped
+            FakebookLongList photoIds = new FakebookLongList();
+            FakebookIntList photoAlbums = new FakebookIntList();
+            FakebookIntList linkEnds = new FakebookIntList();
+            ByteArrayOutputStream linkBytes = new ByteArrayOutputStream();
+            linkEnds.add(0);
+            rst = stmt.executeQuery("SELECT PHOTO_ID, ALBUM_ID, PHOTO_LINK FROM " + FakebookOracleConstants.PhotosTable + " ORDER BY PHOTO_ID");
+            while (rst.next()) {
+                int album = binarySearch(snapshot.albumIds, 0, snapshot.albumIds.limit(), rst.getLong(2));
+                if (album < 0) {
+                    continue;
+                }
+                photoIds.add(rst.getLong(1));
+                photoAlbums.add(album);
+                String link = rst.getString(3);
+                if (link == null) {
+                    linkEnds.add(~linkBytes.size());
+                } else {
+                    byte[] utf8 = link.getBytes(StandardCharsets.UTF_8);
+                    linkBytes.write(utf8, 0, utf8.length);
+                    linkEnds.add(linkBytes.size());
+                }
+            }
+            rst.close();
+            snapshot.photoIds = LongBuffer.wrap(photoIds.toArray());
+            snapshot.photoAlbums = IntBuffer.wrap(photoAlbums.toArray());
+            snapshot.photoLinkOffsets = IntBuffer.wrap(linkEnds.toArray());
+            snapshot.photoLinkBytes = ByteBuffer.wrap(linkBytes.toByteArray());
+
+            // Tags, as (photo index, user index) pairs
+            FakebookLongList tags = new FakebookLongList();
+            rst = stmt.executeQuery("SELECT TAG_PHOTO_ID, TAG_SUBJECT_ID FROM " + FakebookOracleConstants.TagsTable);
+            while (rst.next()) {
+                int photo = binarySearch(snapshot.photoIds, 0, snapshot.photoIds.limit(), rst.getLong(1));
+                int user = snapshot.userIndex(rst.getLong(2));
+                if (photo >= 0 && user >= 0) {
+                    tags.add(pack(photo, user));
+                }
+            }
+            rst.close();
+            snapshot.tags = LongBuffer.wrap(tags.toSortedUniqueArray());
+
+            // Events, as city indexes (-1 if the city is missing)
+            FakebookIntList eventCities = new FakebookIntList();
+            rst = stmt.executeQuery("SELECT EVENT_CITY_ID FROM " + FakebookOracleConstants.EventsTable);
+            while (rst.next()) {
+                int city = binarySearch(snapshot.cityIds, 0, snapshot.cityIds.limit(), rst.getLong(1));
+                eventCities.add(city >= 0 ? city : -1);
+            }
+            rst.close();
+            snapshot.eventCities = IntBuffer.wrap(eventCities.toArray());
+        }
+
+        snapshot.strings = strings.toArray();
+        return snapshot;
+    }
+
+    // [User City Loading Function]
+    private static LongBuffer loadUserCities(Statement stmt, FakebookSnapshot snapshot, String sql) throws SQLException {
+        FakebookLongList pairs = new FakebookLongList();
+        ResultSet rst = stmt.executeQuery(sql);
+        while (rst.next()) {
+            int user = snapshot.userIndex(rst.getLong(1));
+            if (user >= 0) {
+                pairs.add(pack(user, rst.getInt(2)));
+            }
+        }
+        rst.close();
+        return LongBuffer.wrap(pairs.toSortedUniqueArray());
+    }
+
+    // [Nullable Integer Function]
+    private static int getInt(ResultSet rst, int column) throws SQLException {
+        int value = rst.getInt(column);
+        return rst.wasNull() ? NullInt : value;
+    }
+
+    // [Save Function]
+    // MODIFIES: <file>
+    // EFFECTS:  writes this snapshot to <file> in the layout map() reads; the file is
+    //   written under a temporary name and renamed into place, so processes that have
+    //   the old file mapped keep reading it undisturbed
+    public void save(File file) throws IOException {
+        Buffer[] sections = sections();
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate((int) align(HeaderBytes + sections.length * 16L)).order(Order);
+            header.putInt(Magic).putInt(Version).putInt(sections.length).putInt(0);
+            long offset = header.capacity();
+            long[] offsets = new long[sections.length];
+            for (int section = 0; section < sections.length; section++) {
+                offsets[section] = offset;
+                header.putLong(offset).putLong(byteLength(sections[section]));
+                offset = align(offset + byteLength(sections[section]));
+            }
+            header.clear();
+            writeFully(channel, header);
+            for (int section = 0; section < sections.length; section++) {
+                channel.position(offsets[section]);
+                writeSection(channel, sections[section]);
+            }
+            channel.truncate(offset);
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // [Map Function]
+    // REQUIRES: <file> was written by save()
+    // EFFECTS:  returns a snapshot whose columns are read-only views of <file>'s pages;
+    //   throws IOException if <file> is not a snapshot of this version or is truncated
+    public static FakebookSnapshot map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HeaderBytes) {
+                throw new IOException(file + " is not a Fakebook snapshot");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HeaderBytes).order(Order);
+            if (header.getInt() != Magic) {
+                throw new IOException(file + " is not a Fakebook snapshot");
+            }
+            int version = header.getInt();
+            int count = header.getInt();
+            if (version != Version || count != Sections.length) {
+                throw new IOException(file + " is a version " + version + " snapshot; expected version " + Version);
+            }
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HeaderBytes, count * 16L).order(Order);
+
+            ByteBuffer[] sections = new ByteBuffer[count];
+            for (int section = 0; section < count; section++) {
+                long offset = table.getLong();
+                long length = table.getLong();
+                if (offset < 0 || length < 0 || offset % 8 != 0 || offset + length > size
+                    || length % Sections[section] != 0 || length / Sections[section] > Integer.MAX_VALUE) {
+                    throw new IOException(file + " is truncated or corrupt (section " + section + ")");
+                }
+                sections[section] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(Order);
+            }
+
+            FakebookSnapshot snapshot = new FakebookSnapshot();
+            snapshot.userIds = sections[0].asLongBuffer();
+            snapshot.firstNames = sections[1].asIntBuffer();
+            snapshot.lastNames = sections[2].asIntBuffer();
+            snapshot.birthYears = sections[3].asIntBuffer();
+            snapshot.birthMonths = sections[4].asIntBuffer();
+            snapshot.birthDays = sections[5].asIntBuffer();
+            snapshot.genders = sections[6].asIntBuffer();
+            snapshot.friends = FakebookFriendIndex.wrap(snapshot.userIds, sections[7].asIntBuffer(), sections[8].asIntBuffer());
+            snapshot.cityIds = sections[9].asLongBuffer();
+            snapshot.cityStates = sections[10].asIntBuffer();
+            snapshot.currentCities = sections[11].asLongBuffer();
+            snapshot.hometownCities = sections[12].asLongBuffer();
+            snapshot.albumIds = sections[13].asLongBuffer();
+            snapshot.albumNames = sections[14].asIntBuffer();
+            snapshot.photoIds = sections[15].asLongBuffer();
+            snapshot.photoAlbums = sections[16].asIntBuffer();
+            snapshot.photoLinkOffsets = sections[17].asIntBuffer();
+            snapshot.photoLinkBytes = sections[18];
+            snapshot.tags = sections[19].asLongBuffer();
+            snapshot.eventCities = sections[20].asIntBuffer();
+            snapshot.stringOffsets = sections[21].asIntBuffer();
+            snapshot.stringBytes = sections[22];
+            snapshot.stringCache = new CachedString[StringCacheSize];
+
+            int users = snapshot.userIds.limit();
+            if (snapshot.firstNames.limit() != users || snapshot.lastNames.limit() != users
+                || snapshot.birthYears.limit() != users || snapshot.birthMonths.limit() != users
+                || snapshot.birthDays.limit() != users || snapshot.genders.limit() != users
+                || sections[7].limit() / 4 != users + 1
+                || snapshot.cityStates.limit() != snapshot.cityIds.limit()
+                || snapshot.albumNames.limit() != snapshot.albumIds.limit()
+                || snapshot.photoAlbums.limit() != snapshot.photoIds.limit()
+                || snapshot.photoLinkOffsets.limit() != snapshot.photoIds.limit() + 1
+                || snapshot.stringOffsets.limit() == 0) {
+                throw new IOException(file + " is corrupt (column lengths disagree)");
+            }
+            return snapshot;
+        }
+    }
+
+    // [Section Function]
+    // EFFECTS:  returns the columns of this snapshot in file order
+    private Buffer[] sections() {
+        IntBuffer offsets = stringOffsets;
+        ByteBuffer bytes = stringBytes;
+        if (offsets == null) {
+            byte[][] encoded = new byte[strings.length][];
+            int[] positions = new int[strings.length + 1];
+            for (int code = 0; code < strings.length; code++) {
+                encoded[code] = strings[code].getBytes(StandardCharsets.UTF_8);
+                positions[code + 1] = positions[code] + encoded[code].length;
+            }
+            bytes = ByteBuffer.allocate(positions[strings.length]);
+            for (byte[] string : encoded) {
+                bytes.put(string);
+            }
+            bytes.flip();
+            offsets = IntBuffer.wrap(positions);
+        }
+        return new Buffer[] {
+            userIds, firstNames, lastNames, birthYears, birthMonths, birthDays, genders,
+            friends.offsetBuffer(), friends.neighborBuffer(),
+            cityIds, cityStates, currentCities, hometownCities,
+            albumIds, albumNames, photoIds, photoAlbums, photoLinkOffsets, photoLinkBytes,
+            tags, eventCities, offsets, bytes
+        };
+    }
+
+    private static long byteLength(Buffer section) {
+        if (section instanceof LongBuffer) {
+            return section.limit() * 8L;
+        }
+        return section instanceof IntBuffer ? section.limit() * 4L : section.limit();
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    // EFFECTS:  writes every element of <section> at the channel's position, converting
+    //   to the file's byte order one chunk at a time
+    private static void writeSection(FileChannel channel, Buffer section) throws IOException {
+        if (section instanceof ByteBuffer) {
+            ByteBuffer bytes = ((ByteBuffer) section).duplicate();
+            bytes.position(0);
+            writeFully(channel, bytes);
+            return;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(ChunkBytes).order(Order);
+        int width = section instanceof LongBuffer ? 8 : 4;
+        for (int begin = 0; begin < section.limit(); begin += ChunkBytes / width) {
+            int end = Math.min(section.limit(), begin + ChunkBytes / width);
+            chunk.clear();
+            if (width == 8) {
+                LongBuffer part = ((LongBuffer) section).duplicate();
+                part.limit(end).position(begin);
+                chunk.asLongBuffer().put(part);
+            }
+            else {
+                IntBuffer part = ((IntBuffer) section).duplicate();
+                part.limit(end).position(begin);
+                chunk.asIntBuffer().put(part);
+            }
+            chunk.limit((end - begin) * width);
+            writeFully(channel, chunk);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // [Packing Functions]
+    // EFFECTS:  packs two non-negative ints into one long that sorts by <high>, then <low>
+    static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    static int high(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    static int low(long packed) {
+        return (int) packed;
+    }
+
+    // [Search Functions]
+    // REQUIRES: <sorted> is sorted ascending in [<from>, <to>)
+    // EFFECTS:  returns the index of <key> in [<from>, <to>) if present, and
+    //   -(insertion point) - 1 otherwise, as Arrays.binarySearch does
+    static int binarySearch(LongBuffer sorted, int from, int to, long key) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = sorted.get(middle);
+            if (value < key) {
+                low = middle + 1;
+            }
+            else if (value > key) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    static int binarySearch(IntBuffer sorted, int from, int to, int key) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = sorted.get(middle);
+            if (value < key) {
+                low = middle + 1;
+            }
+            else if (value > key) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // [Range Function]
+    // REQUIRES: <sorted> is sorted
+    // EFFECTS:  returns the index of the first element of <sorted> whose high half is at
+    //   least <high>
+    static int lowerBound(LongBuffer sorted, int high) {
+        int idx = binarySearch(sorted, 0, sorted.limit(), pack(high, 0));
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    // Users
+    public int userCount() { return userIds.limit(); }
+    public long userId(int user) { return userIds.get(user); }
+    public int firstNameCode(int user) { return firstNames.get(user); }
+    public int lastNameCode(int user) { return lastNames.get(user); }
+    public String firstName(int user) { return string(firstNames.get(user)); }
+    public String lastName(int user) { return string(lastNames.get(user)); }
+    public int birthYear(int user) { return birthYears.get(user); }
+    public int birthMonth(int user) { return birthMonths.get(user); }
+    public int birthDay(int user) { return birthDays.get(user); }
+    public int genderCode(int user) { return genders.get(user); }
+
+    // [User Index Function]
+    // EFFECTS:  returns the index of the user with ID <userID>, or -1 if there is none
+    public int userIndex(long userID) {
+        int idx = binarySearch(userIds, 0, userIds.limit(), userID);
+        return idx >= 0 ? idx : -1;
+    }
+
+    // [User Info Function]
+    // EFFECTS:  returns a UserInfo describing user <user>
+    public UserInfo userInfo(int user) {
+        return new UserInfo(userIds.get(user), firstName(user), lastName(user));
+    }
+
+    // [Friends Function]
+    // EFFECTS:  returns the friendship index, which shares this snapshot's user indexes
+    public FakebookFriendIndex friends() {
+        return friends;
+    }
+
+    // Cities
+    public int cityCount() { return cityIds.limit(); }
+    public String cityState(int city) { return string(cityStates.get(city)); }
+    public int cityStateCode(int city) { return cityStates.get(city); }
+    public int[] currentCitiesOf(int user) { return citiesOf(currentCities, user); }
+    public int[] hometownCitiesOf(int user) { return citiesOf(hometownCities, user); }
+    public int hometownPairCount() { return hometownCities.limit(); }
+    public int hometownPairUser(int pair) { return high(hometownCities.get(pair)); }
+    public int hometownPairCity(int pair) { return low(hometownCities.get(pair)); }
+
+    private static int[] citiesOf(LongBuffer pairs, int user) {
+        int begin = lowerBound(pairs, user);
+        int end = lowerBound(pairs, user + 1);
+        int[] cities = new int[end - begin];
+        for (int idx = begin; idx < end; idx++) {
+            cities[idx - begin] = low(pairs.get(idx));
+        }
+        return cities;
+    }
+
+    // Photos and Albums
+    public int photoCount() { return photoIds.limit(); }
+    public long photoId(int photo) { return photoIds.get(photo); }
+
+    // [Photo Info Function]
+    // EFFECTS:  returns a PhotoInfo describing photo <photo>
+    public PhotoInfo photoInfo(int photo) {
+        int album = photoAlbums.get(photo);
+        return new PhotoInfo(photoIds.get(photo), albumIds.get(album), decode(photoLinkOffsets, photoLinkBytes, photo),
+                             string(albumNames.get(album)));
+    }
+
+    // Tags, sorted by photo index and then user index
+    public int tagCount() { return tags.limit(); }
+    public int tagPhoto(int tag) { return high(tags.get(tag)); }
+    public int tagUser(int tag) { return low(tags.get(tag)); }
+
+    // Events
+    public int eventCount() { return eventCities.limit(); }
+    public int eventCity(int event) { return eventCities.get(event); }
+
+    // [String Function]
+    // EFFECTS:  returns the string with dictionary code <code>, or null for code -1;
+    //   a mapped snapshot decodes it from the file, remembering the last string decoded
+    //   in each slot of a fixed-size cache (entries are immutable, so a racing decode
+    //   only duplicates work)
+    public String string(int code) {
+        if (code < 0) {
+            return null;
+        }
+        if (strings != null) {
+            return strings[code];
+        }
+        int slot = code & (StringCacheSize - 1);
+        CachedString cached = stringCache[slot];
+        if (cached == null || cached.code != code) {
+            cached = new CachedString(code, decode(stringOffsets, stringBytes, code));
+            stringCache[slot] = cached;
+        }
+        return cached.value;
+    }
+
+    // [Heap Decode Function]
+    // EFFECTS:  returns string <idx> of the UTF-8 heap <bytes> whose end offsets are
+    //   <offsets> (entry <idx> + 1, complemented for a NULL string), or null
+    private static String decode(IntBuffer offsets, ByteBuffer bytes, int idx) {
+        int end = offsets.get(idx + 1);
+        if (end < 0) {
+            return null;
+        }
+        int begin = offsets.get(idx);
+        if (begin < 0) {
+            begin = ~begin;
+        }
+        byte[] utf8 = new byte[end - begin];
+        ByteBuffer heap = bytes.duplicate();
+        heap.position(begin);
+        heap.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /*
+        The CachedString class is one slot of a mapped snapshot's string cache.
+    */
+    private static final class CachedString {
+        CachedString(int code, String value) {
+            this.code = code;
+            this.value = value;
+        }
+
+        final int code;
+        final String value;
+    }
+
+    // [Constructor]
+    private FakebookSnapshot() {
+    }
+
+    // Constants
+    public static final int NullInt = Integer.MIN_VALUE;
+    private static final int Magic = 0x46425331;                        // "FBS1"
+    private static final int Version = 2;
+    private static final int HeaderBytes = 16;
+    private static final int ChunkBytes = 1 << 16;
+    private static final int StringCacheSize = 4096;                    // a power of two
+    private static final ByteOrder Order = ByteOrder.LITTLE_ENDIAN;
+    private static final int[] Sections = {                             // element width of each section
+        8, 4, 4, 4, 4, 4, 4,                                            // users
+        4, 4,                                                           // friend offsets, neighbors
+        8, 4, 8, 8,                                                     // cities, current, hometown
+        8, 4, 8, 4, 4, 1,                                               // albums, photos, links
+        8, 4,                                                           // tags, events
+        4, 1                                                            // string offsets, bytes
+    };
+
+    // Member Variables
+    private LongBuffer userIds;
+    private IntBuffer firstNames;
+    private IntBuffer lastNames;
+    private IntBuffer birthYears;
+    private IntBuffer birthMonths;
+    private IntBuffer birthDays;
+    private IntBuffer genders;
+    private FakebookFriendIndex friends;
+    private LongBuffer cityIds;
+    private IntBuffer cityStates;
+    private LongBuffer currentCities;
+    private LongBuffer hometownCities;
+    private LongBuffer albumIds;
+    private IntBuffer albumNames;
+    private LongBuffer photoIds;
+    private IntBuffer photoAlbums;
+    private IntBuffer photoLinkOffsets;
+    private ByteBuffer photoLinkBytes;
+    private LongBuffer tags;
+    private IntBuffer eventCities;
+    private String[] strings;                                           // loaded snapshots only
+    private IntBuffer stringOffsets;                                    // mapped snapshots only
+    private ByteBuffer stringBytes;
+    private CachedString[] stringCache;
+}
+
+/*
+    The FakebookStringDictionary class assigns dense int codes to distinct strings, so
+    that repeated values (first names, last names, states, ...) are stored once. NULL is
+    encoded as -1.
+*/
+final class FakebookStringDictionary {
+    // [Encode Function]
+    // MODIFIES: this
+    // EFFECTS:  returns the code of <value>, assigning the next free code if it is new
+    public int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    // [Decode Function]
+    // EFFECTS:  returns the string with code <code>, or null for code -1
+    public String decode(int code) {
+        return code < 0 ? null : values.get(code);
+    }
+
+    // [Size Function]
+    public int size() {
+        return values.size();
+    }
+
+    // [Array Function]
+    // EFFECTS:  returns every string, indexed by code
+    public String[] toArray() {
+        return values.toArray(new String[values.size()]);
+    }
+
+    // Member Variables
+    private final Map<String, Integer> codes = new HashMap<String, Integer>();
+    private final List<String> values = new ArrayList<String>();
+}
+
+/*
+    The FakebookLongList class is a growable array of primitive longs.
+*/
+final class FakebookLongList {
+    // [Add Function]
+    public void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(16, size * 2));
+        }
+        values[size++] = value;
+    }
+
+    public long get(int idx) { return values[idx]; }
+    public int size() { return size; }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    // [Sorted Array Function]
+    // EFFECTS:  returns the values in ascending order, without duplicates
+    public long[] toSortedUniqueArray() {
+        long[] sorted = toArray();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int idx = 0; idx < sorted.length; idx++) {
+            if (idx == 0 || sorted[idx] != sorted[idx - 1]) {
+                sorted[count++] = sorted[idx];
+            }
+        }
+        return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+    }
+
+    // Member Variables
+    private long[] values = new long[16];
+    private int size;
+}
+
+/*
+    The FakebookIntList class is a growable array of primitive ints.
+*/
+final class FakebookIntList {
+    // [Add Function]
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(16, size * 2));
+        }
+        values[size++] = value;
+    }
+
+    public int get(int idx) { return values[idx]; }
+    public int size() { return size; }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    // Member Variables
+    private int[] values = new int[16];
+    private int size;
+}
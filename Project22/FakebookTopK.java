@@ -0,0 +1,152 @@
+package project2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+    The FakebookTopK class keeps the best <capacity> (count, key) entries offered to it,
+    where higher counts are better and, among equal counts, lower keys are better. This
+    is the "count descending, then ID ascending" ranking Queries 4, 5, and 6 share: keys
+    are either IDs or packed (lower user, higher user) pairs.
+
+    Entries live in a bounded binary heap whose root is the worst entry kept, so each
+    offer costs O(log capacity) and memory never grows past <capacity>. Heaps filled by
+    different workers can be merged.
+*/
+final class FakebookTopK {
+    // [Constructor]
+    // REQUIRES: <capacity> >= 0
+    public FakebookTopK(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+        counts = new int[Math.min(capacity, 1024)];
+        keys = new long[counts.length];
+    }
+
+    // [Offer Function]
+    // MODIFIES: this
+    // EFFECTS:  keeps (<count>, <key>) if it is among the best <capacity> entries so far
+    public void offer(int count, long key) {
+        if (size < capacity) {
+            if (size == counts.length) {
+                counts = Arrays.copyOf(counts, Math.min(capacity, size * 2));
+                keys = Arrays.copyOf(keys, counts.length);
+            }
+            int pos = size++;
+            while (pos > 0) {
+                int parent = (pos - 1) / 2;
+                if (!better(counts[parent], keys[parent], count, key)) {
+                    break;
+                }
+                counts[pos] = counts[parent];
+                keys[pos] = keys[parent];
+                pos = parent;
+            }
+            counts[pos] = count;
+            keys[pos] = key;
+        }
+        else if (size > 0 && better(count, key, counts[0], keys[0])) {
+            siftDown(count, key);
+        }
+    }
+
+    // [Admission Function]
+    // EFFECTS:  returns true iff an entry with <count> could still be kept, letting
+    //   callers skip work for candidates that cannot make it
+    public boolean admits(int count) {
+        return size < capacity || (size > 0 && count >= counts[0]);
+    }
+
+    // [Merge Function]
+    // MODIFIES: this
+    // EFFECTS:  offers every entry of <other> to this heap
+    public void merge(FakebookTopK other) {
+        for (int idx = 0; idx < other.size; idx++) {
+            offer(other.counts[idx], other.keys[idx]);
+        }
+    }
+
+    // [Size Function]
+    public int size() {
+        return size;
+    }
+
+    // [Ranking Functions]
+    // EFFECTS:  returns the keys (resp. counts) kept, best first
+    public long[] rankedKeys() {
+        long[] ranked = new long[size];
+        int[] order = ranking();
+        for (int idx = 0; idx < size; idx++) {
+            ranked[idx] = keys[order[idx]];
+        }
+        return ranked;
+    }
+
+    public int[] rankedCounts() {
+        int[] ranked = new int[size];
+        int[] order = ranking();
+        for (int idx = 0; idx < size; idx++) {
+            ranked[idx] = counts[order[idx]];
+        }
+        return ranked;
+    }
+
+    // [Ranking Function]
+    // EFFECTS:  returns the heap positions of the entries, best first
+    private int[] ranking() {
+        Integer[] order = new Integer[size];
+        for (int idx = 0; idx < size; idx++) {
+            order[idx] = idx;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                if (counts[a] != counts[b]) {
+                    return Integer.compare(counts[b], counts[a]);
+                }
+                return Long.compare(keys[a], keys[b]);
+            }
+        });
+        int[] positions = new int[size];
+        for (int idx = 0; idx < size; idx++) {
+            positions[idx] = order[idx];
+        }
+        return positions;
+    }
+
+    // [Sift Function]
+    // EFFECTS:  replaces the root with (<count>, <key>) and restores the heap order
+    private void siftDown(int count, long key) {
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(counts[child], keys[child], counts[child + 1], keys[child + 1])) {
+                child++;
+            }
+            if (!better(count, key, counts[child], keys[child])) {
+                break;
+            }
+            counts[pos] = counts[child];
+            keys[pos] = keys[child];
+            pos = child;
+        }
+        counts[pos] = count;
+        keys[pos] = key;
+    }
+
+    // [Comparison Function]
+    // EFFECTS:  returns true iff (<countA>, <keyA>) ranks strictly before (<countB>, <keyB>)
+    static boolean better(int countA, long keyA, int countB, long keyB) {
+        return countA > countB || (countA == countB && keyA < keyB);
+    }
+
+    // Member Variables
+    private final int capacity;
+    private int[] counts;
+    private long[] keys;
+    private int size;
+}
@@ -0,0 +1,94 @@
+package project2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    The FakebookTopTies class is a single-pass "top with ties" aggregation: it is
+    offered the groups of a grouping one at a time, each with its value (a count, a
+    length, ...), and keeps every group tied for the maximum value, every group tied for
+    the minimum, or both. This is the ranking Query 0 (most and least popular months),
+    Query 1 (longest, shortest, and most common names), and Query 7 (states with the most
+    events) share.
+
+    Ties are kept in the order they were offered, so offering groups in the order the
+    query sorts them (e.g. alphabetically) yields the ties in that order. A group that
+    beats the current extreme drops the ties kept so far, so memory is bounded by the
+    number of ties, never by the number of groups.
+
+        FakebookTopTies<String> states = new FakebookTopTies<String>(FakebookTopTies.Max);
+        while (rst.next()) {
+            states.offer(rst.getLong(2), rst.getString(1));
+        }
+        states.getMax();                        // the largest count
+        states.getMaxTies();                    // every state with that count
+*/
+final class FakebookTopTies<T> {
+    // [Constructor]
+    // REQUIRES: <sides> is Max, Min, or Both
+    // EFFECTS:  creates an empty aggregation that keeps the ties of <sides>
+    public FakebookTopTies(int sides) {
+        if (sides < Max || sides > Both) {
+            throw new IllegalArgumentException("sides must be Max, Min, or Both");
+        }
+        maxTies = (sides & Max) != 0 ? new ArrayList<T>() : null;
+        minTies = (sides & Min) != 0 ? new ArrayList<T>() : null;
+    }
+
+    // [Offer Function]
+    // MODIFIES: this
+    // EFFECTS:  counts one group, <item>, with value <value>; keeps <item> if it ties or
+    //   beats an extreme being tracked, dropping the ties it beats
+    public void offer(long value, T item) {
+        if (groups == 0 || value > max) {
+            max = value;
+            if (maxTies != null) {
+                maxTies.clear();
+            }
+        }
+        if (value == max && maxTies != null) {
+            maxTies.add(item);
+        }
+        if (groups == 0 || value < min) {
+            min = value;
+            if (minTies != null) {
+                minTies.clear();
+            }
+        }
+        if (value == min && minTies != null) {
+            minTies.add(item);
+        }
+        groups++;
+        total += value;
+    }
+
+    // [Accessors]
+    // EFFECTS:  return the number of groups offered, the sum of their values, the largest
+    //   and smallest value (0 if no group was offered), and the groups tied for each, in
+    //   offer order (empty if no group was offered or that side is not kept)
+    public long getGroups() { return groups; }
+    public long getTotal() { return total; }
+    public long getMax() { return max; }
+    public long getMin() { return min; }
+
+    public List<T> getMaxTies() {
+        return maxTies != null ? maxTies : new ArrayList<T>();
+    }
+
+    public List<T> getMinTies() {
+        return minTies != null ? minTies : new ArrayList<T>();
+    }
+
+    // Constants
+    public static final int Max = 1;
+    public static final int Min = 2;
+    public static final int Both = Max | Min;
+
+    // Member Variables
+    private final List<T> maxTies;
+    private final List<T> minTies;
+    private long groups;
+    private long total;
+    private long max;
+    private long min;
+}
@@ -0,0 +1,122 @@
+package project2;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+    The FakebookUserList class is a compact replacement for a FakebookArrayList<UserInfo>.
+    Users are stored as parallel arrays (a long[] of IDs and two int[] of name codes)
+    instead of one UserInfo object per user, and names are dictionary-encoded, so a name
+    held by a thousand users is stored once rather than once per JDBC row. A list costs
+    16 bytes per user plus one dictionary entry per distinct name.
+
+    The list renders exactly as a FakebookArrayList<UserInfo> with the same delimiter and
+    users would, and it is a FakebookRowConsumer, so it can be filled straight from a
+    streamed query: oracle.liveAwayFromHome(new FakebookUserList(", ")).
+*/
+final class FakebookUserList implements FakebookRenderable, FakebookRowConsumer<UserInfo> {
+    // [Constructor]
+    // EFFECTS:  creates an empty list with its own name dictionary
+    public FakebookUserList(String delim) {
+        this(delim, new FakebookStringDictionary());
+    }
+
+    // [Constructor]
+    // EFFECTS:  creates an empty list that encodes names in <names>, which may be shared
+    //   with other lists
+    public FakebookUserList(String delim, FakebookStringDictionary names) {
+        delimiter = delim;
+        this.names = names;
+        ids = new long[16];
+        firstNames = new int[16];
+        lastNames = new int[16];
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  appends the user with ID <id>, first name <fname>, and last name <lname>
+    public void add(long id, String fname, String lname) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            firstNames = Arrays.copyOf(firstNames, capacity);
+            lastNames = Arrays.copyOf(lastNames, capacity);
+        }
+        ids[size] = id;
+        firstNames[size] = names.encode(fname);
+        lastNames[size] = names.encode(lname);
+        size++;
+    }
+
+    // [Accept Function]
+    // MODIFIES: this
+    // EFFECTS:  appends <user>; always asks for the next row
+    public boolean accept(UserInfo user) {
+        add(user.getUserID(), user.getFirstName(), user.getLastName());
+        return true;
+    }
+
+    // [Accessors]
+    public int size() {
+        return size;
+    }
+
+    public long getUserID(int idx) {
+        return ids[idx];
+    }
+
+    public String getFirstName(int idx) {
+        return names.decode(firstNames[idx]);
+    }
+
+    public String getLastName(int idx) {
+        return names.decode(lastNames[idx]);
+    }
+
+    // [Get Function]
+    // EFFECTS:  returns a new UserInfo for the user at <idx>
+    public UserInfo get(int idx) {
+        return new UserInfo(ids[idx], getFirstName(idx), getLastName(idx));
+    }
+
+    // [Expand Function]
+    // EFFECTS:  returns the users as a FakebookArrayList<UserInfo> with the same delimiter
+    public FakebookArrayList<UserInfo> toArrayList() {
+        FakebookArrayList<UserInfo> list = new FakebookArrayList<UserInfo>(delimiter);
+        list.ensureCapacity(size);
+        for (int idx = 0; idx < size; idx++) {
+            list.add(get(idx));
+        }
+        return list;
+    }
+
+    // [String Converter]
+    // EFFECTS:  returns what toArrayList().toString() returns
+    public String toString() {
+        return FakebookRenderable.render(this);
+    }
+
+    // [Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the same characters as toString() to <out>
+    public void appendTo(Appendable out) throws IOException {
+        if (size == 0) {
+            out.append("[]");           // a rendered UserInfo is never empty, so only an empty list is
+            return;
+        }
+        for (int idx = 0; idx < size; idx++) {
+            if (idx != 0) {
+                out.append(delimiter);
+            }
+            UserInfo.appendTo(out, ids[idx], getFirstName(idx), getLastName(idx));
+        }
+    }
+
+    // Member Variables
+    private final String delimiter;
+    private final FakebookStringDictionary names;
+    private long[] ids;
+    private int[] firstNames;
+    private int[] lastNames;
+    private int size;
+}
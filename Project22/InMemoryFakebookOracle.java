@@ -0,0 +1,571 @@
+package project2;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The InMemoryFakebookOracle class is derived from the FakebookOracle class and answers
+    the ten queries from a FakebookSnapshot held in memory instead of querying the
+    database on every call. The snapshot is loaded once, when the oracle is constructed,
+    and can be replaced at any time with refresh(); every query reads the snapshot that
+    was current when it started, so a refresh never affects a query already running.
+    The snapshot can also be mapped from a file written by FakebookSnapshot.save(), in
+    which case construction reads only the file's header and queries read its pages.
+
+    Results (including their order) are the same StudentFakebookOracle produces for the
+    same data.
+*/
+public final class InMemoryFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  loads a snapshot of the database provided via <connection>
+    public InMemoryFakebookOracle(Connection connection) throws SQLException {
+        this(connection, FakebookOracleConstants.DefaultFetchSize);
+    }
+
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection, <fetchSize> > 0
+    // EFFECTS:  loads a snapshot of the database provided via <connection>, fetching
+    //   <fetchSize> rows per round trip
+    public InMemoryFakebookOracle(Connection connection, int fetchSize) throws SQLException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetch size must be positive");
+        }
+        this.fetchSize = fetchSize;
+        snapshot = FakebookSnapshot.load(connection, fetchSize);
+    }
+
+    // [Constructor]
+    // REQUIRES: <snapshotFile> was written by FakebookSnapshot.save()
+    // EFFECTS:  answers every query from the memory-mapped <snapshotFile>
+    public InMemoryFakebookOracle(File snapshotFile) throws IOException {
+        this(FakebookSnapshot.map(snapshotFile));
+    }
+
+    // [Constructor]
+    // EFFECTS:  answers every query from <snapshot>
+    InMemoryFakebookOracle(FakebookSnapshot snapshot) {
+        this.fetchSize = FakebookOracleConstants.DefaultFetchSize;
+        this.snapshot = snapshot;
+    }
+
+    // [Refresh Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // MODIFIES: this
+    // EFFECTS:  loads a new snapshot from <connection> and swaps it in once it is complete;
+    //   queries keep using the old snapshot while the new one loads
+    public void refresh(Connection connection) throws SQLException {
+        refresh(FakebookSnapshot.load(connection, fetchSize));
+    }
+
+    // [Refresh Function]
+    // REQUIRES: <snapshotFile> was written by FakebookSnapshot.save()
+    // MODIFIES: this
+    // EFFECTS:  maps <snapshotFile> and swaps it in for all queries that start from now on
+    public void refresh(File snapshotFile) throws IOException {
+        refresh(FakebookSnapshot.map(snapshotFile));
+    }
+
+    // [Refresh Function]
+    // MODIFIES: this
+    // EFFECTS:  swaps in <snapshot> for all queries that start from now on
+    void refresh(FakebookSnapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("snapshot must not be null");
+        }
+        this.snapshot = snapshot;
+    }
+
+    // [Snapshot Function]
+    // EFFECTS:  returns the snapshot queries currently read
+    FakebookSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    // Query 0
+    // -----------------------------------------------------------------------------------
+    // Months are ranked by user count descending and then month ascending; the most
+    // popular month is the first in that order and the least popular is the last
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        FakebookSnapshot data = snapshot;
+        int[] months = new int[data.userCount()];
+        int known = 0;
+        for (int user = 0; user < data.userCount(); user++) {
+            if (data.birthMonth(user) != FakebookSnapshot.NullInt) {
+                months[known++] = data.birthMonth(user);
+            }
+        }
+        Arrays.sort(months, 0, known);
+
+        FakebookTopTies<Integer> counts = new FakebookTopTies<Integer>(FakebookTopTies.Both);
+        for (int begin = 0, end; begin < known; begin = end) {
+            for (end = begin + 1; end < known && months[end] == months[begin]; end++) {
+            }
+            counts.offer(end - begin, months[begin]);
+        }
+        // months ascend, so the most popular is the earliest tie and the least the latest
+        int mostMonth = counts.getGroups() > 0 ? counts.getMaxTies().get(0) : 0;
+        int leastMonth = counts.getGroups() > 0 ? counts.getMinTies().get(counts.getMinTies().size() - 1) : 0;
+
+        BirthMonthInfo info = new BirthMonthInfo(known, mostMonth, leastMonth);
+        for (int user = 0; user < data.userCount(); user++) {
+            if (data.birthMonth(user) == mostMonth) {
+                info.addMostPopularBirthMonthUser(data.userInfo(user));
+            }
+        }
+        for (int user = 0; user < data.userCount(); user++) {
+            if (data.birthMonth(user) == leastMonth) {
+                info.addLeastPopularBirthMonthUser(data.userInfo(user));
+            }
+        }
+        return info;
+    }
+
+    @Override
+    // Query 1
+    // -----------------------------------------------------------------------------------
+    // Counts users per first name code, then walks the distinct names alphabetically so
+    // ties come out in the same order as the SQL version
+    public FirstNameInfo findNameInfo() throws SQLException {
+        FakebookSnapshot data = snapshot;
+        Map<Integer, int[]> counts = new HashMap<Integer, int[]>();
+        for (int user = 0; user < data.userCount(); user++) {
+            int code = data.firstNameCode(user);
+            if (code < 0) {
+                continue;
+            }
+            int[] count = counts.get(code);
+            if (count == null) {
+                counts.put(code, count = new int[1]);
+            }
+            count[0]++;
+        }
+
+        List<String> names = new ArrayList<String>(counts.size());
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        for (Integer code : counts.keySet()) {
+            String name = data.string(code);
+            names.add(name);
+            codes.put(name, code);
+        }
+        Collections.sort(names);
+
+        FakebookTopTies<String> lengths = new FakebookTopTies<String>(FakebookTopTies.Both);
+        FakebookTopTies<String> common = new FakebookTopTies<String>(FakebookTopTies.Max);
+        for (String name : names) {
+            lengths.offer(name.length(), name);
+            common.offer(counts.get(codes.get(name))[0], name);
+        }
+
+        FirstNameInfo info = new FirstNameInfo();
+        for (String name : lengths.getMaxTies()) {
+            info.addLongName(name);
+        }
+        for (String name : lengths.getMinTies()) {
+            info.addShortName(name);
+        }
+        for (String name : common.getMaxTies()) {
+            info.addCommonName(name);
+        }
+        info.setCommonNameCount(common.getMax());
+        return info;
+    }
+
+    @Override
+    // Query 2
+    // -----------------------------------------------------------------------------------
+    // Returns the users of degree zero in ID order
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
+        try {
+            lonelyUsers(collector(results));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // collecting into a list never throws
+        }
+        return results;
+    }
+
+    @Override
+    // [Query 2, Streamed]
+    // EFFECTS:  hands the users of Query 2 to <consumer> as they are found, without
+    //   building a list
+    public long lonelyUsers(FakebookRowConsumer<? super UserInfo> consumer) throws SQLException, IOException {
+        FakebookSnapshot data = snapshot;
+        long count = 0;
+        FakebookFriendIndex friends = data.friends();
+        for (int user = 0; user < data.userCount(); user++) {
+            if (friends.degree(user) == 0) {
+                count++;
+                if (!consumer.accept(data.userInfo(user))) {
+                    return count;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    // Query 3
+    // -----------------------------------------------------------------------------------
+    // Emits a user once per (current city, hometown) pair that differs, in ID order, as
+    // the three-way join does
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
+        try {
+            liveAwayFromHome(collector(results));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // collecting into a list never throws
+        }
+        return results;
+    }
+
+    @Override
+    // [Query 3, Streamed]
+    // EFFECTS:  hands the users of Query 3 to <consumer> as they are found, without
+    //   building a list
+    public long liveAwayFromHome(FakebookRowConsumer<? super UserInfo> consumer) throws SQLException, IOException {
+        FakebookSnapshot data = snapshot;
+        long count = 0;
+        for (int user = 0; user < data.userCount(); user++) {
+            int[] current = data.currentCitiesOf(user);
+            if (current.length == 0) {
+                continue;
+            }
+            int[] hometown = data.hometownCitiesOf(user);
+            for (int currentCity : current) {
+                for (int hometownCity : hometown) {
+                    if (currentCity != hometownCity) {
+                        count++;
+                        if (!consumer.accept(data.userInfo(user))) {
+                            return count;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    // Query 4
+    // -----------------------------------------------------------------------------------
+    // Photos are ranked by tag count descending and then photo ID ascending in a bounded
+    // heap; tagged users are listed in ID order
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        FakebookSnapshot data = snapshot;
+        FakebookTopK top = new FakebookTopK(Math.max(0, num));
+        for (int begin = 0, end; begin < data.tagCount(); begin = end) {
+            for (end = begin + 1; end < data.tagCount() && data.tagPhoto(end) == data.tagPhoto(begin); end++) {
+            }
+            if (top.admits(end - begin)) {
+                top.offer(end - begin, FakebookSnapshot.pack(data.tagPhoto(begin), begin));
+            }
+        }
+
+        // photo indexes ascend with photo IDs, so the packed key keeps the tie-break
+        FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
+        long[] winners = top.rankedKeys();
+        int[] counts = top.rankedCounts();
+        for (int idx = 0; idx < winners.length; idx++) {
+            int photo = FakebookSnapshot.high(winners[idx]);
+            int firstTag = FakebookSnapshot.low(winners[idx]);
+            TaggedPhotoInfo tp = new TaggedPhotoInfo(data.photoInfo(photo));
+            for (int tag = firstTag; tag < firstTag + counts[idx]; tag++) {
+                tp.addTaggedUser(data.userInfo(data.tagUser(tag)));
+            }
+            results.add(tp);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 5
+    // -----------------------------------------------------------------------------------
+    // Pairs of same-gender, non-friend users tagged together are ranked by shared photo
+    // count descending and then by the two IDs; shared photos are listed in ID order
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        FakebookSnapshot data = snapshot;
+        int[] genders = new int[data.userCount()];
+        int[] years = new int[data.userCount()];
+        for (int user = 0; user < data.userCount(); user++) {
+            genders[user] = data.genderCode(user);
+            years[user] = data.birthYear(user);
+        }
+
+        FakebookCoTagMatcher matcher = new FakebookCoTagMatcher(genders, years, yearDiff, data.friends());
+        int[] users = new int[16];
+        for (int begin = 0, end; begin < data.tagCount(); begin = end) {
+            for (end = begin; end < data.tagCount() && data.tagPhoto(end) == data.tagPhoto(begin); end++) {
+                if (end - begin == users.length) {
+                    users = Arrays.copyOf(users, 2 * users.length);
+                }
+                users[end - begin] = data.tagUser(end);
+            }
+            matcher.addPhoto(users, end - begin);
+        }
+        long[] pairs = matcher.topPairs(num);
+
+        // one more pass over the tags lists the shared photos of the winners only
+        FakebookIntList[] shared = new FakebookIntList[pairs.length];
+        for (int idx = 0; idx < pairs.length; idx++) {
+            shared[idx] = new FakebookIntList();
+        }
+        for (int begin = 0, end; begin < data.tagCount() && pairs.length > 0; begin = end) {
+            for (end = begin; end < data.tagCount() && data.tagPhoto(end) == data.tagPhoto(begin); end++) {
+            }
+            for (int idx = 0; idx < pairs.length; idx++) {
+                if (isTagged(data, begin, end, FakebookSnapshot.high(pairs[idx]))
+                    && isTagged(data, begin, end, FakebookSnapshot.low(pairs[idx]))) {
+                    shared[idx].add(data.tagPhoto(begin));
+                }
+            }
+        }
+
+        FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+        for (int idx = 0; idx < pairs.length; idx++) {
+            int a = FakebookSnapshot.high(pairs[idx]);
+            int b = FakebookSnapshot.low(pairs[idx]);
+            MatchPair mp = new MatchPair(data.userInfo(a), data.birthYear(a), data.userInfo(b), data.birthYear(b));
+            for (int photo = 0; photo < shared[idx].size(); photo++) {
+                mp.addSharedPhoto(data.photoInfo(shared[idx].get(photo)));
+            }
+            results.add(mp);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 6
+    // -----------------------------------------------------------------------------------
+    // Non-friend pairs are ranked by mutual friend count descending and then by the two
+    // IDs, in parallel over the friend index; mutual friends are listed in ID order
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        FakebookSnapshot data = snapshot;
+        FakebookMutualFriends engine = new FakebookMutualFriends(data.friends());
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+        for (long pair : engine.topPairs(num)) {
+            int a = FakebookSnapshot.high(pair);
+            int b = FakebookSnapshot.low(pair);
+            UsersPair up = new UsersPair(data.userInfo(a), data.userInfo(b));
+            for (int friend : engine.sharedFriends(a, b)) {
+                up.addSharedFriend(data.userInfo(friend));
+            }
+            results.add(up);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 7
+    // -----------------------------------------------------------------------------------
+    // Counts events per state code and returns the states tied for the maximum in
+    // alphabetical order
+    public EventStateInfo findEventStates() throws SQLException {
+        FakebookSnapshot data = snapshot;
+        Map<Integer, int[]> counts = new HashMap<Integer, int[]>();
+        for (int event = 0; event < data.eventCount(); event++) {
+            int city = data.eventCity(event);
+            if (city < 0 || data.cityStateCode(city) < 0) {
+                continue;
+            }
+            int[] count = counts.get(data.cityStateCode(city));
+            if (count == null) {
+                counts.put(data.cityStateCode(city), count = new int[1]);
+            }
+            count[0]++;
+        }
+
+        FakebookTopTies<String> top = new FakebookTopTies<String>(FakebookTopTies.Max);
+        for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+            top.offer(entry.getValue()[0], data.string(entry.getKey()));
+        }
+        List<String> states = new ArrayList<String>(top.getMaxTies());
+        Collections.sort(states);               // counts are offered in hash order
+
+        EventStateInfo info = new EventStateInfo(top.getMax());
+        for (String state : states) {
+            info.addState(state);
+        }
+        return info;
+    }
+
+    @Override
+    // Query 8
+    // -----------------------------------------------------------------------------------
+    // Friends are ordered by birth year, month, and day ascending (missing values last)
+    // and then by ID descending; the oldest is the first and the youngest the last
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        FakebookSnapshot data = snapshot;
+        FakebookFriendIndex friends = data.friends();
+        int user = data.userIndex(userID);
+        if (user < 0 || friends.degree(user) == 0) {
+            return new AgeInfo(new UserInfo(0, null, null), new UserInfo(0, null, null));
+        }
+
+        int oldest = friends.neighbor(friends.neighborsBegin(user));
+        int youngest = oldest;
+        for (int pos = friends.neighborsBegin(user); pos < friends.neighborsEnd(user); pos++) {
+            int friend = friends.neighbor(pos);
+            if (compareAge(data, friend, oldest) < 0) {
+                oldest = friend;
+            }
+            if (compareAge(data, friend, youngest) > 0) {
+                youngest = friend;
+            }
+        }
+        return new AgeInfo(data.userInfo(oldest), data.userInfo(youngest));
+    }
+
+    @Override
+    // [Query 8, All Users]
+    // EFFECTS:  packs every user's birth date into an age key, finds every user's oldest
+    //   and youngest friend in one parallel pass over the friend index, and hands the
+    //   results to <consumer> in user ID order
+    public long findAgeInfo(FakebookRowConsumer<? super UserAgeInfo> consumer) throws SQLException, IOException {
+        FakebookSnapshot data = snapshot;
+        FakebookFriendIndex friends = data.friends();
+        int[] years = new int[data.userCount()];
+        int[] months = new int[data.userCount()];
+        int[] days = new int[data.userCount()];
+        for (int user = 0; user < data.userCount(); user++) {
+            years[user] = data.birthYear(user);
+            months[user] = data.birthMonth(user);
+            days[user] = data.birthDay(user);
+        }
+        long[] extremes = new FakebookFriendAges(friends, FakebookFriendAges.ageKeys(years, months, days)).extremes();
+
+        long count = 0;
+        for (int user = 0; user < data.userCount(); user++) {
+            AgeInfo info = friends.degree(user) == 0
+                ? new AgeInfo(new UserInfo(0, null, null), new UserInfo(0, null, null))
+                : new AgeInfo(data.userInfo(FakebookFriendAges.userOf(extremes[2 * user])),
+                              data.userInfo(FakebookFriendAges.userOf(extremes[2 * user + 1])));
+            count++;
+            if (!consumer.accept(new UserAgeInfo(data.userId(user), info))) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    // Query 9
+    // -----------------------------------------------------------------------------------
+    // Checks every friendship once, from its lower user; a pair is reported once per
+    // matching pair of hometown rows, as the join does
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
+        try {
+            findPotentialSiblings(collector(results));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // collecting into a list never throws
+        }
+        return results;
+    }
+
+    @Override
+    // [Query 9, Streamed]
+    // EFFECTS:  hands the pairs of Query 9 to <consumer> as they are found, without
+    //   building a list
+    public long findPotentialSiblings(FakebookRowConsumer<? super SiblingInfo> consumer) throws SQLException, IOException {
+        FakebookSnapshot data = snapshot;
+        long count = 0;
+        FakebookFriendIndex friends = data.friends();
+        for (int a = 0; a < data.userCount(); a++) {
+            for (int pos = friends.neighborsBegin(a); pos < friends.neighborsEnd(a); pos++) {
+                int b = friends.neighbor(pos);
+                if (b < a) {
+                    continue;
+                }
+                if (data.lastNameCode(a) != data.lastNameCode(b) || data.lastNameCode(a) < 0
+                    || data.birthYear(a) == FakebookSnapshot.NullInt || data.birthYear(b) == FakebookSnapshot.NullInt
+                    || Math.abs((long) data.birthYear(a) - data.birthYear(b)) >= 10) {
+                    continue;
+                }
+                int[] hometownsA = data.hometownCitiesOf(a);
+                int[] hometownsB = data.hometownCitiesOf(b);
+                for (int cityA : hometownsA) {
+                    for (int cityB : hometownsB) {
+                        if (cityA == cityB) {
+                            count++;
+                            if (!consumer.accept(new SiblingInfo(data.userInfo(a), data.userInfo(b)))) {
+                                return count;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    // [User IDs Function]
+    // EFFECTS:  returns the ID of every user of the snapshot, in ascending order
+    protected long[] userIDs() throws SQLException {
+        FakebookSnapshot data = snapshot;
+        long[] ids = new long[data.userCount()];
+        for (int user = 0; user < ids.length; user++) {
+            ids[user] = data.userId(user);
+        }
+        return ids;
+    }
+
+    // [Tag Search Function]
+    // EFFECTS:  returns true iff <user> is among the tags [<begin>, <end>), which all
+    //   belong to one photo and are sorted by user
+    private static boolean isTagged(FakebookSnapshot data, int begin, int end, int user) {
+        int low = begin;
+        int high = end - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (data.tagUser(middle) < user) {
+                low = middle + 1;
+            }
+            else if (data.tagUser(middle) > user) {
+                high = middle - 1;
+            }
+            else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // [Age Comparison Function]
+    // EFFECTS:  returns a negative number if <a> sorts before <b> in Query 8's order, a
+    //   positive number if after, and 0 if they are the same user
+    private static int compareAge(FakebookSnapshot data, int a, int b) {
+        int cmp = compareNullsLast(data.birthYear(a), data.birthYear(b));
+        if (cmp == 0) {
+            cmp = compareNullsLast(data.birthMonth(a), data.birthMonth(b));
+        }
+        if (cmp == 0) {
+            cmp = compareNullsLast(data.birthDay(a), data.birthDay(b));
+        }
+        return cmp != 0 ? cmp : Integer.compare(b, a);
+    }
+
+    private static int compareNullsLast(int a, int b) {
+        if (a == FakebookSnapshot.NullInt || b == FakebookSnapshot.NullInt) {
+            return Boolean.compare(a == FakebookSnapshot.NullInt, b == FakebookSnapshot.NullInt);
+        }
+        return Integer.compare(a, b);
+    }
+
+    // Member Variables
+    private final int fetchSize;
+    private volatile FakebookSnapshot snapshot;
+}
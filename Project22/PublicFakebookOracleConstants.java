@@ -9,8 +9,8 @@ import java.sql.ResultSet;
     can be accessed as FakebookConstants.<field>.
 */
 final class FakebookOracleConstants {
-    // Prefix Constant
-    private static final String prefix = "jiaqni.PUBLIC_";
+    // Prefix Constant (override with -Dfakebook.tablePrefix=<prefix> to use another copy of the tables)
+    private static final String prefix = System.getProperty("fakebook.tablePrefix", "jiaqni.PUBLIC_");
 
     // Table Names
     public static final String UsersTable = String.format("%s%s", prefix, "Users");
@@ -24,14 +24,21 @@ final class FakebookOracleConstants {
     public static final String AlbumsTable = String.format("%s%s", prefix, "Albums");
     public static final String PhotosTable = String.format("%s%s", prefix, "Photos");
     public static final String TagsTable = String.format("%s%s", prefix, "Tags");
+    public static final String ParticipantsTable = String.format("%s%s", prefix, "Participants");
+    public static final String MessagesTable = String.format("%s%s", prefix, "Messages");
     
     // Printing Constants
     public static final String PrintDecoration = ">>>>>>>>>>>>>>>";
+    public static final String NewLine = System.lineSeparator();      // what %n prints
     
     // Result Set Constants Renamed
     public static final int AllScroll = ResultSet.TYPE_SCROLL_INSENSITIVE;
+    public static final int ForwardOnly = ResultSet.TYPE_FORWARD_ONLY;
     public static final int ReadOnly = ResultSet.CONCUR_READ_ONLY;
     
+    // Cursor Constants
+    public static final int DefaultFetchSize = 500;       // rows per round trip on forward-only cursors
+    
     // [Constructor]
     // EFFECTS:  throws an AssertionError
     private FakebookOracleConstants() {
@@ -1,9 +1,19 @@
 package project2;
 
+import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /*
     The StudentFakebookOracle class is derived from the FakebookOracle class and implements
@@ -14,7 +24,34 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // [Constructor]
     // REQUIRES: <connection> is a valid JDBC connection
     public StudentFakebookOracle(Connection connection) {
+        this(connection, FakebookOracleConstants.ForwardOnly, FakebookOracleConstants.DefaultFetchSize);
+    }
+    
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection, <resultSetType> is either
+    //   FakebookOracleConstants.ForwardOnly or FakebookOracleConstants.AllScroll, and
+    //   <fetchSize> > 0
+    // EFFECTS:  every query opens read-only cursors of type <resultSetType> that fetch
+    //   <fetchSize> rows per round trip; every query reads its results in a single forward
+    //   pass, so ForwardOnly lets the driver stream rows instead of caching them all
+    public StudentFakebookOracle(Connection connection, int resultSetType, int fetchSize) {
+        if (resultSetType != FakebookOracleConstants.ForwardOnly && resultSetType != FakebookOracleConstants.AllScroll) {
+            throw new IllegalArgumentException("unsupported result set type " + resultSetType);
+        }
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetch size must be positive");
+        }
         oracle = connection;
+        this.resultSetType = resultSetType;
+        this.fetchSize = fetchSize;
+    }
+    
+    // [Aggregate Store Function]
+    // MODIFIES: this
+    // EFFECTS:  answers Query 0, Query 1, and Query 7 from <store>, which its owner keeps
+    //   current as rows change, instead of recomputing them; null restores recomputation
+    public void setAggregateStore(FakebookAggregateStore store) {
+        aggregates = store;
     }
     
     @Override
@@ -32,70 +69,80 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // mechanisms for opening up a statement, executing a query, walking through results, extracting
     // data, and more things that you will need to do for the remaining nine queries
     public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        return findMonthOfBirthInfo(aggregates != null);
+    }
+    
+    // [Query 0, Maintained or Recomputed]
+    // REQUIRES: if <maintained>, an aggregate store has been set
+    // EFFECTS:  answers Query 0 from the aggregate store if <maintained>, otherwise
+    //   from a GROUP BY over Users; the users of both months are then read in one statement
+    public BirthMonthInfo findMonthOfBirthInfo(boolean maintained) throws SQLException {
+        try (Statement stmt = createStatement();
+             PreparedStatement monthStmt = prepareStatement(
+                "SELECT Month_of_Birth, User_ID, First_Name, Last_Name " + // select month, ID, first name, and last name
+                "FROM " + UsersTable + " " +                              // from all users
+                "WHERE Month_of_Birth IN (?, ?) " +                       // born in either month bound below
+                "ORDER BY Month_of_Birth, User_ID")) {                    // sort smaller IDs first
             // Step 1
             // ------------
             // * Find the total number of users with birth month info
             // * Find the month in which the most users were born
             // * Find the month in which the fewest (but at least 1) users were born
-            ResultSet rst = stmt.executeQuery(
-                "SELECT COUNT(*) AS Birthed, Month_of_Birth " +         // select birth months and number of uses with that birth month
-                "FROM " + UsersTable + " " +                            // from all users
-                "WHERE Month_of_Birth IS NOT NULL " +                   // for which a birth month is available
-                "GROUP BY Month_of_Birth " +                            // group into buckets by birth month
-                "ORDER BY Birthed DESC, Month_of_Birth ASC");           // sort by users born in that month, descending; break ties by birth month
-            
-            int mostMonth = 0;
-            int leastMonth = 0;
-            int total = 0;
-            while (rst.next()) {                       // step through result rows/records one by one
-                if (rst.isFirst()) {                   // if first record
-                    mostMonth = rst.getInt(2);         //   it is the month with the most
+            BirthMonthInfo info;
+            if (maintained) {
+                info = aggregates.birthMonthSummary();                   // O(months): Users is not scanned
+            }
+            else {
+                ResultSet rst = stmt.executeQuery(
+                    "SELECT COUNT(*) AS Birthed, Month_of_Birth " +         // select birth months and number of uses with that birth month
+                    "FROM " + UsersTable + " " +                            // from all users
+                    "WHERE Month_of_Birth IS NOT NULL " +                   // for which a birth month is available
+                    "GROUP BY Month_of_Birth " +                            // group into buckets by birth month
+                    "ORDER BY Month_of_Birth ASC");                         // sort by birth month
+                
+                // months are offered in ascending order, so the most popular month is the
+                // first of its ties and the least popular the last of its ties
+                FakebookTopTies<Integer> months = new FakebookTopTies<Integer>(FakebookTopTies.Both);
+                while (rst.next()) {                                        // step through result rows/records one by one
+                    months.offer(rst.getLong(1), rst.getInt(2));
+                }
+                rst.close();
+                if (months.getGroups() == 0) {
+                    info = new BirthMonthInfo(0, 0, 0);
                 }
-                if (rst.isLast()) {                    // if last record
-                    leastMonth = rst.getInt(2);        //   it is the month with the least
+                else {
+                    info = new BirthMonthInfo(months.getTotal(), months.getMaxTies().get(0),
+                                              months.getMinTies().get(months.getMinTies().size() - 1));
                 }
-                total += rst.getInt(1);                // get the first field's value as an integer
             }
-            BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
             
             // Step 2
             // ------------
-            // * Get the names of users born in the most popular birth month
-            rst = stmt.executeQuery(
-                "SELECT User_ID, First_Name, Last_Name " +                // select ID, first name, and last name
-                "FROM " + UsersTable + " " +                              // from all users
-                "WHERE Month_of_Birth = " + mostMonth + " " +             // born in the most popular birth month
-                "ORDER BY User_ID");                                      // sort smaller IDs first
-                
+            // * Get the names of users born in the most and in the least popular birth month
+            monthStmt.setInt(1, info.getMostPopularMonth());              // bind the months instead of splicing them into the SQL
+            monthStmt.setInt(2, info.getLeastPopularMonth());
+            ResultSet rst = monthStmt.executeQuery();
+            
             while (rst.next()) {
-                info.addMostPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                UserInfo user = new UserInfo(rst.getLong(2), rst.getString(3), rst.getString(4));
+                if (rst.getInt(1) == info.getMostPopularMonth()) {
+                    info.addMostPopularBirthMonthUser(user);
+                }
+                if (rst.getInt(1) == info.getLeastPopularMonth()) {
+                    info.addLeastPopularBirthMonthUser(user);
+                }
             }
-
+            
             // Step 3
             // ------------
-            // * Get the names of users born in the least popular birth month
-            rst = stmt.executeQuery(
-                "SELECT User_ID, First_Name, Last_Name " +                // select ID, first name, and last name
-                "FROM " + UsersTable + " " +                              // from all users
-                "WHERE Month_of_Birth = " + leastMonth + " " +            // born in the least popular birth month
-                "ORDER BY User_ID");                                      // sort smaller IDs first
-                
-            while (rst.next()) {
-                info.addLeastPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
-            }
-
-            // Step 4
-            // ------------
             // * Close resources being used
             rst.close();
             stmt.close();                            // if you close the statement first, the result set gets closed automatically
-
+            
             return info;
-
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            reportError(e);
             return new BirthMonthInfo(-1, -1, -1);
         }
     }
@@ -108,7 +155,18 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (C) The first name held by the most users
     //        (D) The number of users whose first name is that identified in (C)
     public FirstNameInfo findNameInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        return findNameInfo(aggregates != null);
+    }
+    
+    // [Query 1, Maintained or Recomputed]
+    // REQUIRES: if <maintained>, an aggregate store has been set
+    // EFFECTS:  answers Query 1 from the aggregate store if <maintained>, otherwise from
+    //   a full GROUP BY over Users
+    public FirstNameInfo findNameInfo(boolean maintained) throws SQLException {
+        if (maintained) {
+            return aggregates.firstNameInfo();
+        }
+        try (Statement stmt = createStatement()) {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -124,59 +182,34 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 return info;
             */
             
-            // Finds users with longest first names
+            // Counts every distinct first name in one pass; the longest, shortest, and most
+            // common names are all tracked while reading forward, ties in alphabetical order
             ResultSet rst = stmt.executeQuery(
-                                              "SELECT DISTINCT FIRST_NAME " +
+                                              "SELECT FIRST_NAME, COUNT(*) " +
                                               "FROM " + UsersTable + " " +
                                               "WHERE FIRST_NAME IS NOT NULL " +
                                               "GROUP BY FIRST_NAME " +
-                                              "ORDER BY length(FIRST_NAME) DESC");
+                                              "ORDER BY FIRST_NAME ASC");
 
-            FirstNameInfo info = new FirstNameInfo();
-            
-            // iterate through rst table to the end where the shortest first name is
-            String baseString = null;
+            FakebookTopTies<String> lengths = new FakebookTopTies<String>(FakebookTopTies.Both);
+            FakebookTopTies<String> counts = new FakebookTopTies<String>(FakebookTopTies.Max);
             while(rst.next()){
                 String first_name = rst.getString(1);
-                if (rst.isFirst()){                     // if first record
-                    baseString = rst.getString(1);      // it is the name with most letters
-                }
-                if (first_name.length() == baseString.length()){    // another first name same length as longest
-                    info.addLongName(first_name);
-                }
+                lengths.offer(first_name.length(), first_name);
+                counts.offer(rst.getLong(2), first_name);
             }
             
-            // iterate back from end until you find a first name longer than the shortest
-            while(rst.previous()){
-                String first_name = rst.getString(1);
-                if (rst.isLast()){
-                    baseString = first_name;
-                }
-                if (first_name.length() == baseString.length()){
-                    info.addShortName(first_name);
-                }
-                else break;
+            FirstNameInfo info = new FirstNameInfo();
+            for (String name : lengths.getMaxTies()) {
+                info.addLongName(name);
             }
-            
-            rst = stmt.executeQuery(
-                                    "SELECT FIRST_NAME, COUNT(FIRST_NAME) " +
-                                    "FROM " + UsersTable + " " +
-                                    "WHERE FIRST_NAME IS NOT NULL " +
-                                    "GROUP BY FIRST_NAME ORDER BY 2 DESC");
-            
-            // find first name held by most users and count
-            int baseCount = 0;
-            while(rst.next()) {
-                String first_name = rst.getString(1);
-                int count = rst.getInt(2);
-                if (rst.isFirst()) {
-                    baseCount = count;
-                    info.setCommonNameCount(baseCount);
-                }
-                if(count != baseCount) break;
-                
-                info.addCommonName(first_name);
+            for (String name : lengths.getMinTies()) {
+                info.addShortName(name);
             }
+            for (String name : counts.getMaxTies()) {
+                info.addCommonName(name);
+            }
+            info.setCommonNameCount(counts.getMax());
             
             rst.close();
             stmt.close();
@@ -184,7 +217,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
             return info;                // placeholder for compilation
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            reportError(e);
             return new FirstNameInfo();
         }
     }
@@ -199,7 +232,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -208,32 +241,48 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 results.add(u1);
                 results.add(u2);
             */
+            lonelyUsers(collector(results));
+        }
+        catch (SQLException e) {
+            reportError(e);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // collecting into a list never throws
+        }
+        
+        return results;
+    }
+    
+    @Override
+    // [Query 2, Streamed]
+    // EFFECTS:  hands the users of Query 2 to <consumer> as they come off the cursor
+    public long lonelyUsers(FakebookRowConsumer<? super UserInfo> consumer) throws SQLException, IOException {
+        try (Statement stmt = createStatement()) {
             ResultSet rst = stmt.executeQuery("SELECT U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
                                               "FROM "+ UsersTable + " U " +
                                               "WHERE U.USER_ID NOT IN (SELECT DISTINCT F.USER1_ID " +
                                               "FROM " + FriendsTable + " F " +
                                               "UNION " +
                                               "SELECT DISTINCT F.USER2_ID " +
-                                              "FROM " + FriendsTable + " F)");
+                                              "FROM " + FriendsTable + " F) " +
+                                              "ORDER BY U.USER_ID ASC");
             
             // go through each individual user
+            long count = 0;
             while (rst.next()){
                 long user_id = rst.getLong(1);
                 String first_name = rst.getString(2);
                 String last_name = rst.getString(3);
                 UserInfo u = new UserInfo(user_id, first_name, last_name);
-                results.add(u);
+                count++;
+                if (!consumer.accept(u)) {
+                    break;
+                }
             }
             
             rst.close();
-            stmt.close();
+            return count;
         }
-        
-        catch (SQLException e) {
-            System.err.println(e.getMessage());
-        }
-        
-        return results;
     }
     
     @Override
@@ -244,7 +293,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -253,6 +302,23 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 results.add(u1);
                 results.add(u2);
             */
+            liveAwayFromHome(collector(results));
+        }
+        catch (SQLException e) {
+            reportError(e);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // collecting into a list never throws
+        }
+        
+        return results;
+    }
+    
+    @Override
+    // [Query 3, Streamed]
+    // EFFECTS:  hands the users of Query 3 to <consumer> as they come off the cursor
+    public long liveAwayFromHome(FakebookRowConsumer<? super UserInfo> consumer) throws SQLException, IOException {
+        try (Statement stmt = createStatement()) {
             ResultSet rst = stmt.executeQuery("SELECT U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
                                               "FROM " + UsersTable + " U, " + CurrentCitiesTable + " C, " + HometownCitiesTable + " H " +
                                               "WHERE U.USER_ID = C.USER_ID AND U.USER_ID = H.USER_ID " +
@@ -261,23 +327,21 @@ public final class StudentFakebookOracle extends FakebookOracle {
                                               "ORDER BY 1 ASC");
             
             // go through each individual user
+            long count = 0;
             while (rst.next()){
                 long id = rst.getLong(1);
                 String first_name = rst.getString(2);
                 String last_name = rst.getString(3);
                 UserInfo u = new UserInfo(id, first_name, last_name);
-                results.add(u);
+                count++;
+                if (!consumer.accept(u)) {
+                    break;
+                }
             }
             
             rst.close();
-            stmt.close();
+            return count;
         }
-        
-        catch (SQLException e) {
-            System.err.println(e.getMessage());
-        }
-        
-        return results;
     }
     
     @Override
@@ -287,10 +351,14 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //            <num> photos with the most tagged users
     //        (B) For each photo identified in (A), find the IDs, first names, and last names
     //            of the users therein tagged
+    //
+    // Tag counts are accumulated per photo in a primitive counter array while the tags
+    // stream past unsorted, and a bounded heap keeps the top <num>; the winners' photos
+    // and tagged users then arrive in one batched statement
     public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
         FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try (Statement stmt = createStatement()) {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -304,9 +372,76 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 tp.addTaggedUser(u3);
                 results.add(tp);
             */
+            // Step 1
+            // ------------
+            // * Index every photo in an album in ID order and count its tags of known
+            //   users, so the counts agree with the joins Step 3 fetches through
+            long[] photoIds = albumPhotoIds(stmt);
+            long[] userIds = userIDs();
+            
+            int[] counts = new int[photoIds.length];
+            ResultSet rst = stmt.executeQuery("SELECT TAG_PHOTO_ID, TAG_SUBJECT_ID FROM " + TagsTable);
+            while (rst.next()) {
+                int photo = Arrays.binarySearch(photoIds, rst.getLong(1));
+                if (photo >= 0 && Arrays.binarySearch(userIds, rst.getLong(2)) >= 0) {
+                    counts[photo]++;
+                }
+            }
+            rst.close();
+            
+            // Step 2
+            // ------------
+            // * Keep the top <num> photos, most tags first and then smaller IDs first
+            FakebookTopK top = new FakebookTopK(Math.max(0, num));
+            for (int photo = 0; photo < photoIds.length; photo++) {
+                if (counts[photo] > 0 && top.admits(counts[photo])) {
+                    top.offer(counts[photo], photoIds[photo]);
+                }
+            }
+            long[] winners = top.rankedKeys();
+            if (winners.length == 0) {
+                return results;
+            }
+            
+            // Step 3
+            // ------------
+            // * Fetch the winners and their tagged users in one round trip
+            Map<Long, TaggedPhotoInfo> photos = new HashMap<Long, TaggedPhotoInfo>();
+            Map<Long, TreeMap<Long, UserInfo>> tagged = new HashMap<Long, TreeMap<Long, UserInfo>>();
+            long[] winnerIds = distinct(winners);
+            for (int begin = 0; begin < winnerIds.length; begin += MaxBindListSize) {
+                try (PreparedStatement tagStmt = prepareChunk(
+                        "SELECT P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME, U.USER_ID, U.FIRST_NAME, U.LAST_NAME " +
+                        "FROM " + PhotosTable + " P, " + AlbumsTable + " A, " + TagsTable + " T, " + UsersTable + " U " +
+                        "WHERE P.ALBUM_ID = A.ALBUM_ID AND T.TAG_PHOTO_ID = P.PHOTO_ID AND U.USER_ID = T.TAG_SUBJECT_ID " +
+                        "AND P.PHOTO_ID", winnerIds, begin)) {
+                    rst = tagStmt.executeQuery();
+                    while (rst.next()) {
+                        long photoId = rst.getLong(1);
+                        if (!photos.containsKey(photoId)) {
+                            photos.put(photoId, new TaggedPhotoInfo(
+                                new PhotoInfo(photoId, rst.getLong(2), rst.getString(3), rst.getString(4))));
+                            tagged.put(photoId, new TreeMap<Long, UserInfo>());
+                        }
+                        tagged.get(photoId).put(rst.getLong(5), new UserInfo(rst.getLong(5), rst.getString(6), rst.getString(7)));
+                    }
+                    rst.close();
+                }
+            }
+            
+            for (long photoId : winners) {
+                TaggedPhotoInfo tp = photos.get(photoId);
+                if (tp == null) {
+                    continue;
+                }
+                for (UserInfo user : tagged.get(photoId).values()) {
+                    tp.addTaggedUser(user);
+                }
+                results.add(tp);
+            }
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            reportError(e);
         }
         
         return results;
@@ -324,10 +459,15 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //              (iv) not friends
     //        (B) For each pair identified in (A), find the IDs, links, and IDs and names of
     //            the containing album of each photo in which they are tagged together
+    //
+    // Self-joining Tags grows with the square of the tags per photo, so the tags are
+    // streamed in photo order instead and each photo's posting list is fed to a
+    // FakebookCoTagMatcher; friendships are rejected through a FakebookPairSet, and photos
+    // and names are only fetched for the winning pairs
     public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
         FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try (Statement stmt = createStatement()) {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -338,9 +478,103 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 mp.addSharedPhoto(p);
                 results.add(mp);
             */
+            // Step 1
+            // ------------
+            // * Read the gender and birth year of every user, indexed in ID order
+            FakebookStringDictionary genderCodes = new FakebookStringDictionary();
+            FakebookLongList ids = new FakebookLongList();
+            FakebookIntList genders = new FakebookIntList();
+            FakebookIntList years = new FakebookIntList();
+            ResultSet rst = stmt.executeQuery("SELECT USER_ID, GENDER, YEAR_OF_BIRTH FROM " + UsersTable + " ORDER BY USER_ID");
+            while (rst.next()) {
+                ids.add(rst.getLong(1));
+                genders.add(genderCodes.encode(rst.getString(2)));
+                int year = rst.getInt(3);
+                years.add(rst.wasNull() ? FakebookSnapshot.NullInt : year);
+            }
+            long[] userIds = ids.toArray();
+            
+            // Step 2
+            // ------------
+            // * Read every friendship into a compact pair set
+            FakebookPairSet friends = new FakebookPairSet(userIds.length);
+            rst = stmt.executeQuery("SELECT USER1_ID, USER2_ID FROM " + FriendsTable);
+            while (rst.next()) {
+                int a = Arrays.binarySearch(userIds, rst.getLong(1));
+                int b = Arrays.binarySearch(userIds, rst.getLong(2));
+                if (a >= 0 && b >= 0) {
+                    friends.add(a, b);
+                }
+            }
+            
+            // Step 3
+            // ------------
+            // * Stream the tags one photo at a time and count shared photos per pair; only
+            //   photos in an album count, as only those can be listed in Step 4
+            long[] albumPhotos = albumPhotoIds(stmt);
+            FakebookCoTagMatcher matcher = new FakebookCoTagMatcher(genders.toArray(), years.toArray(), yearDiff, friends);
+            rst = stmt.executeQuery("SELECT TAG_PHOTO_ID, TAG_SUBJECT_ID FROM " + TagsTable + " ORDER BY TAG_PHOTO_ID");
+            int[] users = new int[16];
+            int count = 0;
+            long photo = 0;
+            while (rst.next()) {
+                if (count > 0 && rst.getLong(1) != photo) {
+                    matcher.addPhoto(users, count);
+                    count = 0;
+                }
+                photo = rst.getLong(1);
+                int user = Arrays.binarySearch(userIds, rst.getLong(2));
+                if (user >= 0 && Arrays.binarySearch(albumPhotos, photo) >= 0) {
+                    if (count == users.length) {
+                        users = Arrays.copyOf(users, 2 * count);
+                    }
+                    users[count++] = user;
+                }
+            }
+            if (count > 0) {
+                matcher.addPhoto(users, count);
+            }
+            rst.close();
+            long[] pairs = matcher.topPairs(num);
+            
+            // Step 4
+            // ------------
+            // * List the photos each winning pair shares, then fetch those photos and names
+            long[] winners = new long[2 * pairs.length];
+            for (int idx = 0; idx < pairs.length; idx++) {
+                winners[2 * idx] = userIds[FakebookSnapshot.high(pairs[idx])];
+                winners[2 * idx + 1] = userIds[FakebookSnapshot.low(pairs[idx])];
+            }
+            Map<Long, TreeSet<Long>> tagged = fetchTaggedPhotos(winners);
+            List<List<Long>> shared = new ArrayList<List<Long>>();
+            FakebookLongList photoIds = new FakebookLongList();
+            for (int idx = 0; idx < pairs.length; idx++) {
+                List<Long> photos = new ArrayList<Long>();
+                for (Long photoId : tagged.get(winners[2 * idx])) {
+                    if (tagged.get(winners[2 * idx + 1]).contains(photoId) && Arrays.binarySearch(albumPhotos, photoId) >= 0) {
+                        photos.add(photoId);
+                        photoIds.add(photoId);
+                    }
+                }
+                shared.add(photos);
+            }
+            Map<Long, PhotoInfo> photoInfos = fetchPhotos(photoIds.toArray());
+            Map<Long, UserInfo> names = fetchUsers(winners);
+            
+            for (int idx = 0; idx < pairs.length; idx++) {
+                int a = FakebookSnapshot.high(pairs[idx]);
+                int b = FakebookSnapshot.low(pairs[idx]);
+                MatchPair mp = new MatchPair(names.get(userIds[a]), years.get(a), names.get(userIds[b]), years.get(b));
+                for (Long photoId : shared.get(idx)) {
+                    if (photoInfos.containsKey(photoId)) {      // unless deleted since Step 3
+                        mp.addSharedPhoto(photoInfos.get(photoId));
+                    }
+                }
+                results.add(mp);
+            }
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            reportError(e);
         }
         
         return results;
@@ -354,10 +588,14 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //            common friends
     //        (B) For each pair identified in (A), find the IDs, first names, and last names
     //            of all the two users' common friends
+    //
+    // Counting mutual friends with a self-join of Friends is quadratic in the degree of
+    // every user, so the friend graph is read once into a CSR index and the pairs are
+    // ranked in parallel in memory; only the names of the winners are fetched
     public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
         FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -368,9 +606,32 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 up.addSharedFriend(u3);
                 results.add(up);
             */
+            FakebookFriendIndex index = FakebookFriendIndex.load(oracle, fetchSize);
+            FakebookMutualFriends engine = new FakebookMutualFriends(index);
+            long[] pairs = engine.topPairs(num);
+            int[][] shared = new int[pairs.length][];
+            FakebookLongList ids = new FakebookLongList();
+            for (int idx = 0; idx < pairs.length; idx++) {
+                shared[idx] = engine.sharedFriends(FakebookSnapshot.high(pairs[idx]), FakebookSnapshot.low(pairs[idx]));
+                ids.add(index.userId(FakebookSnapshot.high(pairs[idx])));
+                ids.add(index.userId(FakebookSnapshot.low(pairs[idx])));
+                for (int friend : shared[idx]) {
+                    ids.add(index.userId(friend));
+                }
+            }
+            
+            Map<Long, UserInfo> users = fetchUsers(ids.toArray());
+            for (int idx = 0; idx < pairs.length; idx++) {
+                UsersPair up = new UsersPair(users.get(index.userId(FakebookSnapshot.high(pairs[idx]))),
+                                             users.get(index.userId(FakebookSnapshot.low(pairs[idx]))));
+                for (int friend : shared[idx]) {
+                    up.addSharedFriend(users.get(index.userId(friend)));
+                }
+                results.add(up);
+            }
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            reportError(e);
         }
         
         return results;
@@ -382,7 +643,18 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // GOALS: (A) Find the name of the state or states in which the most events are held
     //        (B) Find the number of events held in the states identified in (A)
     public EventStateInfo findEventStates() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        return findEventStates(aggregates != null);
+    }
+    
+    // [Query 7, Maintained or Recomputed]
+    // REQUIRES: if <maintained>, an aggregate store has been set
+    // EFFECTS:  answers Query 7 from the aggregate store if <maintained>, otherwise from
+    //   a full GROUP BY over the join of User_Events and Cities
+    public EventStateInfo findEventStates(boolean maintained) throws SQLException {
+        if (maintained) {
+            return aggregates.eventStateInfo();
+        }
+        try (Statement stmt = createStatement()) {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -392,30 +664,22 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 info.addState("New Hampshire");
                 return info;
             */
-            ResultSet rst = stmt.executeQuery("SELECT DISTINCT STATE_NAME, COUNT(*) " +
-                                              "FROM " + EventsTable + " E " +
-                                              "LEFT JOIN " + CitiesTable + " C ON E.EVENT_CITY_ID = C.CITY_ID " +
-                                              "WHERE STATE_NAME IS NOT NULL " +
-                                              "GROUP BY STATE_NAME " +
-                                              "HAVING COUNT(*) = (SELECT MAX(COUNT(*)) " +
-                                                                "from " + EventsTable + " E " +
-                                                                "LEFT JOIN " + CitiesTable + " C ON E.EVENT_CITY_ID = C.CITY_ID " +
-                                                                "WHERE STATE_NAME IS NOT NULL " +
-                                                                "GROUP BY STATE_NAME)");
+            // Counts events per state once and keeps the states tied for the maximum while
+            // reading forward, in alphabetical order
+            ResultSet rst = stmt.executeQuery("SELECT C.STATE_NAME, COUNT(*) " +
+                                              "FROM " + EventsTable + " E, " + CitiesTable + " C " +
+                                              "WHERE E.EVENT_CITY_ID = C.CITY_ID " +
+                                              "AND C.STATE_NAME IS NOT NULL " +
+                                              "GROUP BY C.STATE_NAME " +
+                                              "ORDER BY C.STATE_NAME ASC");
             
-            long count = 0;
+            FakebookTopTies<String> states = new FakebookTopTies<String>(FakebookTopTies.Max);
             while (rst.next()) {
-                count = rst.getLong(2);
+                states.offer(rst.getLong(2), rst.getString(1));
             }
             
-            EventStateInfo info = new EventStateInfo(count);
-            
-            while (rst.previous()){
-                
-            }
-            
-            while (rst.next()){
-                String state_name = rst.getString(1);
+            EventStateInfo info = new EventStateInfo(states.getMax());
+            for (String state_name : states.getMaxTies()) {
                 info.addState(state_name);
             }
             rst.close();
@@ -424,7 +688,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
             return info;
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            reportError(e);
             return new EventStateInfo(-1);
         }
     }
@@ -437,7 +701,11 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) Find the ID, first name, and last name of the youngest friend of the user
     //            with User ID <userID>
     public AgeInfo findAgeInfo(long userID) throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try (PreparedStatement stmt = prepareStatement(
+                                              "SELECT U.user_id, U.FIRST_NAME, U.LAST_NAME " +
+                                              "FROM " + FriendsTable + " F, " + UsersTable + " U " +
+                                              "WHERE (F.USER1_ID = ? AND U.USER_ID = F.USER2_ID) OR (F.USER2_ID = ? AND U.USER_ID = F.USER1_ID) " +
+                                              "ORDER BY U.YEAR_OF_BIRTH ASC, U.MONTH_OF_BIRTH ASC, U.DAY_OF_BIRTH ASC, U.USER_ID DESC")) {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -445,11 +713,9 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 UserInfo young = new UserInfo(80000000, "Neil", "deGrasse Tyson");
                 return new AgeInfo(old, young);
             */
-            ResultSet rst = stmt.executeQuery("SELECT U.user_id, U.FIRST_NAME, U.LAST_NAME " +
-                                              "FROM " + FriendsTable + " F, " + UsersTable + " U " +
-                                              "WHERE (F.USER1_ID = " + userID + " AND U.USER_ID = F.USER2_ID) OR (F.USER2_ID = " + userID + " AND U.USER_ID = F.USER1_ID) " +
-                                              "ORDER BY U.YEAR_OF_BIRTH ASC, U.MONTH_OF_BIRTH ASC, U.DAY_OF_BIRTH ASC, U.USER_ID DESC"
-                                              );
+            stmt.setLong(1, userID);
+            stmt.setLong(2, userID);
+            ResultSet rst = stmt.executeQuery();
             
             // finding oldest firend
             long user_id = 0;
@@ -462,11 +728,11 @@ public final class StudentFakebookOracle extends FakebookOracle {
             }
             UserInfo old = new UserInfo(user_id, first_name, last_name);
             
-            // finding youngest friend
-            long user_id2 = 0;
-            String first_name2 = null;
-            String last_name2 = null;
-            if (rst.last()){
+            // finding youngest friend: the last row read going forward
+            long user_id2 = user_id;
+            String first_name2 = first_name;
+            String last_name2 = last_name;
+            while (rst.next()){
                 user_id2 = rst.getLong(1);
                 first_name2 = rst.getString(2);
                 last_name2 = rst.getString(3);
@@ -480,11 +746,154 @@ public final class StudentFakebookOracle extends FakebookOracle {
             
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            reportError(e);
             return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
         }
     }
     
+    @Override
+    // Query 8, Batched
+    // -----------------------------------------------------------------------------------
+    // GOALS: (A) For every user in <userIDs>, find the oldest and youngest friend exactly as
+    //            findAgeInfo(long) does, using one statement per chunk of IDs
+    //
+    // IN lists are padded to a power of two (repeating the last ID) so the database only
+    // ever sees a handful of distinct statement shapes, all of which stay in the cache
+    public Map<Long, AgeInfo> findAgeInfo(long[] userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new LinkedHashMap<Long, AgeInfo>();
+        for (long userID : userIDs) {
+            results.put(userID, null);
+        }
+        
+        for (int begin = 0; begin < userIDs.length; begin += MaxBindListSize) {
+            int count = Math.min(MaxBindListSize, userIDs.length - begin);
+            int padded = Integer.highestOneBit(count);
+            if (padded < count) {
+                padded <<= 1;
+            }
+            
+            String ids = bindList(padded);
+            try (PreparedStatement stmt = prepareStatement(
+                    "SELECT VIEWER, USER_ID, FIRST_NAME, LAST_NAME, OLDEST_RANK, YOUNGEST_RANK " +
+                    "FROM (SELECT F.VIEWER, U.USER_ID, U.FIRST_NAME, U.LAST_NAME, " +
+                          "ROW_NUMBER() OVER (PARTITION BY F.VIEWER ORDER BY U.YEAR_OF_BIRTH ASC, U.MONTH_OF_BIRTH ASC, U.DAY_OF_BIRTH ASC, U.USER_ID DESC) AS OLDEST_RANK, " +
+                          "ROW_NUMBER() OVER (PARTITION BY F.VIEWER ORDER BY U.YEAR_OF_BIRTH DESC, U.MONTH_OF_BIRTH DESC, U.DAY_OF_BIRTH DESC, U.USER_ID ASC) AS YOUNGEST_RANK " +
+                          "FROM (SELECT USER1_ID AS VIEWER, USER2_ID AS FRIEND FROM " + FriendsTable + " WHERE USER1_ID IN (" + ids + ") " +
+                                "UNION ALL " +
+                                "SELECT USER2_ID AS VIEWER, USER1_ID AS FRIEND FROM " + FriendsTable + " WHERE USER2_ID IN (" + ids + ")) F, " +
+                                UsersTable + " U " +
+                          "WHERE U.USER_ID = F.FRIEND) " +
+                    "WHERE OLDEST_RANK = 1 OR YOUNGEST_RANK = 1")) {
+                for (int idx = 0; idx < padded; idx++) {
+                    long userID = userIDs[begin + Math.min(idx, count - 1)];
+                    stmt.setLong(idx + 1, userID);
+                    stmt.setLong(padded + idx + 1, userID);
+                }
+                
+                Map<Long, UserInfo> oldest = new LinkedHashMap<Long, UserInfo>();
+                Map<Long, UserInfo> youngest = new LinkedHashMap<Long, UserInfo>();
+                ResultSet rst = stmt.executeQuery();
+                while (rst.next()) {
+                    long viewer = rst.getLong(1);
+                    UserInfo friend = new UserInfo(rst.getLong(2), rst.getString(3), rst.getString(4));
+                    if (rst.getInt(5) == 1) {
+                        oldest.put(viewer, friend);
+                    }
+                    if (rst.getInt(6) == 1) {
+                        youngest.put(viewer, friend);
+                    }
+                }
+                rst.close();
+                
+                for (Map.Entry<Long, UserInfo> entry : oldest.entrySet()) {
+                    results.put(entry.getKey(), new AgeInfo(entry.getValue(), youngest.get(entry.getKey())));
+                }
+            }
+            catch (SQLException e) {
+                // the chunk's users get the marker findAgeInfo(long) returns on an error,
+                // not the friendless answer
+                reportError(e);
+                for (int idx = begin; idx < begin + count; idx++) {
+                    results.put(userIDs[idx], new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR")));
+                }
+            }
+        }
+        
+        // users without friends get the same answer findAgeInfo(long) gives them
+        for (Map.Entry<Long, AgeInfo> entry : results.entrySet()) {
+            if (entry.getValue() == null) {
+                entry.setValue(new AgeInfo(new UserInfo(0, null, null), new UserInfo(0, null, null)));
+            }
+        }
+        return results;
+    }
+    
+    @Override
+    // Query 8, All Users
+    // -----------------------------------------------------------------------------------
+    // GOALS: (A) For every user, find the oldest and youngest friend exactly as
+    //            findAgeInfo(long) does, and hand them to <consumer> in user ID order
+    //
+    // Sorting every user's friends is a sort per user, so the friend graph is read once
+    // into a CSR index and the birth dates and names once into arrays; every birth date
+    // becomes a packed age key and the extremes are found in one parallel pass over the
+    // friend edges
+    public long findAgeInfo(FakebookRowConsumer<? super UserAgeInfo> consumer) throws SQLException, IOException {
+        FakebookFriendIndex index = FakebookFriendIndex.load(oracle, fetchSize);
+        int users = index.userCount();
+        int[] years = new int[users];
+        int[] months = new int[users];
+        int[] days = new int[users];
+        String[] firstNames = new String[users];
+        String[] lastNames = new String[users];
+        Arrays.fill(years, FakebookSnapshot.NullInt);
+        Arrays.fill(months, FakebookSnapshot.NullInt);
+        Arrays.fill(days, FakebookSnapshot.NullInt);
+        
+        try (Statement stmt = createStatement()) {
+            ResultSet rst = stmt.executeQuery("SELECT USER_ID, FIRST_NAME, LAST_NAME, YEAR_OF_BIRTH, MONTH_OF_BIRTH, DAY_OF_BIRTH " +
+                                              "FROM " + UsersTable);
+            while (rst.next()) {
+                int user = index.userIndex(rst.getLong(1));
+                if (user < 0) {
+                    continue;                       // added since the index was read
+                }
+                firstNames[user] = rst.getString(2);
+                lastNames[user] = rst.getString(3);
+                years[user] = rst.getInt(4);
+                if (rst.wasNull()) {
+                    years[user] = FakebookSnapshot.NullInt;
+                }
+                months[user] = rst.getInt(5);
+                if (rst.wasNull()) {
+                    months[user] = FakebookSnapshot.NullInt;
+                }
+                days[user] = rst.getInt(6);
+                if (rst.wasNull()) {
+                    days[user] = FakebookSnapshot.NullInt;
+                }
+            }
+            rst.close();
+        }
+        
+        long[] extremes = new FakebookFriendAges(index, FakebookFriendAges.ageKeys(years, months, days)).extremes();
+        long count = 0;
+        for (int user = 0; user < users; user++) {
+            AgeInfo info = new AgeInfo(new UserInfo(0, null, null), new UserInfo(0, null, null));
+            if (index.degree(user) > 0) {
+                int oldest = FakebookFriendAges.userOf(extremes[2 * user]);
+                int youngest = FakebookFriendAges.userOf(extremes[2 * user + 1]);
+                info = new AgeInfo(new UserInfo(index.userId(oldest), firstNames[oldest], lastNames[oldest]),
+                                   new UserInfo(index.userId(youngest), firstNames[youngest], lastNames[youngest]));
+            }
+            count++;
+            if (!consumer.accept(new UserAgeInfo(index.userId(user), info))) {
+                break;
+            }
+        }
+        return count;
+    }
+    
     @Override
     // Query 9
     // -----------------------------------------------------------------------------------
@@ -496,7 +905,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
         FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -505,48 +914,252 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 SiblingInfo si = new SiblingInfo(u1, u2);
                 results.add(si);
             */
-            ResultSet rst = stmt.executeQuery(
-                                              "SELECT U1.USER_ID, U1.FIRST_NAME, U1.LAST_NAME, U2.USER_ID, U2.FIRST_NAME, U2.LAST_NAME " +
-                                              "FROM " + UsersTable + " U1, " + UsersTable + " U2, " +
-                                              HometownCitiesTable + " H1, " + HometownCitiesTable + " H2, " + FriendsTable +" F " +
-                                              "WHERE U1.USER_ID < U2.USER_ID " +
-                                              "AND U1.LAST_NAME = U2.LAST_NAME " +        // same last name
-                                              "AND U1.USER_ID = H1.USER_ID " +
-                                              "AND U2.USER_ID = H2.USER_ID " +
-                                              "AND H1.HOMETOWN_CITY_ID = H2.HOMETOWN_CITY_ID " +    // same hometown
-                                              "AND U1.USER_ID = F.USER1_ID " +
-                                              "AND U2.USER_ID = F.USER2_ID " +
-                                              "AND ABS(U1.YEAR_OF_BIRTH - U2.YEAR_OF_BIRTH) < 10" + // less than 10 years
-                                              "ORDER BY U1.USER_ID ASC, U2.USER_ID ASC");
-            while (rst.next()){
-                Long user1_id = rst.getLong(1);
-                String first_name_1 = rst.getString(2);
-                String last_name_1 = rst.getString(3);
-                
-                UserInfo u1 = new UserInfo(user1_id, first_name_1, last_name_1);
-                
-                Long user2_id = rst.getLong(4);
-                String first_name_2 = rst.getString(5);
-                String last_name_2 = rst.getString(6);
-                
-                UserInfo u2 = new UserInfo(user2_id, first_name_2, last_name_2);
-                SiblingInfo si = new SiblingInfo(u1, u2);
-                results.add(si);
+            findPotentialSiblings(collector(results));
+        }
+        catch (SQLException e) {
+            reportError(e);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // collecting into a list never throws
+        }
+        
+        return results;
+    }
+    
+    @Override
+    // [Query 9, Streamed]
+    // EFFECTS:  hands the pairs of Query 9 to <consumer> in (USER1_ID, USER2_ID) order
+    //
+    // Joining Users and User_Hometown_Cities to themselves builds every same-name,
+    // same-hometown pair before the friendship and age filters apply, which for a common
+    // last name is the square of its population. Instead the friend graph is read once
+    // into a CSR index, and every user's last name (as its DENSE_RANK code), birth year,
+    // and hometowns once into arrays; the pairs are found by bucketing on (last name,
+    // hometown) in memory, and only then named, a chunk of pairs at a time.
+    //
+    // Unlike the other streamed queries this one is not bounded by the fetch size: the
+    // pairs must be sorted before the first is handed over, so memory grows with the
+    // number of users, hometown rows, and pairs (8 bytes each); no names are kept
+    // beyond the chunk being handed over
+    public long findPotentialSiblings(FakebookRowConsumer<? super SiblingInfo> consumer) throws SQLException, IOException {
+        FakebookFriendIndex index = FakebookFriendIndex.load(oracle, fetchSize);
+        int users = index.userCount();
+        int[] lastNames = new int[users];
+        int[] years = new int[users];
+        Arrays.fill(lastNames, -1);
+        Arrays.fill(years, FakebookSnapshot.NullInt);
+        FakebookIntList hometownUsers = new FakebookIntList();
+        FakebookIntList hometownCities = new FakebookIntList();
+        
+        try (Statement stmt = createStatement()) {
+            ResultSet rst = stmt.executeQuery("SELECT USER_ID, DENSE_RANK() OVER (ORDER BY LAST_NAME), YEAR_OF_BIRTH " +
+                                              "FROM " + UsersTable + " " +
+                                              "WHERE LAST_NAME IS NOT NULL AND YEAR_OF_BIRTH IS NOT NULL");
+            while (rst.next()) {
+                int user = index.userIndex(rst.getLong(1));
+                if (user < 0) {
+                    continue;                       // added since the index was read
+                }
+                lastNames[user] = rst.getInt(2) - 1;   // ranks start at 1
+                years[user] = rst.getInt(3);
             }
             rst.close();
-            stmt.close();
             
-            return results;
+            rst = stmt.executeQuery("SELECT USER_ID, HOMETOWN_CITY_ID FROM " + HometownCitiesTable);
+            while (rst.next()) {
+                int user = index.userIndex(rst.getLong(1));
+                if (user >= 0) {
+                    hometownUsers.add(user);
+                    hometownCities.add(rst.getInt(2));
+                }
+            }
+            rst.close();
         }
-        catch (SQLException e) {
-            System.err.println(e.getMessage());
+        
+        long[] pairs = new FakebookSiblingFinder(index).siblingPairs(lastNames, years,
+            hometownUsers.toArray(), hometownCities.toArray());
+        
+        // name the pairs a chunk at a time, so one statement covers every user in a chunk
+        long count = 0;
+        for (int begin = 0; begin < pairs.length; begin += MaxBindListSize / 2) {
+            int end = Math.min(pairs.length, begin + MaxBindListSize / 2);
+            long[] ids = new long[2 * (end - begin)];
+            for (int idx = begin; idx < end; idx++) {
+                ids[2 * (idx - begin)] = index.userId(FakebookSnapshot.high(pairs[idx]));
+                ids[2 * (idx - begin) + 1] = index.userId(FakebookSnapshot.low(pairs[idx]));
+            }
+            Map<Long, UserInfo> names = fetchUsers(ids);
+            for (int idx = 0; idx < ids.length; idx += 2) {
+                count++;
+                if (!consumer.accept(new SiblingInfo(names.get(ids[idx]), names.get(ids[idx + 1])))) {
+                    return count;
+                }
+            }
+        }
+        return count;
+    }
+    
+    // [Album Photo Index Function]
+    // EFFECTS:  returns the IDs of the photos whose album exists (the photos that survive
+    //   the join of Photos with Albums), in ascending order, reading through <stmt>
+    private long[] albumPhotoIds(Statement stmt) throws SQLException {
+        FakebookLongList albums = new FakebookLongList();
+        ResultSet rst = stmt.executeQuery("SELECT ALBUM_ID FROM " + AlbumsTable + " ORDER BY ALBUM_ID");
+        while (rst.next()) {
+            albums.add(rst.getLong(1));
         }
+        long[] albumIds = albums.toArray();
         
-        return results;
+        FakebookLongList photos = new FakebookLongList();
+        rst = stmt.executeQuery("SELECT PHOTO_ID, ALBUM_ID FROM " + PhotosTable + " ORDER BY PHOTO_ID");
+        while (rst.next()) {
+            long photo = rst.getLong(1);
+            long album = rst.getLong(2);
+            if (!rst.wasNull() && Arrays.binarySearch(albumIds, album) >= 0) {
+                photos.add(photo);
+            }
+        }
+        rst.close();
+        return photos.toArray();
+    }
+    
+    // [User Fetching Function]
+    // EFFECTS:  returns the ID, first name, and last name of every user in <userIDs>, keyed
+    //   by ID
+    private Map<Long, UserInfo> fetchUsers(long[] userIDs) throws SQLException {
+        long[] ids = distinct(userIDs);
+        Map<Long, UserInfo> users = new HashMap<Long, UserInfo>();
+        for (int begin = 0; begin < ids.length; begin += MaxBindListSize) {
+            try (PreparedStatement stmt = prepareChunk(
+                    "SELECT USER_ID, FIRST_NAME, LAST_NAME FROM " + UsersTable + " WHERE USER_ID", ids, begin)) {
+                ResultSet rst = stmt.executeQuery();
+                while (rst.next()) {
+                    users.put(rst.getLong(1), new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                }
+                rst.close();
+            }
+        }
+        return users;
+    }
+    
+    // [Photo Fetching Function]
+    // EFFECTS:  returns the ID, link, and containing album of every photo in <photoIDs>,
+    //   keyed by ID
+    private Map<Long, PhotoInfo> fetchPhotos(long[] photoIDs) throws SQLException {
+        long[] ids = distinct(photoIDs);
+        Map<Long, PhotoInfo> photos = new HashMap<Long, PhotoInfo>();
+        for (int begin = 0; begin < ids.length; begin += MaxBindListSize) {
+            try (PreparedStatement stmt = prepareChunk(
+                    "SELECT P.PHOTO_ID, P.ALBUM_ID, P.PHOTO_LINK, A.ALBUM_NAME " +
+                    "FROM " + PhotosTable + " P, " + AlbumsTable + " A " +
+                    "WHERE P.ALBUM_ID = A.ALBUM_ID AND P.PHOTO_ID", ids, begin)) {
+                ResultSet rst = stmt.executeQuery();
+                while (rst.next()) {
+                    photos.put(rst.getLong(1), new PhotoInfo(rst.getLong(1), rst.getLong(2), rst.getString(3), rst.getString(4)));
+                }
+                rst.close();
+            }
+        }
+        return photos;
     }
     
+    // [Tagged Photo Fetching Function]
+    // EFFECTS:  returns the IDs of the photos each user in <userIDs> is tagged in, in
+    //   ascending order, keyed by user ID
+    private Map<Long, TreeSet<Long>> fetchTaggedPhotos(long[] userIDs) throws SQLException {
+        long[] ids = distinct(userIDs);
+        Map<Long, TreeSet<Long>> tagged = new HashMap<Long, TreeSet<Long>>();
+        for (long id : ids) {
+            tagged.put(id, new TreeSet<Long>());
+        }
+        for (int begin = 0; begin < ids.length; begin += MaxBindListSize) {
+            try (PreparedStatement stmt = prepareChunk(
+                    "SELECT TAG_SUBJECT_ID, TAG_PHOTO_ID FROM " + TagsTable + " WHERE TAG_SUBJECT_ID", ids, begin)) {
+                ResultSet rst = stmt.executeQuery();
+                while (rst.next()) {
+                    tagged.get(rst.getLong(1)).add(rst.getLong(2));
+                }
+                rst.close();
+            }
+        }
+        return tagged;
+    }
+    
+    @Override
+    // [User IDs Function]
+    // EFFECTS:  returns the ID of every user, in ascending order
+    protected long[] userIDs() throws SQLException {
+        try (Statement stmt = createStatement()) {
+            FakebookLongList ids = new FakebookLongList();
+            ResultSet rst = stmt.executeQuery("SELECT USER_ID FROM " + UsersTable + " ORDER BY USER_ID");
+            while (rst.next()) {
+                ids.add(rst.getLong(1));
+            }
+            rst.close();
+            return ids.toArray();
+        }
+    }
+    
+    // [Chunk Preparation Function]
+    // REQUIRES: <ids> is sorted and distinct, 0 <= <begin> < <ids>.length
+    // EFFECTS:  returns "<select> IN (?, ..., ?)" bound to the chunk of at most
+    //   MaxBindListSize IDs starting at <begin>; as in findAgeInfo(long[]), the IN list
+    //   is padded to a power of two by repeating the last ID
+    private PreparedStatement prepareChunk(String select, long[] ids, int begin) throws SQLException {
+        int count = Math.min(MaxBindListSize, ids.length - begin);
+        int padded = Integer.highestOneBit(count);
+        if (padded < count) {
+            padded <<= 1;
+        }
+        PreparedStatement stmt = prepareStatement(select + " IN (" + bindList(padded) + ")");
+        try {
+            for (int idx = 0; idx < padded; idx++) {
+                stmt.setLong(idx + 1, ids[begin + Math.min(idx, count - 1)]);
+            }
+        }
+        catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+        return stmt;
+    }
+    
+    // [Distinct Function]
+    // EFFECTS:  returns the distinct values of <values> in ascending order
+    private static long[] distinct(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int idx = 0; idx < sorted.length; idx++) {
+            if (idx == 0 || sorted[idx] != sorted[idx - 1]) {
+                sorted[count++] = sorted[idx];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+    
+    // [Statement Creation Functions]
+    // EFFECTS:  returns a read-only statement using this oracle's cursor type and fetch size
+    private Statement createStatement() throws SQLException {
+        Statement stmt = oracle.createStatement(resultSetType, FakebookOracleConstants.ReadOnly);
+        stmt.setFetchSize(fetchSize);
+        return stmt;
+    }
+    
+    private PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement stmt = oracle.prepareStatement(sql, resultSetType, FakebookOracleConstants.ReadOnly);
+        stmt.setFetchSize(fetchSize);
+        return stmt;
+    }
+    
+    // Constants
+    private static final int MaxBindListSize = 512;      // stays below Oracle's limit of 1000 IN list entries
+    
     // Member Variables
     private Connection oracle;
+    private final int resultSetType;
+    private final int fetchSize;
+    private FakebookAggregateStore aggregates;
     private final String UsersTable = FakebookOracleConstants.UsersTable;
     private final String CitiesTable = FakebookOracleConstants.CitiesTable;
     private final String FriendsTable = FakebookOracleConstants.FriendsTable;